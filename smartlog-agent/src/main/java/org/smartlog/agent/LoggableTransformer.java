@@ -0,0 +1,474 @@
+package org.smartlog.agent;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.nio.charset.StandardCharsets;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wraps @Loggable methods with SmartLog start/finish calls.
+ * <p>
+ * Original method body is moved to private synthetic method {@code <name>$smartlog}, method with original name
+ * starts context, calls original body and finishes context. Root class, title and default level are class file
+ * constants, no reflection or join point objects are used at runtime. Sampler and duration threshold of method
+ * are created once by invokedynamic constant call sites (class files of java 7+ only).
+ * <p>
+ * Output is not a constant of method: root class is passed instead and output is resolved by default output cache
+ * of {@link org.smartlog.SmartLogConfig} on every call, so output set by {@code SmartLogConfig.update()} is used
+ * by already instrumented methods.
+ */
+public class LoggableTransformer implements ClassFileTransformer {
+    static final String ORIGINAL_SUFFIX = "$smartlog";
+
+    private static final String LOGGABLE_DESC = "Lorg/smartlog/aop/Loggable;";
+    private static final byte[] LOGGABLE_DESC_BYTES = LOGGABLE_DESC.getBytes(StandardCharsets.UTF_8);
+
+    private static final String SUPPORT = "org/smartlog/aop/LoggableSupport";
+    private static final String LOG_CONTEXT = "org/smartlog/LogContext";
+    private static final String LOG_LEVEL = "org/smartlog/LogLevel";
+    private static final String LOG_LEVEL_DESC = "L" + LOG_LEVEL + ";";
+    private static final String THROWABLE = "java/lang/Throwable";
+    private static final String SAMPLER_DESC = "Lorg/smartlog/Sampler;";
+    private static final String THRESHOLD_DESC = "Lorg/smartlog/DurationThreshold;";
+
+    private static final Handle SAMPLER_SITE = new Handle(Opcodes.H_INVOKESTATIC, SUPPORT, "samplerSite",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;IDD)"
+                    + "Ljava/lang/invoke/CallSite;", false);
+    private static final Handle THRESHOLD_SITE = new Handle(Opcodes.H_INVOKESTATIC, SUPPORT, "thresholdSite",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;JJLjava/lang/String;)"
+                    + "Ljava/lang/invoke/CallSite;", false);
+
+    private static final String[] SKIP_PREFIXES = {"java/", "javax/", "jdk/", "sun/", "com/sun/", "org/smartlog/agent/"};
+
+    private final List<String> packages;
+
+    public LoggableTransformer() {
+        this(Collections.emptyList());
+    }
+
+    /**
+     * @param packages internal names of packages to instrument (e.g. "com/example/"), all if empty
+     */
+    public LoggableTransformer(final List<String> packages) {
+        this.packages = packages;
+    }
+
+    @Override
+    public byte[] transform(final ClassLoader loader, final String className, final Class<?> classBeingRedefined,
+                            final ProtectionDomain protectionDomain, final byte[] classfileBuffer) {
+        if (className == null || classBeingRedefined != null || !accept(className)
+                || !contains(classfileBuffer, LOGGABLE_DESC_BYTES)) {
+            return null;
+        }
+
+        try {
+            return instrument(classfileBuffer);
+        } catch (RuntimeException e) {
+            // exception thrown by transformer is ignored by jvm, report it at least
+            System.err.println("smartlog-agent: failed to instrument " + className + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * @param classfile class bytes
+     * @return instrumented class bytes or null if class has no @Loggable methods
+     */
+    byte[] instrument(final byte[] classfile) {
+        final ClassReader reader = new ClassReader(classfile);
+        final ClassNode node = new ClassNode();
+        reader.accept(node, 0);
+
+        if ((node.access & Opcodes.ACC_INTERFACE) != 0 || (node.version & 0xFFFF) < Opcodes.V1_6) {
+            return null;
+        }
+
+        final String rootClass = rootClass(node);
+        final List<MethodNode> wrappers = new ArrayList<>();
+
+        for (final MethodNode method : node.methods) {
+            // javac copies annotations to bridge methods, they call the real method which is wrapped anyway
+            final AnnotationNode loggable = findLoggable(method);
+            if (loggable == null || method.name.startsWith("<") || (method.access & (Opcodes.ACC_ABSTRACT
+                    | Opcodes.ACC_NATIVE | Opcodes.ACC_BRIDGE | Opcodes.ACC_SYNTHETIC)) != 0) {
+                continue;
+            }
+
+            final MethodNode wrapper = new MethodNode(method.access, method.name, method.desc, method.signature,
+                    method.exceptions.toArray(new String[0]));
+            wrapper.visibleAnnotations = method.visibleAnnotations;
+            wrapper.invisibleAnnotations = method.invisibleAnnotations;
+            wrapper.visibleParameterAnnotations = method.visibleParameterAnnotations;
+            wrapper.invisibleParameterAnnotations = method.invisibleParameterAnnotations;
+            wrapper.parameters = method.parameters;
+
+            method.visibleAnnotations = null;
+            method.invisibleAnnotations = null;
+            method.name = method.name + ORIGINAL_SUFFIX;
+            method.access = (method.access & ~(Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED | Opcodes.ACC_VARARGS))
+                    | Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC;
+
+            Object[] sampling = sampling(loggable);
+            Object[] threshold = threshold(loggable);
+            if ((sampling != null || threshold != null) && (node.version & 0xFFFF) < Opcodes.V1_7) {
+                System.err.println("smartlog-agent: sampling and threshold of " + node.name + "." + wrapper.name
+                        + " are ignored, class file version doesn't support invokedynamic");
+                sampling = null;
+                threshold = null;
+            }
+
+            generateWrapper(node.name, rootClass, method, wrapper, defaultLevel(loggable), sampling, threshold);
+            wrappers.add(wrapper);
+        }
+
+        if (wrappers.isEmpty()) {
+            return null;
+        }
+
+        node.methods.addAll(wrappers);
+
+        // frames of original methods are kept, wrapper frames are written explicitly
+        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+
+    private static void generateWrapper(final String owner, final String rootClass, final MethodNode original,
+                                        final MethodVisitor mv, final String level, final Object[] sampling,
+                                        final Object[] threshold) {
+        final boolean isStatic = (original.access & Opcodes.ACC_STATIC) != 0;
+        final Type[] argTypes = Type.getArgumentTypes(original.desc);
+        final Type returnType = Type.getReturnType(original.desc);
+        final String title = original.name.substring(0, original.name.length() - ORIGINAL_SUFFIX.length());
+
+        final List<Object> frameLocals = new ArrayList<>();
+        int local = 0;
+        if (!isStatic) {
+            frameLocals.add(owner);
+            local++;
+        }
+
+        for (final Type argType : argTypes) {
+            frameLocals.add(frameType(argType));
+            local += argType.getSize();
+        }
+
+        final int ctxLocal = local;
+        final int resultLocal = local + 1;
+        frameLocals.add(LOG_CONTEXT);
+
+        final Label start = new Label();
+        final Label end = new Label();
+        final Label handler = new Label();
+
+        mv.visitCode();
+        mv.visitTryCatchBlock(start, end, handler, THROWABLE);
+
+        // ctx = LoggableSupport.start(RootClass.class, this, LogLevel.X[, sampler]), output is resolved by config
+        // on each call, constant output would not follow config updates
+        mv.visitLdcInsn(Type.getObjectType(rootClass));
+        if (isStatic) {
+            mv.visitInsn(Opcodes.ACONST_NULL);
+        } else {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+        }
+        mv.visitFieldInsn(Opcodes.GETSTATIC, LOG_LEVEL, level, LOG_LEVEL_DESC);
+        if (sampling != null) {
+            mv.visitInvokeDynamicInsn("sampler", "()" + SAMPLER_DESC, SAMPLER_SITE, sampling);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, SUPPORT, "start",
+                    "(Ljava/lang/Class;Ljava/lang/Object;" + LOG_LEVEL_DESC + SAMPLER_DESC + ")L" + LOG_CONTEXT + ";",
+                    false);
+        } else {
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, SUPPORT, "start",
+                    "(Ljava/lang/Class;Ljava/lang/Object;" + LOG_LEVEL_DESC + ")L" + LOG_CONTEXT + ";", false);
+        }
+        mv.visitVarInsn(Opcodes.ASTORE, ctxLocal);
+
+        // call original body
+        mv.visitLabel(start);
+        int arg = 0;
+        if (!isStatic) {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            arg++;
+        }
+        for (final Type argType : argTypes) {
+            mv.visitVarInsn(argType.getOpcode(Opcodes.ILOAD), arg);
+            arg += argType.getSize();
+        }
+        mv.visitMethodInsn(isStatic ? Opcodes.INVOKESTATIC : Opcodes.INVOKESPECIAL, owner, original.name,
+                original.desc, false);
+        mv.visitLabel(end);
+
+        if (returnType.getSort() != Type.VOID) {
+            mv.visitVarInsn(returnType.getOpcode(Opcodes.ISTORE), resultLocal);
+            mv.visitVarInsn(Opcodes.ALOAD, ctxLocal);
+            mv.visitVarInsn(returnType.getOpcode(Opcodes.ILOAD), resultLocal);
+            box(mv, returnType);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, SUPPORT, "returned",
+                    "(L" + LOG_CONTEXT + ";Ljava/lang/Object;)V", false);
+        }
+
+        finish(mv, ctxLocal, title, level, threshold);
+
+        if (returnType.getSort() != Type.VOID) {
+            mv.visitVarInsn(returnType.getOpcode(Opcodes.ILOAD), resultLocal);
+        }
+        mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+
+        // uncaught throwable
+        mv.visitLabel(handler);
+        mv.visitFrame(Opcodes.F_NEW, frameLocals.size(), frameLocals.toArray(), 1, new Object[]{THROWABLE});
+        mv.visitVarInsn(Opcodes.ASTORE, resultLocal);
+        mv.visitVarInsn(Opcodes.ALOAD, ctxLocal);
+        mv.visitVarInsn(Opcodes.ALOAD, resultLocal);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, SUPPORT, "threw",
+                "(L" + LOG_CONTEXT + ";Ljava/lang/Throwable;)V", false);
+        finish(mv, ctxLocal, title, level, threshold);
+        mv.visitVarInsn(Opcodes.ALOAD, resultLocal);
+        mv.visitInsn(Opcodes.ATHROW);
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void finish(final MethodVisitor mv, final int ctxLocal, final String title, final String level,
+                               final Object[] threshold) {
+        mv.visitVarInsn(Opcodes.ALOAD, ctxLocal);
+        mv.visitLdcInsn(title);
+        mv.visitFieldInsn(Opcodes.GETSTATIC, LOG_LEVEL, level, LOG_LEVEL_DESC);
+        if (threshold != null) {
+            mv.visitInvokeDynamicInsn("threshold", "()" + THRESHOLD_DESC, THRESHOLD_SITE, threshold);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, SUPPORT, "finish",
+                    "(L" + LOG_CONTEXT + ";Ljava/lang/String;" + LOG_LEVEL_DESC + THRESHOLD_DESC + ")V", false);
+        } else {
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, SUPPORT, "finish",
+                    "(L" + LOG_CONTEXT + ";Ljava/lang/String;" + LOG_LEVEL_DESC + ")V", false);
+        }
+    }
+
+    private static void box(final MethodVisitor mv, final Type type) {
+        final String boxed;
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                boxed = "java/lang/Boolean";
+                break;
+            case Type.CHAR:
+                boxed = "java/lang/Character";
+                break;
+            case Type.BYTE:
+                boxed = "java/lang/Byte";
+                break;
+            case Type.SHORT:
+                boxed = "java/lang/Short";
+                break;
+            case Type.INT:
+                boxed = "java/lang/Integer";
+                break;
+            case Type.FLOAT:
+                boxed = "java/lang/Float";
+                break;
+            case Type.LONG:
+                boxed = "java/lang/Long";
+                break;
+            case Type.DOUBLE:
+                boxed = "java/lang/Double";
+                break;
+            default:
+                return;
+        }
+
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, boxed, "valueOf", "(" + type.getDescriptor() + ")L" + boxed + ";", false);
+    }
+
+    private static Object frameType(final Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+            case Type.CHAR:
+            case Type.BYTE:
+            case Type.SHORT:
+            case Type.INT:
+                return Opcodes.INTEGER;
+            case Type.FLOAT:
+                return Opcodes.FLOAT;
+            case Type.LONG:
+                return Opcodes.LONG;
+            case Type.DOUBLE:
+                return Opcodes.DOUBLE;
+            case Type.ARRAY:
+                return type.getDescriptor();
+            default:
+                return type.getInternalName();
+        }
+    }
+
+    private static AnnotationNode findLoggable(final MethodNode method) {
+        if (method.visibleAnnotations != null) {
+            for (final AnnotationNode annotation : method.visibleAnnotations) {
+                if (LOGGABLE_DESC.equals(annotation.desc)) {
+                    return annotation;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param loggable annotation
+     * @return bootstrap arguments {sampleEvery, sampleProbability, rateLimit} or null if every call is written
+     */
+    private static Object[] sampling(final AnnotationNode loggable) {
+        int sampleEvery = 1;
+        double sampleProbability = 1;
+        double rateLimit = 0;
+
+        if (loggable.values != null) {
+            for (int i = 0; i < loggable.values.size(); i += 2) {
+                final Object name = loggable.values.get(i);
+                final Object value = loggable.values.get(i + 1);
+                if ("sampleEvery".equals(name)) {
+                    sampleEvery = (Integer) value;
+                } else if ("sampleProbability".equals(name)) {
+                    sampleProbability = (Double) value;
+                } else if ("rateLimit".equals(name)) {
+                    rateLimit = (Double) value;
+                }
+            }
+        }
+
+        if (sampleEvery == 1 && sampleProbability == 1 && rateLimit == 0) {
+            return null;
+        }
+
+        return new Object[]{sampleEvery, sampleProbability, rateLimit};
+    }
+
+    /**
+     * @param loggable annotation
+     * @return bootstrap arguments {minDurationMicros, promoteDurationMicros, promoteLevel} or null if not set
+     */
+    private static Object[] threshold(final AnnotationNode loggable) {
+        long minDurationMicros = 0;
+        long promoteDurationMicros = 0;
+        String promoteLevel = "WARN";
+
+        if (loggable.values != null) {
+            for (int i = 0; i < loggable.values.size(); i += 2) {
+                final Object name = loggable.values.get(i);
+                final Object value = loggable.values.get(i + 1);
+                if ("minDurationMicros".equals(name)) {
+                    minDurationMicros = (Long) value;
+                } else if ("promoteDurationMicros".equals(name)) {
+                    promoteDurationMicros = (Long) value;
+                } else if ("promoteLevel".equals(name)) {
+                    promoteLevel = enumName(value);
+                }
+            }
+        }
+
+        if (minDurationMicros <= 0 && promoteDurationMicros <= 0) {
+            return null;
+        }
+
+        return new Object[]{minDurationMicros, promoteDurationMicros, promoteLevel};
+    }
+
+    private static String defaultLevel(final AnnotationNode loggable) {
+        if (loggable.values != null) {
+            for (int i = 0; i < loggable.values.size(); i += 2) {
+                if ("defaultLevel".equals(loggable.values.get(i))) {
+                    return enumName(loggable.values.get(i + 1));
+                }
+            }
+        }
+
+        return "INFO";
+    }
+
+    /**
+     * @param value annotation value of enum type, stored as {descriptor, name}
+     * @return enum constant name
+     */
+    private static String enumName(final Object value) {
+        final String[] descriptorAndName = (String[]) value;
+        return descriptorAndName[1];
+    }
+
+    /**
+     * Resolve outermost class, default output is resolved by it like in LogAspect
+     */
+    private static String rootClass(final ClassNode node) {
+        String root = node.name;
+
+        boolean found = true;
+        while (found) {
+            found = false;
+            for (final InnerClassNode inner : node.innerClasses) {
+                if (inner.name.equals(root)) {
+                    if (inner.outerName != null) {
+                        root = inner.outerName;
+                        found = true;
+                    } else if (root.equals(node.name) && node.outerClass != null) {
+                        // local or anonymous class
+                        root = node.outerClass;
+                        found = true;
+                    }
+
+                    break;
+                }
+            }
+        }
+
+        return root;
+    }
+
+    private boolean accept(final String className) {
+        for (final String prefix : SKIP_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return false;
+            }
+        }
+
+        if (packages.isEmpty()) {
+            return true;
+        }
+
+        for (final String pkg : packages) {
+            if (className.startsWith(pkg)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean contains(final byte[] data, final byte[] pattern) {
+        final int last = data.length - pattern.length;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+}
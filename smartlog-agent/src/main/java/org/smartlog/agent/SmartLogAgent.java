@@ -0,0 +1,40 @@
+package org.smartlog.agent;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Java agent, instruments @Loggable methods at class load time instead of AspectJ weaving.
+ * <p>
+ * Usage: {@code java -javaagent:smartlog-agent.jar[=com.example,org.example] ...}, optional argument is comma
+ * separated list of packages to instrument (all classes by default). smartlog-core and smartlog-aop must be
+ * on application class path.
+ */
+public final class SmartLogAgent {
+    private SmartLogAgent() {
+    }
+
+    public static void premain(final String args, final Instrumentation instrumentation) {
+        instrumentation.addTransformer(new LoggableTransformer(parsePackages(args)));
+    }
+
+    public static void agentmain(final String args, final Instrumentation instrumentation) {
+        // classes loaded before attach are not instrumented
+        premain(args, instrumentation);
+    }
+
+    static List<String> parsePackages(final String args) {
+        final List<String> packages = new ArrayList<>();
+        if (args != null) {
+            for (final String pkg : args.split(",")) {
+                final String trimmed = pkg.trim();
+                if (!trimmed.isEmpty()) {
+                    packages.add(trimmed.replace('.', '/') + "/");
+                }
+            }
+        }
+
+        return packages;
+    }
+}
@@ -0,0 +1,180 @@
+package org.smartlog.agent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.SmartLog;
+import org.smartlog.SmartLogConfig;
+import org.smartlog.aop.Loggable;
+import org.smartlog.output.Output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LoggableTransformerTest {
+    private final Output output = mock(Output.class);
+
+    @Before
+    public void setup() {
+        when(output.isEnabled(any())).thenReturn(true);
+        SmartLogConfig.update(builder -> builder.withDefaultOutputResolver(clazz -> output));
+    }
+
+    @Test
+    public void testInstanceMethod() throws Exception {
+        final Class<?> clazz = instrument(Service.class);
+        final Object service = clazz.newInstance();
+
+        final Object result = clazz.getMethod("answer", int.class, long.class).invoke(service, 1, 2L);
+        assertThat(result).isEqualTo(45L);
+
+        final LogContext ctx = written();
+        assertThat(ctx.title()).isEqualTo("answer");
+        assertThat(ctx.level()).isEqualTo(LogLevel.INFO);
+        assertThat(ctx.result()).isEqualTo(45L);
+        assertThat(ctx.trace()).isEqualTo("arg 1");
+        assertThat(ctx.loggableObject()).isSameAs(service);
+    }
+
+    @Test
+    public void testStaticMethodThrows() throws Exception {
+        final Class<?> clazz = instrument(Service.class);
+
+        try {
+            clazz.getMethod("fail").invoke(null);
+        } catch (InvocationTargetException e) {
+            assertThat(e.getCause()).hasMessage("io");
+        }
+
+        final LogContext ctx = written();
+        assertThat(ctx.title()).isEqualTo("fail");
+        assertThat(ctx.level()).isEqualTo(LogLevel.ERROR);
+        assertThat(ctx.throwable()).hasMessage("io");
+    }
+
+    @Test
+    public void testDisabledLevel() throws Exception {
+        when(output.isEnabled(LogLevel.DEBUG)).thenReturn(false);
+
+        final Class<?> clazz = instrument(Service.class);
+        clazz.getMethod("debug", String.class).invoke(clazz.newInstance(), "arg");
+
+        final LogContext ctx = written();
+        assertThat(ctx.level()).isEqualTo(LogLevel.DEBUG);
+        assertThat(ctx.isSuppressed()).isTrue();
+        assertThat(ctx.trace()).isEmpty();
+    }
+
+    @Test
+    public void testAnnotationIsKeptOnWrapper() throws Exception {
+        final Class<?> clazz = instrument(Service.class);
+
+        final Method answer = clazz.getMethod("answer", int.class, long.class);
+        assertThat(answer.getAnnotation(Loggable.class)).isNotNull();
+        assertThat(clazz.getDeclaredMethod("answer" + LoggableTransformer.ORIGINAL_SUFFIX, int.class, long.class)
+                .isSynthetic()).isTrue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGenericInterfaceMethodIsWrappedOnce() throws Exception {
+        final Class<?> clazz = instrument(Upper.class);
+        final Function<String, String> function = (Function<String, String>) clazz.newInstance();
+
+        // call through bridge method apply(Object)
+        assertThat(function.apply("a")).isEqualTo("A");
+
+        final LogContext ctx = written();
+        assertThat(ctx.title()).isEqualTo("apply");
+        assertThat(ctx.result()).isEqualTo("A");
+    }
+
+    @Test
+    public void testSkipClassWithoutLoggable() throws Exception {
+        assertThat(new LoggableTransformer().transform(getClass().getClassLoader(), "org/smartlog/agent/Plain", null,
+                null, bytes(Plain.class))).isNull();
+        verify(output, never()).write(any());
+    }
+
+    @Test
+    public void testPackageFilter() throws Exception {
+        final LoggableTransformer transformer = new LoggableTransformer(SmartLogAgent.parsePackages("com.example"));
+        assertThat(transformer.transform(getClass().getClassLoader(), "org/smartlog/agent/LoggableTransformerTest$Service",
+                null, null, bytes(Service.class))).isNull();
+    }
+
+    private LogContext written() {
+        final ArgumentCaptor<LogContext> ctxCaptor = ArgumentCaptor.forClass(LogContext.class);
+        verify(output).write(ctxCaptor.capture());
+        return ctxCaptor.getValue();
+    }
+
+    private static Class<?> instrument(final Class<?> clazz) throws Exception {
+        final byte[] instrumented = new LoggableTransformer().instrument(bytes(clazz));
+        assertThat(instrumented).isNotNull();
+
+        return new ClassLoader(LoggableTransformerTest.class.getClassLoader()) {
+            Class<?> define() {
+                return defineClass(clazz.getName(), instrumented, 0, instrumented.length);
+            }
+        }.define();
+    }
+
+    private static byte[] bytes(final Class<?> clazz) throws IOException {
+        final String resource = "/" + clazz.getName().replace('.', '/') + ".class";
+        try (InputStream in = clazz.getResourceAsStream(resource)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+
+            return out.toByteArray();
+        }
+    }
+
+    public static class Service {
+        @Loggable
+        public long answer(final int arg, final long other) {
+            SmartLog.trace("arg %d", arg);
+            return 42 + arg + other;
+        }
+
+        @Loggable(defaultLevel = LogLevel.DEBUG)
+        public void debug(final String arg) {
+            SmartLog.trace("arg %s", arg);
+        }
+
+        @Loggable
+        public static void fail() throws IOException {
+            throw new IOException("io");
+        }
+    }
+
+    public static class Upper implements Function<String, String> {
+        @Loggable
+        @Override
+        public String apply(final String value) {
+            return value.toUpperCase();
+        }
+    }
+
+    public static class Plain {
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.smartlog.aop;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.smartlog.LogContext;
+
+/**
+ * Alternative to {@link LogAspect} with single around advice.
+ * <p>
+ * Context is kept in local variable for the whole call, so thread local is accessed only by start and finish.
+ * Default output is resolved before the call, and if it is disabled for default level, trace calls inside the
+ * method are skipped (see {@link LoggableSupport#start(Class, Object, org.smartlog.LogLevel)}).
+ * <p>
+ * Aspect is abstract, so it is not applied together with {@link LogAspect} when smartlog-aop is used as aspect
+ * library. To use it, don't add smartlog-aop to aspect libraries and declare concrete aspect, e.g.
+ * <pre>
+ * &#64;Aspect
+ * public class MyLogAspect extends LogAroundAspect {
+ *     &#64;Override
+ *     &#64;Pointcut("execution(&#64;org.smartlog.aop.Loggable * *(..))")
+ *     public void loggable() {
+ *     }
+ * }
+ * </pre>
+ * or use {@code <concrete-aspect>} in aop.xml for load time weaving.
+ */
+@Aspect
+public abstract class LogAroundAspect {
+    @Pointcut
+    public abstract void loggable();
+
+    @Around("loggable()")
+    public Object aroundLoggable(final ProceedingJoinPoint joinPoint) throws Throwable {
+        final LoggableMethod method = LoggableMethod.of(joinPoint.getStaticPart());
+        final LogContext ctx = LoggableSupport.start(method.rootClass(), joinPoint.getThis(), method.defaultLevel(),
+                method.sampler());
+
+        try {
+            final Object ret = joinPoint.proceed();
+            LoggableSupport.returned(ctx, ret);
+            return ret;
+        } catch (Throwable t) {
+            LoggableSupport.threw(ctx, t);
+            throw t;
+        } finally {
+            LoggableSupport.finish(ctx, method.title(), method.defaultLevel(), method.threshold());
+        }
+    }
+}
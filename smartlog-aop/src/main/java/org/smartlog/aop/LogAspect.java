@@ -5,85 +5,51 @@ import org.aspectj.lang.annotation.AfterReturning;
 import org.aspectj.lang.annotation.AfterThrowing;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
-import org.aspectj.lang.reflect.MethodSignature;
 import org.smartlog.*;
 import org.smartlog.output.Output;
-import org.smartlog.output.Slf4JOutput;
-
-import javax.annotation.Nonnull;
 
+/**
+ * Advices use static part of join point only, so AspectJ doesn't allocate JoinPoint object per call.
+ * Method settings are cached per static part (see {@link LoggableMethod}).
+ * <p>
+ * Default output is resolved on start, so output and @Loggable samplers are applied before method is called.
+ */
 @Aspect
 public class LogAspect {
-    private static final Output STUB = Slf4JOutput.create()
-            .withLoggerFor("stub")
-            .build();
-
-    @Nonnull
-    private static Loggable findLoggable(final JoinPoint joinPoint) {
-        Loggable loggable = ((MethodSignature) joinPoint.getSignature()).getMethod().getAnnotation(Loggable.class);
-        if (loggable == null) {
-            loggable = (Loggable) joinPoint.getSignature().getDeclaringType().getAnnotation(Loggable.class);
-        }
-
-        if (loggable == null) {
-            throw new RuntimeException("Internal error. No @Loggable found for: " + joinPoint.getSignature());
-        }
-
-        return loggable;
+    @Before(value = "execution(@org.smartlog.aop.Loggable !static * *(..)) && this(target)")
+    public void beforeLoggable(final JoinPoint.StaticPart staticPart, final Object target) throws Throwable {
+        start(staticPart, target);
     }
 
-    @Before("execution(@org.smartlog.aop.Loggable * *(..))")
-    public void beforeLoggable(final JoinPoint joinPoint) throws Throwable {
-        final LogContext ctx = SmartLog.start(STUB, joinPoint.getTarget());
+    @Before("execution(@org.smartlog.aop.Loggable static * *(..))")
+    public void beforeStaticLoggable(final JoinPoint.StaticPart staticPart) throws Throwable {
+        start(staticPart, null);
     }
 
     @AfterReturning(value = "execution(@org.smartlog.aop.Loggable * *(..))", returning = "ret")
-    public void afterReturiningLoggable(final JoinPoint joinPoint, final Object ret) throws Throwable {
+    public void afterReturiningLoggable(final JoinPoint.StaticPart staticPart, final Object ret) throws Throwable {
         final LogContext ctx = SmartLog.current();
-        if (ctx.result() == null) {
-            ctx.result(ret);
-        }
-        finish(joinPoint, ctx);
+        LoggableSupport.returned(ctx, ret);
+        finish(staticPart, ctx);
     }
 
     @AfterThrowing(value = "execution(@org.smartlog.aop.Loggable * *(..))", throwing = "t")
-    public void afterThrowingLoggable(final JoinPoint joinPoint, final Throwable t) throws Throwable {
-        final LogContext ctx = SmartLog.throwable(t);
-
-        if (ctx.level() == null) {
-            // use ERROR level by default when got uncaught exception
-            ctx.level(LogLevel.ERROR);
-        }
-
-        final Object result = ctx.result();
-        if (result == null) {
-            ctx.result(t.toString());
-        } else {
-            ctx.result(result.toString() + "; " + t.toString());
-        }
-
-        finish(joinPoint, ctx);
+    public void afterThrowingLoggable(final JoinPoint.StaticPart staticPart, final Throwable t) throws Throwable {
+        final LogContext ctx = SmartLog.current();
+        LoggableSupport.threw(ctx, t);
+        finish(staticPart, ctx);
     }
 
-    private void finish(final JoinPoint joinPoint, final LogContext ctx) {
-        // use method name if title is not set
-        if (ctx.title() == null) {
-            ctx.title(joinPoint.getSignature().getName());
-        }
+    private void start(final JoinPoint.StaticPart staticPart, final Object target) {
+        final LoggableMethod method = LoggableMethod.of(staticPart);
+        final Output output = SmartLogConfig.getConfig().getDefaultOutput(method.rootClass());
 
-        if (ctx.level() == null) {
-            final Loggable loggable = findLoggable(joinPoint);
-            ctx.level(loggable.defaultLevel());
-        }
-
-        // use default output if @Loggable method didn't change output
-        if (ctx.output() == STUB) {
-            final Class clazz = Util.findRootEnclosingClass(joinPoint.getSignature().getDeclaringType());
-            final Output output = SmartLogConfig.getConfig().getDefaultOutput(clazz);
+        SmartLog.start(output, target, method.sampler(), method.defaultLevel());
+    }
 
-            ctx.output(output);
-        }
+    private void finish(final JoinPoint.StaticPart staticPart, final LogContext ctx) {
+        final LoggableMethod method = LoggableMethod.of(staticPart);
 
-        SmartLog.finish();
+        LoggableSupport.finish(ctx, method.title(), method.defaultLevel(), method.threshold());
     }
-}
\ No newline at end of file
+}
@@ -9,4 +9,33 @@ import java.lang.annotation.*;
 @Documented
 public @interface Loggable {
     LogLevel defaultLevel() default LogLevel.INFO;
+
+    /**
+     * Write every n-th call only, see {@link org.smartlog.Sampler#everyNth(int)}
+     */
+    int sampleEvery() default 1;
+
+    /**
+     * Write call with given probability, see {@link org.smartlog.Sampler#probability(double)}
+     */
+    double sampleProbability() default 1;
+
+    /**
+     * Write at most given number of calls per second, 0 means no limit, see
+     * {@link org.smartlog.Sampler#rateLimit(double, int)}
+     */
+    double rateLimit() default 0;
+
+    /**
+     * Write call only if it lasts at least given number of microseconds or throws, 0 means no limit,
+     * see {@link org.smartlog.DurationThreshold}
+     */
+    long minDurationMicros() default 0;
+
+    /**
+     * Raise level of call lasting at least given number of microseconds to {@link #promoteLevel()}, 0 means never
+     */
+    long promoteDurationMicros() default 0;
+
+    LogLevel promoteLevel() default LogLevel.WARN;
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package org.smartlog.aop;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.reflect.ConstructorSignature;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.smartlog.DurationThreshold;
+import org.smartlog.LogLevel;
+import org.smartlog.Sampler;
+import org.smartlog.Util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Settings of @Loggable method resolved once per join point: title, default level, sampler, duration threshold
+ * and root class for default output.
+ * Methods without @Loggable and constructors (matched by custom pointcut of {@link LogAroundAspect}) use INFO level.
+ * <p>
+ * Cache is stored per declaring class (via {@link ClassValue}), so it doesn't keep class loaders.
+ */
+@Immutable
+final class LoggableMethod {
+    private static final ClassValue<ConcurrentMap<JoinPoint.StaticPart, LoggableMethod>> CACHE =
+            new ClassValue<ConcurrentMap<JoinPoint.StaticPart, LoggableMethod>>() {
+                @Override
+                protected ConcurrentMap<JoinPoint.StaticPart, LoggableMethod> computeValue(final Class<?> type) {
+                    return new ConcurrentHashMap<>(4);
+                }
+            };
+
+    @Nonnull
+    private final String title;
+
+    @Nonnull
+    private final LogLevel defaultLevel;
+
+    /**
+     * Shared by all calls of method
+     */
+    @Nullable
+    private final Sampler sampler;
+
+    @Nullable
+    private final DurationThreshold threshold;
+
+    @Nonnull
+    private final Class rootClass;
+
+    private LoggableMethod(@Nonnull final JoinPoint.StaticPart staticPart) {
+        final Signature signature = staticPart.getSignature();
+
+        // custom pointcut may also match constructors, they can't have @Loggable and are titled by class name
+        final Loggable loggable = signature instanceof MethodSignature
+                ? ((MethodSignature) signature).getMethod().getAnnotation(Loggable.class)
+                : null;
+
+        this.title = signature instanceof ConstructorSignature
+                ? signature.getDeclaringType().getSimpleName()
+                : signature.getName();
+        this.defaultLevel = loggable != null ? loggable.defaultLevel() : LogLevel.INFO;
+        this.sampler = loggable != null
+                ? LoggableSupport.sampler(loggable.sampleEvery(), loggable.sampleProbability(), loggable.rateLimit())
+                : null;
+        this.threshold = loggable != null
+                ? LoggableSupport.threshold(loggable.minDurationMicros(), loggable.promoteDurationMicros(),
+                loggable.promoteLevel())
+                : null;
+        this.rootClass = Util.findRootEnclosingClass(signature.getDeclaringType());
+    }
+
+    @Nonnull
+    static LoggableMethod of(@Nonnull final JoinPoint.StaticPart staticPart) {
+        final ConcurrentMap<JoinPoint.StaticPart, LoggableMethod> methods =
+                CACHE.get(staticPart.getSignature().getDeclaringType());
+
+        LoggableMethod method = methods.get(staticPart);
+        if (method == null) {
+            method = new LoggableMethod(staticPart);
+
+            // sampler has state, so all calls must use the same instance
+            final LoggableMethod prev = methods.putIfAbsent(staticPart, method);
+            if (prev != null) {
+                method = prev;
+            }
+        }
+
+        return method;
+    }
+
+    @Nonnull
+    String title() {
+        return title;
+    }
+
+    @Nonnull
+    LogLevel defaultLevel() {
+        return defaultLevel;
+    }
+
+    @Nullable
+    Sampler sampler() {
+        return sampler;
+    }
+
+    @Nullable
+    DurationThreshold threshold() {
+        return threshold;
+    }
+
+    @Nonnull
+    Class rootClass() {
+        return rootClass;
+    }
+}
@@ -0,0 +1,229 @@
+package org.smartlog.aop;
+
+import org.smartlog.DurationThreshold;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.Sampler;
+import org.smartlog.SmartLog;
+import org.smartlog.SmartLogConfig;
+import org.smartlog.output.Output;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common steps of @Loggable method call, shared by aspect and generated code
+ */
+public final class LoggableSupport {
+    private LoggableSupport() {
+    }
+
+    /**
+     * Start context with default output of class
+     *
+     * @param rootClass  root enclosing class of @Loggable method
+     * @param target     called object or null for static method
+     * @return new context
+     */
+    @Nonnull
+    public static LogContext start(@Nonnull final Class rootClass, @Nullable final Object target) {
+        final Output output = SmartLogConfig.getConfig().getDefaultOutput(rootClass);
+        return SmartLog.start(output, target);
+    }
+
+    /**
+     * Start context with default output of class, skip trace work if output is disabled for default level.
+     * <p>
+     * Context is created anyway, because loggable method may call SmartLog static methods. When output is disabled
+     * for default level, level is set at once, so trace/attach calls become no-op. Uncaught exception still promotes
+     * such record to ERROR (see {@link #threw(LogContext, Throwable)}).
+     *
+     * @param rootClass    root enclosing class of @Loggable method
+     * @param target       called object or null for static method
+     * @param defaultLevel level from @Loggable
+     * @return new context
+     */
+    @Nonnull
+    public static LogContext start(@Nonnull final Class rootClass, @Nullable final Object target,
+                                   @Nonnull final LogLevel defaultLevel) {
+        return start(rootClass, target, defaultLevel, null);
+    }
+
+    /**
+     * Same as {@link #start(Class, Object, LogLevel)} with sampler of @Loggable method
+     *
+     * @param rootClass    root enclosing class of @Loggable method
+     * @param target       called object or null for static method
+     * @param defaultLevel level from @Loggable
+     * @param sampler      sampler from @Loggable or null
+     * @return new context
+     */
+    @Nonnull
+    public static LogContext start(@Nonnull final Class rootClass, @Nullable final Object target,
+                                   @Nonnull final LogLevel defaultLevel, @Nullable final Sampler sampler) {
+        final Output output = SmartLogConfig.getConfig().getDefaultOutput(rootClass);
+        return SmartLog.start(output, target, sampler, defaultLevel);
+    }
+
+    /**
+     * Create sampler from @Loggable settings
+     *
+     * @param sampleEvery       write every n-th call
+     * @param sampleProbability probability to write call
+     * @param rateLimit         max calls per second, 0 - no limit
+     * @return sampler or null if every call is written
+     */
+    @Nullable
+    public static Sampler sampler(final int sampleEvery, final double sampleProbability, final double rateLimit) {
+        Sampler sampler = Sampler.all(Sampler.everyNth(sampleEvery), Sampler.probability(sampleProbability));
+        if (rateLimit > 0) {
+            // allow up to one second of calls at once
+            sampler = Sampler.all(sampler, Sampler.rateLimit(rateLimit, (int) Math.ceil(rateLimit)));
+        }
+
+        return sampler != Sampler.ALWAYS ? sampler : null;
+    }
+
+    /**
+     * Bootstrap of invokedynamic returning constant sampler, used by smartlog-agent to keep one sampler per method
+     * without extra fields
+     *
+     * @param lookup            caller lookup
+     * @param name              method name
+     * @param type              call site type, {@code ()Lorg/smartlog/Sampler;}
+     * @param sampleEvery       write every n-th call
+     * @param sampleProbability probability to write call
+     * @param rateLimit         max calls per second, 0 - no limit
+     * @return constant call site
+     */
+    @Nonnull
+    public static CallSite samplerSite(@Nonnull final MethodHandles.Lookup lookup, @Nonnull final String name,
+                                       @Nonnull final MethodType type, final int sampleEvery,
+                                       final double sampleProbability, final double rateLimit) {
+        final Sampler sampler = sampler(sampleEvery, sampleProbability, rateLimit);
+        return new ConstantCallSite(MethodHandles.constant(Sampler.class, sampler));
+    }
+
+    /**
+     * Create duration threshold from @Loggable settings
+     *
+     * @param minDurationMicros     min duration of written call, 0 - no limit
+     * @param promoteDurationMicros min duration of promoted call, 0 - never promote
+     * @param promoteLevel          level of promoted call
+     * @return threshold or null if not set
+     */
+    @Nullable
+    public static DurationThreshold threshold(final long minDurationMicros, final long promoteDurationMicros,
+                                              @Nonnull final LogLevel promoteLevel) {
+        if (minDurationMicros <= 0 && promoteDurationMicros <= 0) {
+            return null;
+        }
+
+        final DurationThreshold.Builder builder = DurationThreshold.create()
+                .withMinDuration(minDurationMicros, TimeUnit.MICROSECONDS);
+        if (promoteDurationMicros > 0) {
+            builder.withPromotion(promoteDurationMicros, TimeUnit.MICROSECONDS, promoteLevel);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Bootstrap of invokedynamic returning constant duration threshold, used by smartlog-agent
+     *
+     * @param lookup                caller lookup
+     * @param name                  method name
+     * @param type                  call site type, {@code ()Lorg/smartlog/DurationThreshold;}
+     * @param minDurationMicros     min duration of written call, 0 - no limit
+     * @param promoteDurationMicros min duration of promoted call, 0 - never promote
+     * @param promoteLevel          name of promote level
+     * @return constant call site
+     */
+    @Nonnull
+    public static CallSite thresholdSite(@Nonnull final MethodHandles.Lookup lookup, @Nonnull final String name,
+                                         @Nonnull final MethodType type, final long minDurationMicros,
+                                         final long promoteDurationMicros, @Nonnull final String promoteLevel) {
+        final DurationThreshold threshold = threshold(minDurationMicros, promoteDurationMicros,
+                LogLevel.valueOf(promoteLevel));
+        return new ConstantCallSite(MethodHandles.constant(DurationThreshold.class, threshold));
+    }
+
+    /**
+     * Use returned value as result if result is not set
+     *
+     * @param ctx context
+     * @param ret returned value
+     */
+    public static void returned(@Nonnull final LogContext ctx, @Nullable final Object ret) {
+        if (!ctx.hasResult()) {
+            ctx.result(ret);
+        }
+    }
+
+    /**
+     * Attach uncaught throwable, use ERROR level if level is not set
+     *
+     * @param ctx context
+     * @param t   uncaught throwable
+     */
+    public static void threw(@Nonnull final LogContext ctx, @Nonnull final Throwable t) {
+        ctx.throwable(t);
+
+        final LogLevel level = ctx.level();
+        if (level == null || !ctx.output().isEnabled(level)) {
+            // use ERROR level by default when got uncaught exception
+            ctx.level(LogLevel.ERROR);
+        }
+
+        final Object result = ctx.result();
+        if (result == null) {
+            ctx.result(t.toString());
+        } else {
+            ctx.result(result.toString() + "; " + t.toString());
+        }
+    }
+
+    /**
+     * Set default title and level if loggable method didn't set them and finish context
+     *
+     * @param ctx          context
+     * @param defaultTitle title, usually method name
+     * @param defaultLevel level from @Loggable
+     */
+    public static void finish(@Nonnull final LogContext ctx, @Nonnull final String defaultTitle,
+                              @Nonnull final LogLevel defaultLevel) {
+        // use method name if title is not set
+        if (ctx.rawTitle() == null) {
+            ctx.title(defaultTitle);
+        }
+
+        if (ctx.level() == null) {
+            ctx.level(defaultLevel);
+        }
+
+        SmartLog.finish();
+    }
+
+    /**
+     * Same as {@link #finish(LogContext, String, LogLevel)}, use threshold of @Loggable if loggable method didn't
+     * set threshold
+     *
+     * @param ctx          context
+     * @param defaultTitle title, usually method name
+     * @param defaultLevel level from @Loggable
+     * @param threshold    threshold from @Loggable or null
+     */
+    public static void finish(@Nonnull final LogContext ctx, @Nonnull final String defaultTitle,
+                              @Nonnull final LogLevel defaultLevel, @Nullable final DurationThreshold threshold) {
+        if (threshold != null && ctx.threshold() == null) {
+            ctx.threshold(threshold);
+        }
+
+        finish(ctx, defaultTitle, defaultLevel);
+    }
+}
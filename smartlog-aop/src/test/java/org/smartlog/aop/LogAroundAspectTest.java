@@ -0,0 +1,119 @@
+package org.smartlog.aop;
+
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.SmartLog;
+import org.smartlog.SmartLogConfig;
+import org.smartlog.output.Output;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LogAroundAspectTest {
+    private static final Output output = mock(Output.class);
+
+    private Service service;
+
+    @BeforeClass
+    public static void setupClass() {
+        SmartLogConfig.update(builder -> builder.withDefaultOutputResolver(clazz -> output));
+    }
+
+    @Before
+    public void setup() {
+        service = new Service();
+
+        reset(output);
+        when(output.isEnabled(any())).thenReturn(true);
+    }
+
+    @Test
+    public void testReturned() {
+        assertThat(service.answer()).isEqualTo(42);
+
+        final LogContext ctx = written();
+        assertThat(ctx.title()).isEqualTo("answer");
+        assertThat(ctx.level()).isEqualTo(LogLevel.INFO);
+        assertThat(ctx.result()).isEqualTo(42);
+        assertThat(ctx.trace()).isEqualTo("step");
+        assertThat(ctx.loggableObject()).isSameAs(service);
+    }
+
+    @Test
+    public void testThrew() {
+        try {
+            service.fail();
+            Assert.fail("no expected exception");
+        } catch (IllegalStateException e) {
+            // it's ok
+        }
+
+        final LogContext ctx = written();
+        assertThat(ctx.title()).isEqualTo("fail");
+        assertThat(ctx.level()).isEqualTo(LogLevel.ERROR);
+        assertThat(ctx.throwable())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("test");
+    }
+
+    @Test
+    public void testDisabledLevel() {
+        when(output.isEnabled(LogLevel.INFO)).thenReturn(false);
+
+        service.answer();
+
+        final LogContext ctx = written();
+        assertThat(ctx.level()).isEqualTo(LogLevel.INFO);
+        assertThat(ctx.isSuppressed()).isTrue();
+        assertThat(ctx.trace()).isEmpty();
+    }
+
+    @Test
+    public void testConstructor() {
+        new Service();
+
+        final LogContext ctx = written();
+        assertThat(ctx.title()).isEqualTo("Service");
+        assertThat(ctx.level()).isEqualTo(LogLevel.INFO);
+    }
+
+    private static LogContext written() {
+        final ArgumentCaptor<LogContext> ctxCaptor = ArgumentCaptor.forClass(LogContext.class);
+        verify(output).write(ctxCaptor.capture());
+        return ctxCaptor.getValue();
+    }
+
+    /**
+     * Methods without @Loggable, so they are not woven by {@link LogAspect}
+     */
+    public static class Service {
+        public int answer() {
+            SmartLog.trace("step");
+            return 42;
+        }
+
+        public void fail() {
+            throw new IllegalStateException("test");
+        }
+    }
+
+    @Aspect
+    public static class ServiceLogAspect extends LogAroundAspect {
+        @Override
+        @Pointcut("execution(* org.smartlog.aop.LogAroundAspectTest.Service.*(..))"
+                + " || execution(org.smartlog.aop.LogAroundAspectTest.Service.new(..))")
+        public void loggable() {
+        }
+    }
+}
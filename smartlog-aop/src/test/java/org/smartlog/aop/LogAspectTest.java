@@ -14,6 +14,7 @@ import org.smartlog.output.Output;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 public class LogAspectTest {
@@ -21,7 +22,7 @@ public class LogAspectTest {
 
     @BeforeClass
     public static void setupClass() {
-        SmartLogConfig.getConfig().setDefaultOutputResolver(clazz -> output);
+        SmartLogConfig.update(builder -> builder.withDefaultOutputResolver(clazz -> output));
     }
 
     @Before
@@ -118,4 +119,24 @@ public class LogAspectTest {
         final LogContext ctx = ctxCaptor.getValue();
         assertThat(ctx.result()).isEqualTo("OK");
     }
-}
\ No newline at end of file
+
+    @Loggable
+    public int log6InstanceMethod() {
+        return 6;
+    }
+
+    @Test
+    public void test6() {
+        log6InstanceMethod();
+        log6InstanceMethod();
+
+        final ArgumentCaptor<LogContext> ctxCaptor = ArgumentCaptor.forClass(LogContext.class);
+        verify(output, times(2)).write(ctxCaptor.capture());
+
+        for (final LogContext ctx : ctxCaptor.getAllValues()) {
+            assertThat(ctx.title()).isEqualTo("log6InstanceMethod");
+            assertThat(ctx.loggableObject()).isSameAs(this);
+            assertThat(ctx.result()).isEqualTo(6);
+        }
+    }
+}
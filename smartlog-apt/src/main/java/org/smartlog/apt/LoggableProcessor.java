@@ -0,0 +1,361 @@
+package org.smartlog.apt;
+
+import org.smartlog.aop.Loggable;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates subclass {@code <Class>_Loggable} for every class with @Loggable methods.
+ * <p>
+ * Generated class overrides @Loggable methods with straight-line start/finish code, title and level are
+ * constants, so no reflection, join points or AspectJ weaving are needed. Use generated class instead of original one
+ * (e.g. register it in DI container). Static, private, final and abstract methods can't be wrapped and are reported
+ * as errors.
+ * Methods with sampling or duration threshold settings get their own static sampler or threshold.
+ */
+@SupportedAnnotationTypes("org.smartlog.aop.Loggable")
+public class LoggableProcessor extends AbstractProcessor {
+    static final String SUFFIX = "_Loggable";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final Map<TypeElement, List<ExecutableElement>> methodsByClass = new LinkedHashMap<>();
+
+        for (final Element element : roundEnv.getElementsAnnotatedWith(Loggable.class)) {
+            if (element.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+
+            final ExecutableElement method = (ExecutableElement) element;
+            final TypeElement type = (TypeElement) method.getEnclosingElement();
+
+            if (checkMethod(method) && checkClass(type)) {
+                methodsByClass.computeIfAbsent(type, t -> new ArrayList<>())
+                        .add(method);
+            }
+        }
+
+        for (final Map.Entry<TypeElement, List<ExecutableElement>> entry : methodsByClass.entrySet()) {
+            try {
+                generate(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                error(entry.getKey(), "Failed to generate @Loggable wrapper: " + e);
+            }
+        }
+
+        return true;
+    }
+
+    private boolean checkMethod(final ExecutableElement method) {
+        final Set<Modifier> modifiers = method.getModifiers();
+        if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.PRIVATE)
+                || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.ABSTRACT)) {
+            error(method, "@Loggable method must not be static, private, final or abstract to be wrapped by generated "
+                    + "class");
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean checkClass(final TypeElement type) {
+        final Set<Modifier> modifiers = type.getModifiers();
+        if (type.getKind() != ElementKind.CLASS || modifiers.contains(Modifier.FINAL)
+                || modifiers.contains(Modifier.PRIVATE)) {
+            error(type, "Class with @Loggable methods must be non-final and non-private");
+            return false;
+        }
+
+        if (type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) {
+            error(type, "Inner class with @Loggable methods must be static");
+            return false;
+        }
+
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            error(type, "Local and anonymous classes with @Loggable methods are not supported");
+            return false;
+        }
+
+        return true;
+    }
+
+    private void generate(final TypeElement type, final List<ExecutableElement> methods) throws IOException {
+        final String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        final String className = flatName(type) + SUFFIX;
+        final String typeParams = typeParameters(type.getTypeParameters());
+
+        final StringBuilder src = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+
+        src.append("/**\n")
+                .append(" * Generated by ").append(LoggableProcessor.class.getName())
+                .append(" for {@link ").append(type.getQualifiedName()).append("}\n")
+                .append(" */\n")
+                .append("public class ").append(className).append(typeParams)
+                .append(" extends ").append(type.getQualifiedName()).append(typeArguments(type.getTypeParameters()))
+                .append(" {\n")
+                .append("    private static final Class<?> ROOT_CLASS = ")
+                .append(rootClass(type).getQualifiedName()).append(".class;\n");
+
+        // samplers (have state) and thresholds are created once per method
+        final Map<ExecutableElement, String> samplerFields = new HashMap<>();
+        final Map<ExecutableElement, String> thresholdFields = new HashMap<>();
+        for (final ExecutableElement method : methods) {
+            final Loggable loggable = method.getAnnotation(Loggable.class);
+            if (hasSampler(loggable)) {
+                final String samplerField = "SAMPLER_" + samplerFields.size();
+                samplerFields.put(method, samplerField);
+                src.append("    private static final org.smartlog.Sampler ").append(samplerField)
+                        .append(" = org.smartlog.aop.LoggableSupport.sampler(")
+                        .append(loggable.sampleEvery()).append(", ")
+                        .append(loggable.sampleProbability()).append(", ")
+                        .append(loggable.rateLimit()).append(");\n");
+            }
+
+            if (hasThreshold(loggable)) {
+                final String thresholdField = "THRESHOLD_" + thresholdFields.size();
+                thresholdFields.put(method, thresholdField);
+                src.append("    private static final org.smartlog.DurationThreshold ").append(thresholdField)
+                        .append(" = org.smartlog.aop.LoggableSupport.threshold(")
+                        .append(loggable.minDurationMicros()).append("L, ")
+                        .append(loggable.promoteDurationMicros()).append("L, org.smartlog.LogLevel.")
+                        .append(loggable.promoteLevel().name()).append(");\n");
+            }
+        }
+
+        for (final ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (!constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                appendConstructor(src, className, constructor);
+            }
+        }
+
+        for (final ExecutableElement method : methods) {
+            appendMethod(src, method, samplerFields.get(method), thresholdFields.get(method));
+        }
+
+        src.append("}\n");
+
+        final JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                packageName.isEmpty() ? className : packageName + "." + className, type);
+        try (Writer writer = file.openWriter()) {
+            writer.write(src.toString());
+        }
+    }
+
+    private void appendConstructor(final StringBuilder src, final String className, final ExecutableElement constructor) {
+        src.append("\n    ")
+                .append(visibility(constructor))
+                .append(prefix(typeParameters(constructor.getTypeParameters())))
+                .append(className)
+                .append('(');
+        appendParameters(src, constructor);
+        src.append(')');
+        appendThrows(src, constructor);
+        src.append(" {\n")
+                .append("        super(");
+        appendArguments(src, constructor);
+        src.append(");\n")
+                .append("    }\n");
+    }
+
+    private void appendMethod(final StringBuilder src, final ExecutableElement method, final String samplerField,
+                              final String thresholdField) {
+        final Loggable loggable = method.getAnnotation(Loggable.class);
+        final String name = method.getSimpleName().toString();
+        final TypeMirror returnType = method.getReturnType();
+        final boolean isVoid = returnType.getKind() == TypeKind.VOID;
+
+        src.append("\n    @Override\n    ")
+                .append(visibility(method))
+                .append(prefix(typeParameters(method.getTypeParameters())))
+                .append(returnType)
+                .append(' ')
+                .append(name)
+                .append('(');
+        appendParameters(src, method);
+        src.append(')');
+        appendThrows(src, method);
+        src.append(" {\n")
+                .append("        final org.smartlog.LogContext $ctx = org.smartlog.aop.LoggableSupport.start(ROOT_CLASS, this");
+        if (samplerField != null) {
+            src.append(", org.smartlog.LogLevel.").append(loggable.defaultLevel().name())
+                    .append(", ").append(samplerField);
+        }
+        src.append(");\n")
+                .append("        try {\n");
+
+        if (isVoid) {
+            src.append("            super.").append(name).append('(');
+            appendArguments(src, method);
+            src.append(");\n");
+        } else {
+            src.append("            final ").append(returnType).append(" $ret = super.").append(name).append('(');
+            appendArguments(src, method);
+            src.append(");\n")
+                    .append("            org.smartlog.aop.LoggableSupport.returned($ctx, $ret);\n")
+                    .append("            return $ret;\n");
+        }
+
+        src.append("        } catch (Throwable $t) {\n")
+                .append("            org.smartlog.aop.LoggableSupport.threw($ctx, $t);\n")
+                .append("            throw $t;\n")
+                .append("        } finally {\n")
+                .append("            org.smartlog.aop.LoggableSupport.finish($ctx, \"").append(name)
+                .append("\", org.smartlog.LogLevel.").append(loggable.defaultLevel().name())
+                .append(thresholdField != null ? ", " + thresholdField : "").append(");\n")
+                .append("        }\n")
+                .append("    }\n");
+    }
+
+    private static boolean hasSampler(final Loggable loggable) {
+        return loggable.sampleEvery() != 1 || loggable.sampleProbability() != 1 || loggable.rateLimit() != 0;
+    }
+
+    private static boolean hasThreshold(final Loggable loggable) {
+        return loggable.minDurationMicros() > 0 || loggable.promoteDurationMicros() > 0;
+    }
+
+    private static void appendParameters(final StringBuilder src, final ExecutableElement method) {
+        final List<? extends VariableElement> params = method.getParameters();
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                src.append(", ");
+            }
+
+            final VariableElement param = params.get(i);
+            String paramType = param.asType().toString();
+            if (method.isVarArgs() && i == params.size() - 1 && paramType.endsWith("[]")) {
+                paramType = paramType.substring(0, paramType.length() - 2) + "...";
+            }
+
+            src.append("final ")
+                    .append(paramType)
+                    .append(' ')
+                    .append(param.getSimpleName());
+        }
+    }
+
+    private static void appendArguments(final StringBuilder src, final ExecutableElement method) {
+        final List<? extends VariableElement> params = method.getParameters();
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                src.append(", ");
+            }
+
+            src.append(params.get(i).getSimpleName());
+        }
+    }
+
+    private static void appendThrows(final StringBuilder src, final ExecutableElement method) {
+        final List<? extends TypeMirror> thrownTypes = method.getThrownTypes();
+        for (int i = 0; i < thrownTypes.size(); i++) {
+            src.append(i == 0 ? " throws " : ", ")
+                    .append(thrownTypes.get(i));
+        }
+    }
+
+    private static String visibility(final Element element) {
+        final Set<Modifier> modifiers = element.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return "public ";
+        } else if (modifiers.contains(Modifier.PROTECTED)) {
+            return "protected ";
+        } else {
+            return "";
+        }
+    }
+
+    private static String typeParameters(final List<? extends TypeParameterElement> typeParams) {
+        if (typeParams.isEmpty()) {
+            return "";
+        }
+
+        final StringBuilder result = new StringBuilder("<");
+        for (int i = 0; i < typeParams.size(); i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+
+            final TypeParameterElement typeParam = typeParams.get(i);
+            result.append(typeParam.getSimpleName());
+
+            final List<? extends TypeMirror> bounds = typeParam.getBounds();
+            boolean first = true;
+            for (final TypeMirror bound : bounds) {
+                if ("java.lang.Object".equals(bound.toString())) {
+                    continue;
+                }
+
+                result.append(first ? " extends " : " & ")
+                        .append(bound);
+                first = false;
+            }
+        }
+
+        return result.append('>').toString();
+    }
+
+    private static String prefix(final String text) {
+        return text.isEmpty() ? text : text + " ";
+    }
+
+    private static String typeArguments(final List<? extends TypeParameterElement> typeParams) {
+        if (typeParams.isEmpty()) {
+            return "";
+        }
+
+        final StringBuilder result = new StringBuilder("<");
+        for (int i = 0; i < typeParams.size(); i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+
+            result.append(typeParams.get(i).getSimpleName());
+        }
+
+        return result.append('>').toString();
+    }
+
+    private static TypeElement rootClass(final TypeElement type) {
+        TypeElement curr = type;
+        while (curr.getEnclosingElement() instanceof TypeElement) {
+            curr = (TypeElement) curr.getEnclosingElement();
+        }
+
+        return curr;
+    }
+
+    private static String flatName(final TypeElement type) {
+        String name = type.getSimpleName().toString();
+        Element curr = type.getEnclosingElement();
+        while (curr instanceof TypeElement) {
+            name = curr.getSimpleName() + "_" + name;
+            curr = curr.getEnclosingElement();
+        }
+
+        return name;
+    }
+
+    private void error(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
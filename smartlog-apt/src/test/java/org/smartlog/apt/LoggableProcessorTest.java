@@ -0,0 +1,183 @@
+package org.smartlog.apt;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.smartlog.LogContext;
+import org.slf4j.Logger;
+import org.smartlog.LogLevel;
+import org.smartlog.SmartLog;
+import org.smartlog.SmartLogConfig;
+import org.smartlog.aop.Loggable;
+import org.smartlog.output.Output;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class LoggableProcessorTest {
+    private static final String SERVICE = "package test;\n"
+            + "import org.smartlog.LogLevel;\n"
+            + "import org.smartlog.SmartLog;\n"
+            + "import org.smartlog.aop.Loggable;\n"
+            + "public class Service {\n"
+            + "    @Loggable\n"
+            + "    public int answer(final int ctx) {\n"
+            + "        SmartLog.trace(\"arg %d\", ctx);\n"
+            + "        return 42;\n"
+            + "    }\n"
+            + "    @Loggable(defaultLevel = LogLevel.DEBUG)\n"
+            + "    public void fail() throws java.io.IOException {\n"
+            + "        throw new java.io.IOException(\"io\");\n"
+            + "    }\n"
+            + "}\n";
+
+    private final Output output = mock(Output.class);
+
+    @Before
+    public void setup() {
+        SmartLogConfig.update(builder -> builder.withDefaultOutputResolver(clazz -> output));
+    }
+
+    @Test
+    public void testGeneratedWrapper() throws Exception {
+        final Path dir = compile("test/Service.java", SERVICE);
+        assertThat(dir.resolve("test/Service_Loggable.class")).exists();
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader())) {
+            final Object service = classLoader.loadClass("test.Service_Loggable").newInstance();
+
+            final Object result = service.getClass().getMethod("answer", int.class).invoke(service, 1);
+            assertThat(result).isEqualTo(42);
+
+            final ArgumentCaptor<LogContext> ctxCaptor = ArgumentCaptor.forClass(LogContext.class);
+            verify(output).write(ctxCaptor.capture());
+
+            final LogContext ctx = ctxCaptor.getValue();
+            assertThat(ctx.title()).isEqualTo("answer");
+            assertThat(ctx.level()).isEqualTo(LogLevel.INFO);
+            assertThat(ctx.result()).isEqualTo(42);
+            assertThat(ctx.trace()).isEqualTo("arg 1");
+        }
+    }
+
+    @Test
+    public void testUncaughtException() throws Exception {
+        final Path dir = compile("test/Service.java", SERVICE);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader())) {
+            final Object service = classLoader.loadClass("test.Service_Loggable").newInstance();
+
+            try {
+                service.getClass().getMethod("fail").invoke(service);
+            } catch (java.lang.reflect.InvocationTargetException e) {
+                assertThat(e.getCause()).hasMessage("io");
+            }
+
+            final ArgumentCaptor<LogContext> ctxCaptor = ArgumentCaptor.forClass(LogContext.class);
+            verify(output).write(ctxCaptor.capture());
+
+            final LogContext ctx = ctxCaptor.getValue();
+            assertThat(ctx.title()).isEqualTo("fail");
+            assertThat(ctx.level()).isEqualTo(LogLevel.ERROR);
+            assertThat(ctx.throwable()).hasMessage("io");
+        }
+    }
+
+    @Test
+    public void testStaticMethodIsError() throws Exception {
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final boolean success = compile(Files.createTempDirectory("smartlog-apt"), diagnostics, "test/Static.java",
+                "package test;\n"
+                        + "public class Static {\n"
+                        + "    @org.smartlog.aop.Loggable\n"
+                        + "    public static void run() {\n"
+                        + "    }\n"
+                        + "}\n");
+
+        assertThat(success).isFalse();
+        assertThat(diagnostics.getDiagnostics().stream()
+                .anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR
+                        && d.getMessage(null).contains("must not be static, private, final or abstract")))
+                .isTrue();
+    }
+
+    @Test
+    public void testAbstractMethodIsError() throws Exception {
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final boolean success = compile(Files.createTempDirectory("smartlog-apt"), diagnostics, "test/Abstract.java",
+                "package test;\n"
+                        + "public abstract class Abstract {\n"
+                        + "    @org.smartlog.aop.Loggable\n"
+                        + "    public abstract void run();\n"
+                        + "}\n");
+
+        assertThat(success).isFalse();
+        assertThat(diagnostics.getDiagnostics().stream()
+                .anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR
+                        && d.getMessage(null).contains("must not be static, private, final or abstract")))
+                .isTrue();
+    }
+
+    private static Path compile(final String fileName, final String source) throws Exception {
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final Path dir = Files.createTempDirectory("smartlog-apt");
+
+        final boolean success = compile(dir, diagnostics, fileName, source);
+        assertThat(success)
+                .as("compilation errors: %s", diagnostics.getDiagnostics())
+                .isTrue();
+
+        return dir;
+    }
+
+    private static boolean compile(final Path dir, final DiagnosticCollector<JavaFileObject> diagnostics,
+                                   final String fileName, final String source) throws Exception {
+        final Path file = dir.resolve(fileName);
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-d", dir.toString(), "-s", dir.toString(),
+                            "-classpath", classPath(SmartLog.class, Loggable.class, Logger.class)),
+                    null, fileManager.getJavaFileObjectsFromFiles(Collections.singletonList(file.toFile())));
+            task.setProcessors(Collections.singletonList(new LoggableProcessor()));
+
+            return task.call();
+        }
+    }
+
+    /**
+     * Surefire may run tests with manifest-only jar, so build compiler class path from class locations
+     */
+    private static String classPath(final Class... classes) throws URISyntaxException {
+        final StringBuilder result = new StringBuilder();
+        for (final Class clazz : classes) {
+            if (result.length() > 0) {
+                result.append(File.pathSeparatorChar);
+            }
+
+            result.append(new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()));
+        }
+
+        return result.toString();
+    }
+}
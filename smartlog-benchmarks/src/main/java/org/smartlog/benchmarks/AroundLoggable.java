@@ -0,0 +1,14 @@
+package org.smartlog.benchmarks;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks methods woven by {@link BenchmarkAroundAspect}. Methods without @Loggable are logged with INFO level.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface AroundLoggable {
+}
@@ -0,0 +1,13 @@
+package org.smartlog.benchmarks;
+
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.smartlog.aop.LogAroundAspect;
+
+@Aspect
+public class BenchmarkAroundAspect extends LogAroundAspect {
+    @Override
+    @Pointcut("execution(@org.smartlog.benchmarks.AroundLoggable * *(..))")
+    public void loggable() {
+    }
+}
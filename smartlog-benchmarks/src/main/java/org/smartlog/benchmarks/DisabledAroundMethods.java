@@ -0,0 +1,22 @@
+package org.smartlog.benchmarks;
+
+import org.smartlog.SmartLog;
+
+/**
+ * Methods for {@link LogAroundAspectBenchmark}, logger of this class is WARN (see logback.xml).
+ */
+final class DisabledAroundMethods {
+    private DisabledAroundMethods() {
+    }
+
+    @AroundLoggable
+    static int loggable(final int arg) {
+        return arg + 1;
+    }
+
+    @AroundLoggable
+    static int loggableWithTrace(final int arg) {
+        SmartLog.trace("arg %d", arg);
+        return arg + 1;
+    }
+}
@@ -0,0 +1,53 @@
+package org.smartlog.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.smartlog.SmartLog;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of single around advice (LogAroundAspect), compare with {@link LogAspectBenchmark}.
+ * <p>
+ * Methods are logged with INFO level, logger of {@link DisabledAroundMethods} is WARN, so they measure disabled
+ * records.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LogAroundAspectBenchmark {
+    private int value;
+
+    @Benchmark
+    public int aroundEnabled() {
+        return loggable(value++);
+    }
+
+    @Benchmark
+    public int aroundDisabled() {
+        return DisabledAroundMethods.loggable(value++);
+    }
+
+    @Benchmark
+    public int aroundEnabledWithTrace() {
+        return loggableWithTrace(value++);
+    }
+
+    @Benchmark
+    public int aroundDisabledWithTrace() {
+        return DisabledAroundMethods.loggableWithTrace(value++);
+    }
+
+    @AroundLoggable
+    private static int loggable(final int arg) {
+        return arg + 1;
+    }
+
+    @AroundLoggable
+    private static int loggableWithTrace(final int arg) {
+        SmartLog.trace("arg %d", arg);
+        return arg + 1;
+    }
+}
@@ -0,0 +1,74 @@
+package org.smartlog.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.smartlog.LogLevel;
+import org.smartlog.SmartLog;
+import org.smartlog.aop.Loggable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of @Loggable advices woven by LogAspect compared to plain method call.
+ * <p>
+ * Default output logs to INFO logger, so DEBUG methods measure disabled records.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LogAspectBenchmark {
+    private int value;
+
+    @Benchmark
+    public int baseline() {
+        return plain(value++);
+    }
+
+    @Benchmark
+    public int loggableInfo() {
+        return loggableInfo(value++);
+    }
+
+    @Benchmark
+    public int loggableDebug() {
+        return loggableDebug(value++);
+    }
+
+    @Benchmark
+    public int loggableInfoWithTrace() {
+        return loggableInfoWithTrace(value++);
+    }
+
+    @Benchmark
+    public int loggableDebugWithTrace() {
+        return loggableDebugWithTrace(value++);
+    }
+
+    private static int plain(final int arg) {
+        return arg + 1;
+    }
+
+    @Loggable
+    private static int loggableInfo(final int arg) {
+        return arg + 1;
+    }
+
+    @Loggable(defaultLevel = LogLevel.DEBUG)
+    private static int loggableDebug(final int arg) {
+        return arg + 1;
+    }
+
+    @Loggable
+    private static int loggableInfoWithTrace(final int arg) {
+        SmartLog.trace("arg %d", arg);
+        return arg + 1;
+    }
+
+    @Loggable(defaultLevel = LogLevel.DEBUG)
+    private static int loggableDebugWithTrace(final int arg) {
+        SmartLog.trace("arg %d", arg);
+        return arg + 1;
+    }
+}
@@ -0,0 +1,54 @@
+package org.smartlog.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.smartlog.LogContext;
+import org.smartlog.SmartLog;
+import org.smartlog.format.SimpleTextFormat;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.smartlog.TraceFlag.WRITE_TIME;
+
+/**
+ * Rendering of already finished log context with SimpleTextFormat
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimpleTextFormatBenchmark {
+    private final SimpleTextFormat defaultFormat = new SimpleTextFormat("${title} - [${result}], trace: [${trace}] [${time} ms]");
+
+    private final SimpleTextFormat attrsFormat = new SimpleTextFormat("${title} - [${result}], a=${a}, b=${b}, c=${c} [${time} ms]");
+
+    private LogContext ctx;
+
+    @Setup
+    public void setup() {
+        // output is a no-op, finished context keeps all attributes
+        ctx = SmartLog.start(log -> {
+        })
+                .title("benchmark title %d", 42)
+                .trace("step1")
+                .trace(WRITE_TIME, "step2")
+                .trace("step %d", 3)
+                .attach("a", "value")
+                .attach("b", 42)
+                .attach("c", 42.5)
+                .result("OK");
+
+        SmartLog.finish();
+    }
+
+    @Benchmark
+    public String formatDefault() {
+        return defaultFormat.format(ctx);
+    }
+
+    @Benchmark
+    public String formatAttrs() {
+        return attrsFormat.format(ctx);
+    }
+}
@@ -0,0 +1,57 @@
+package org.smartlog.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.smartlog.LogLevel;
+import org.smartlog.SmartLog;
+import org.smartlog.output.Output;
+import org.smartlog.output.Slf4JOutput;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.smartlog.TraceFlag.MARK_TIME;
+import static org.smartlog.TraceFlag.WRITE_TIME;
+
+/**
+ * Full SmartLog.start -> trace -> SmartLog.finish cycle through Slf4JOutput.
+ * <p>
+ * Logger is configured with INFO level, so DEBUG measures disabled records and INFO - enabled ones.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SmartLogBenchmark {
+    private static final Output OUTPUT = Slf4JOutput.create()
+            .withLoggerFor(SmartLogBenchmark.class)
+            .build();
+
+    @Param({"DEBUG", "INFO"})
+    private LogLevel level;
+
+    private int counter;
+
+    @Benchmark
+    public void startFinish() {
+        SmartLog.start(OUTPUT)
+                .level(level);
+
+        SmartLog.finish();
+    }
+
+    @Benchmark
+    public void startTraceFinish() {
+        SmartLog.start(OUTPUT)
+                .level(level)
+                .title("benchmark-%d", counter++);
+
+        SmartLog.trace(MARK_TIME, "start");
+        SmartLog.trace("step %d", 1);
+        SmartLog.trace(WRITE_TIME, "step %d", 2);
+        SmartLog.attach("counter", counter);
+        SmartLog.result("OK");
+
+        SmartLog.finish();
+    }
+}
@@ -0,0 +1,62 @@
+package org.smartlog.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.smartlog.LogContext;
+import org.smartlog.SmartLog;
+import org.smartlog.output.Output;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of static SmartLog API, which resolves current context from thread local on each call.
+ * <p>
+ * Output drops everything, so only context lookup and stack push/pop are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StaticApiBenchmark {
+    private static final Output OUTPUT = log -> {
+    };
+
+    @Param({"1", "4"})
+    private int depth;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        for (int i = 0; i < depth; i++) {
+            SmartLog.start(OUTPUT);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        for (int i = 0; i < depth; i++) {
+            SmartLog.finish();
+        }
+    }
+
+    @Benchmark
+    public LogContext current() {
+        return SmartLog.current();
+    }
+
+    @Benchmark
+    public LogContext title() {
+        return SmartLog.title("title");
+    }
+
+    @Benchmark
+    public LogContext attach() {
+        return SmartLog.attach("name", "value");
+    }
+
+    @Benchmark
+    public void startFinish() {
+        SmartLog.start(OUTPUT);
+        SmartLog.finish();
+    }
+}
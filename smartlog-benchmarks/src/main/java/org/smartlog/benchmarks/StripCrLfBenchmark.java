@@ -0,0 +1,31 @@
+package org.smartlog.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.smartlog.Util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Util.stripCrLf for typical (no CR/LF) and multiline messages
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StripCrLfBenchmark {
+    private final String singleLine = "getUser - [User{id=42, name='alice'}], trace: [select from db [3 ms]; map to dto] [5 ms]";
+
+    private final String multiLine = "getUser - [User{id=42,\nname='alice'}], trace: [select from db [3 ms];\r\nmap to dto] [5 ms]";
+
+    @Benchmark
+    public String singleLine() {
+        return Util.stripCrLf(singleLine);
+    }
+
+    @Benchmark
+    public String multiLine() {
+        return Util.stripCrLf(multiLine);
+    }
+}
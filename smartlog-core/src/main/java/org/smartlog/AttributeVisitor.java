@@ -0,0 +1,17 @@
+package org.smartlog;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Receives attached attributes in attach order, primitive values are passed without boxing
+ */
+public interface AttributeVisitor {
+    void visit(@Nonnull String name, @Nullable Object value);
+
+    void visit(@Nonnull String name, long value);
+
+    void visit(@Nonnull String name, double value);
+
+    void visit(@Nonnull String name, boolean value);
+}
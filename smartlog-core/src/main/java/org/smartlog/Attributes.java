@@ -0,0 +1,232 @@
+package org.smartlog;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Attached attributes stored as parallel arrays in attach order: name, value kind, primitive value and object value.
+ * <p>
+ * Primitive values are not boxed, lookup is linear scan which is faster than hashing for few attributes
+ * (names are usually interned literals, so they are compared by reference).
+ */
+@NotThreadSafe
+final class Attributes {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private static final byte OBJECT = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte BOOLEAN = 3;
+
+    /**
+     * Stored as long, but read back as Integer, so int value keeps its boxed type
+     */
+    private static final byte INT = 4;
+
+    /**
+     * Stored as float bits, read back as Float, so it is rendered without widening to double (1.1f is not
+     * 1.100000023841858)
+     */
+    private static final byte FLOAT = 5;
+
+    private String[] names = new String[INITIAL_CAPACITY];
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Primitive value (double as raw bits, boolean as 0/1)
+     */
+    private long[] values = new long[INITIAL_CAPACITY];
+    private Object[] objects = new Object[INITIAL_CAPACITY];
+
+    private int size;
+
+    /**
+     * Boxed view of attributes, built on demand
+     */
+    @Nullable
+    private Map<String, Object> map;
+
+    void put(@Nonnull final String name, @Nullable final Object value) {
+        put(name, OBJECT, 0, value);
+    }
+
+    void put(@Nonnull final String name, final int value) {
+        put(name, INT, value, null);
+    }
+
+    void put(@Nonnull final String name, final long value) {
+        put(name, LONG, value, null);
+    }
+
+    void put(@Nonnull final String name, final float value) {
+        put(name, FLOAT, Float.floatToRawIntBits(value), null);
+    }
+
+    void put(@Nonnull final String name, final double value) {
+        put(name, DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    void put(@Nonnull final String name, final boolean value) {
+        put(name, BOOLEAN, value ? 1 : 0, null);
+    }
+
+    void putAll(@Nonnull final Attributes other) {
+        for (int i = 0; i < other.size; i++) {
+            put(other.names[i], other.kinds[i], other.values[i], other.objects[i]);
+        }
+    }
+
+    private void put(@Nonnull final String name, final byte kind, final long value, @Nullable final Object object) {
+        int index = indexOf(name);
+        if (index < 0) {
+            if (size == names.length) {
+                final int capacity = size * 2;
+                names = Arrays.copyOf(names, capacity);
+                kinds = Arrays.copyOf(kinds, capacity);
+                values = Arrays.copyOf(values, capacity);
+                objects = Arrays.copyOf(objects, capacity);
+            }
+
+            index = size++;
+            names[index] = name;
+        }
+
+        kinds[index] = kind;
+        values[index] = value;
+        objects[index] = object;
+        map = null;
+    }
+
+    private int indexOf(@Nonnull final String name) {
+        for (int i = 0; i < size; i++) {
+            final String other = names[i];
+            if (other == name || other.equals(name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Nullable
+    Object get(@Nonnull final String name) {
+        final int index = indexOf(name);
+        return index >= 0 ? value(index) : null;
+    }
+
+    /**
+     * Append value of attribute, null and missing values are not appended
+     *
+     * @return true if value is appended
+     */
+    boolean append(@Nonnull final String name, @Nonnull final StringBuilder builder) {
+        final int index = indexOf(name);
+        if (index < 0) {
+            return false;
+        }
+
+        switch (kinds[index]) {
+            case INT:
+            case LONG:
+                builder.append(values[index]);
+                return true;
+            case FLOAT:
+                builder.append(Float.intBitsToFloat((int) values[index]));
+                return true;
+            case DOUBLE:
+                builder.append(Double.longBitsToDouble(values[index]));
+                return true;
+            case BOOLEAN:
+                builder.append(values[index] != 0);
+                return true;
+            default:
+                if (objects[index] == null) {
+                    return false;
+                }
+
+                builder.append(objects[index]);
+                return true;
+        }
+    }
+
+    void visit(@Nonnull final AttributeVisitor visitor) {
+        for (int i = 0; i < size; i++) {
+            switch (kinds[i]) {
+                case INT:
+                case LONG:
+                    visitor.visit(names[i], values[i]);
+                    break;
+                case FLOAT:
+                    // visitor has no float method, boxed Float keeps its type for formats
+                    visitor.visit(names[i], (Object) Float.intBitsToFloat((int) values[i]));
+                    break;
+                case DOUBLE:
+                    visitor.visit(names[i], Double.longBitsToDouble(values[i]));
+                    break;
+                case BOOLEAN:
+                    visitor.visit(names[i], values[i] != 0);
+                    break;
+                default:
+                    visitor.visit(names[i], objects[i]);
+            }
+        }
+    }
+
+    @Nullable
+    private Object value(final int index) {
+        switch (kinds[index]) {
+            case INT:
+                return (int) values[index];
+            case LONG:
+                return values[index];
+            case FLOAT:
+                return Float.intBitsToFloat((int) values[index]);
+            case DOUBLE:
+                return Double.longBitsToDouble(values[index]);
+            case BOOLEAN:
+                return values[index] != 0;
+            default:
+                return objects[index];
+        }
+    }
+
+    /**
+     * @return unmodifiable map (name -> boxed value) in attach order
+     */
+    @Nonnull
+    Map<String, Object> asMap() {
+        if (map == null) {
+            final Map<String, Object> result = new LinkedHashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                result.put(names[i], value(i));
+            }
+
+            map = Collections.unmodifiableMap(result);
+        }
+
+        return map;
+    }
+
+    @Nonnull
+    Attributes copy() {
+        final Attributes copy = new Attributes();
+        copy.putAll(this);
+        return copy;
+    }
+
+    void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+        map = null;
+    }
+}
@@ -0,0 +1,108 @@
+package org.smartlog;
+
+import org.smartlog.format.Format;
+import org.smartlog.output.Output;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Log context captured on one thread to be continued by task on another thread.
+ * <p>
+ * Task works with its own fork of captured context, so parent context is never changed concurrently. When task
+ * is done, fork trace, attributes and throwable (as suppressed) are merged back to parent by the parent thread
+ * (at latest on finish).
+ * If parent is already finished, fork is written to output as separate record. Fork of nested task is merged to
+ * fork of outer task in the same way.
+ */
+@ThreadSafe
+final class CapturedContext {
+    @Nonnull
+    private final LogContext parent;
+
+    private final int generation;
+
+    @Nonnull
+    private final Output output;
+
+    @Nullable
+    private final LogLevel level;
+
+    @Nullable
+    private final Format format;
+
+    @Nullable
+    private final String title;
+
+    @Nullable
+    private final String formattedTitle;
+
+    private final boolean sampled;
+
+    CapturedContext(@Nonnull final LogContext parent) {
+        this.parent = parent;
+        this.generation = parent.generation();
+        this.output = parent.output();
+        this.level = parent.level();
+        this.format = parent.format();
+        // arguments are formatted on parent thread, template stays metrics key of fork
+        this.title = parent.rawTitle();
+        this.formattedTitle = parent.hasTitleArgs() ? parent.title() : null;
+        this.sampled = parent.isSampled();
+    }
+
+    <T> T call(@Nonnull final Callable<T> task) throws Exception {
+        final LogContextStack stack = SmartLog.contexts();
+        final int depth = stack.depth();
+
+        final LogContext fork = new LogContext(output)
+                .level(level)
+                .format(format)
+                .formattedTitle(title, formattedTitle)
+                .sampled(sampled);
+        stack.push(fork);
+
+        try {
+            return task.call();
+        } catch (Exception | Error e) {
+            fork.throwable(e);
+            throw e;
+        } finally {
+            // drop contexts not finished by task
+            while (stack.depth() > depth) {
+                stack.pop();
+            }
+
+            // forks of nested tasks are merged now, later ones are written as separate records
+            fork.clearMDC()
+                    .recoverThreadName()
+                    .finishTime()
+                    .sealForks();
+
+            if (!parent.addFork(fork, generation) && fork.shouldWrite()) {
+                output.write(fork);
+            }
+        }
+    }
+
+    void run(@Nonnull final Runnable task) {
+        get(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    <T> T get(@Nonnull final Supplier<T> task) {
+        try {
+            return call(task::get);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // unreachable, supplier can't throw checked exception
+            throw new RuntimeException(e);
+        }
+    }
+}
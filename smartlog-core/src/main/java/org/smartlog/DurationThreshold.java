@@ -0,0 +1,107 @@
+package org.smartlog;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slow call mode: record is written only if loggable lasts at least min duration (or has throwable),
+ * level of record is raised if loggable lasts longer than promote duration.
+ * <p>
+ * Threshold of context (e.g. from @Loggable) is used first, then threshold of output, then default one from
+ * {@link SmartLogConfig}.
+ */
+@Immutable
+public class DurationThreshold {
+    private final long minNanos;
+
+    private final long promoteNanos;
+
+    @Nullable
+    private final LogLevel promoteLevel;
+
+    protected DurationThreshold(final Builder builder) {
+        this.minNanos = builder.minNanos;
+        this.promoteNanos = builder.promoteNanos;
+        this.promoteLevel = builder.promoteLevel;
+    }
+
+    public static Builder create() {
+        return new Builder();
+    }
+
+    public long getMinNanos() {
+        return minNanos;
+    }
+
+    public long getPromoteNanos() {
+        return promoteNanos;
+    }
+
+    @Nullable
+    public LogLevel getPromoteLevel() {
+        return promoteLevel;
+    }
+
+    /**
+     * Apply threshold to finished context
+     *
+     * @param ctx finished context
+     * @return false if record should be dropped
+     */
+    boolean apply(@Nonnull final LogContext ctx) {
+        final long duration = ctx.durationNanos();
+        if (duration < minNanos && ctx.throwable() == null) {
+            return false;
+        }
+
+        if (promoteLevel != null && duration >= promoteNanos) {
+            final LogLevel level = ctx.level();
+            if (level == null || level.compareTo(promoteLevel) < 0) {
+                ctx.level(promoteLevel);
+            }
+        }
+
+        return true;
+    }
+
+    public static class Builder {
+        private long minNanos;
+        private long promoteNanos = Long.MAX_VALUE;
+        private LogLevel promoteLevel;
+
+        protected Builder() {
+        }
+
+        /**
+         * Drop records of loggables faster than given duration, except ones with throwable
+         *
+         * @param duration min duration
+         * @param unit     duration unit
+         * @return this
+         */
+        public Builder withMinDuration(final long duration, @Nonnull final TimeUnit unit) {
+            this.minNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Raise level of records of loggables slower than given duration
+         *
+         * @param duration promote duration
+         * @param unit     duration unit
+         * @param level    min level of slow records, e.g. WARN
+         * @return this
+         */
+        public Builder withPromotion(final long duration, @Nonnull final TimeUnit unit, @Nonnull final LogLevel level) {
+            this.promoteNanos = unit.toNanos(duration);
+            this.promoteLevel = level;
+            return this;
+        }
+
+        public DurationThreshold build() {
+            return new DurationThreshold(this);
+        }
+    }
+}
@@ -8,20 +8,67 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.util.*;
-
-import static java.lang.System.currentTimeMillis;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
  */
 @NotThreadSafe
 public class LogContext implements AutoCloseable {
-    private final long startTime = currentTimeMillis();
+    /**
+     * Max number of trace entries kept by recycled context
+     */
+    private static final int MAX_RECYCLED_TRACE_CAPACITY = 256;
+
+    @Nonnull
+    private TimeSource timeSource;
+
+    /**
+     * Wall clock start time (ms)
+     */
+    private long startTime;
+
+    /**
+     * Start time plus duration (ms)
+     */
     private long endTime = 0;
 
+    /**
+     * Monotonic start and end time (ns), used for durations
+     */
+    private long startNanos;
+    private long endNanos;
+
+    /**
+     * Context is owned by per-thread pool and returned to it on finish
+     */
+    private boolean recyclable;
+
+    /**
+     * Context was finished and returned to pool, any change is an error
+     */
+    private boolean closed;
+
     @Nonnull
     private Output output;
 
+    /**
+     * Output is checked to be disabled for current level, cached until output or level is changed
+     */
+    @Nullable
+    private Boolean suppressed;
+
+    /**
+     * Sampling decision made on start, see {@link Sampler}
+     */
+    private boolean sampled = true;
+
+    /**
+     * Slow call threshold, overrides threshold of output
+     */
+    @Nullable
+    private DurationThreshold threshold;
+
     @Nullable
     private Object loggableObject;
 
@@ -46,12 +93,24 @@ public class LogContext implements AutoCloseable {
     @Nullable
     private Object[] titleArgs;
 
+    /**
+     * Title formatted with arguments, title template is kept in {@link #title}
+     */
+    @Nullable
+    private String formattedTitle;
+
     /**
      * Result attribute
      */
     @Nullable
     private Object result;
 
+    /**
+     * Arguments of result description, description is formatted on first read
+     */
+    @Nullable
+    private Object[] resultArgs;
+
     /**
      * Throwable attribute
      */
@@ -62,15 +121,21 @@ public class LogContext implements AutoCloseable {
     private ArrayList<Throwable> suppressedThrowables;
 
     /**
-     * Time mark for trace
+     * Time mark for trace (ns)
      */
-    private long timeMark = startTime;
+    private long timeMark;
 
     /**
-     * Trace
+     * Trace entries
      */
     @Nullable
-    private StringBuilder trace;
+    private TraceBuffer trace;
+
+    /**
+     * Rendered trace, cached until next entry is added
+     */
+    @Nullable
+    private String renderedTrace;
 
     /**
      * Replaced mdc elements
@@ -82,7 +147,25 @@ public class LogContext implements AutoCloseable {
      * Context (id -> object)
      */
     @Nullable
-    private Map<String, Object> attrs = null;
+    private Attributes attrs = null;
+
+    /**
+     * Forks finished by tasks on other threads and not merged yet, guarded by this
+     */
+    @Nullable
+    private ArrayList<LogContext> forks;
+
+    /**
+     * Set on finish, forks finished later are written as separate records, guarded by this
+     */
+    private boolean forksSealed;
+
+    /**
+     * Incremented when recycled context is reused, protects from merging fork into next loggable, guarded by this
+     */
+    private int generation;
+
+    private volatile boolean hasForks;
 
     /**
      * Old thread name
@@ -90,8 +173,18 @@ public class LogContext implements AutoCloseable {
     @Nullable
     private String oldThreadName;
 
+    /**
+     * Thread name and MDC of thread which took snapshot, set only in snapshot
+     */
+    @Nullable
+    private String snapshotThreadName;
+
+    @Nullable
+    private Map<String, String> snapshotMDC;
+
     protected LogContext(@Nonnull final Output output) {
         this.output = output;
+        start(SmartLogConfig.getConfig().getTimeSource());
     }
 
     public Output output() {
@@ -99,7 +192,9 @@ public class LogContext implements AutoCloseable {
     }
 
     public LogContext output(final Output output) {
+        checkOpen();
         this.output = output;
+        this.suppressed = null;
         return this;
     }
 
@@ -109,6 +204,7 @@ public class LogContext implements AutoCloseable {
     }
 
     public LogContext loggableObject(@Nullable final Object loggableObject) {
+        checkOpen();
         this.loggableObject = loggableObject;
         return this;
     }
@@ -126,26 +222,131 @@ public class LogContext implements AutoCloseable {
         return this;
     }
 
+    /**
+     * @return duration in nanoseconds, measured by monotonic clock
+     */
+    public long durationNanos() {
+        return endNanos - startNanos;
+    }
+
+    private void start(@Nonnull final TimeSource newTimeSource) {
+        this.timeSource = newTimeSource;
+        this.startTime = newTimeSource.currentTimeMillis();
+        this.startNanos = newTimeSource.nanoTime();
+        this.timeMark = startNanos;
+        this.endTime = 0;
+        this.endNanos = startNanos;
+    }
+
+    @Nullable
+    public DurationThreshold threshold() {
+        return threshold;
+    }
+
+    public LogContext threshold(@Nullable final DurationThreshold threshold) {
+        checkOpen();
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * Apply slow call threshold (may raise level), unsampled record is written only if it has throwable,
+     * ERROR level or it is slow
+     *
+     * @return true if finished context should be passed to output
+     */
+    protected boolean shouldWrite() {
+        final SmartLogConfig config = SmartLogConfig.getConfig();
+
+        DurationThreshold currThreshold = threshold != null ? threshold : output.threshold();
+        if (currThreshold == null) {
+            currThreshold = config.getDefaultThreshold();
+        }
+
+        if (currThreshold != null && !currThreshold.apply(this)) {
+            return false;
+        }
+
+        return sampled
+                || throwable != null
+                || level == LogLevel.ERROR
+                || durationNanos() >= config.getKeepUnsampledSlowerThanNanos();
+    }
+
+    /**
+     * Fix end time, end wall clock time is derived from monotonic duration
+     *
+     * @return this
+     */
+    protected LogContext finishTime() {
+        this.endNanos = timeSource.nanoTime();
+        this.endTime = startTime + TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+        return this;
+    }
+
     @Nullable
     public String title() {
+        if (formattedTitle != null) {
+            return formattedTitle;
+        }
+
         if (titleArgs != null && title != null) {
-            title = String.format(title, titleArgs);
+            formattedTitle = MessageTemplate.of(title).format(titleArgs);
             titleArgs = null;
+            return formattedTitle;
         }
 
         return title;
     }
 
+    /**
+     * Title without formatting arguments, e.g. key for per-title metrics, it is not changed by {@link #title()}
+     *
+     * @return title or its format
+     */
+    @Nullable
+    public String rawTitle() {
+        return title;
+    }
+
+    /**
+     * @return true if title has formatting arguments, so {@link #title()} is not the same as {@link #rawTitle()}
+     */
+    public boolean hasTitleArgs() {
+        return title != null && (titleArgs != null || formattedTitle != null);
+    }
+
     @Nonnull
     public LogContext title(@Nullable final String title) {
+        checkOpen();
         this.title = title;
+        this.titleArgs = null;
+        this.formattedTitle = null;
         return this;
     }
 
     @Nonnull
     public LogContext title(@Nullable final String title, final Object... titleArgs) {
+        checkOpen();
         this.title = title;
         this.titleArgs = titleArgs;
+        this.formattedTitle = null;
+        return this;
+    }
+
+    /**
+     * Set title template with title already formatted elsewhere, e.g. title of captured or decoded context
+     *
+     * @param title          title template
+     * @param formattedTitle formatted title or null if title has no arguments
+     * @return this
+     */
+    @Nonnull
+    protected LogContext formattedTitle(@Nullable final String title, @Nullable final String formattedTitle) {
+        checkOpen();
+        this.title = title;
+        this.titleArgs = null;
+        this.formattedTitle = formattedTitle;
         return this;
     }
 
@@ -155,48 +356,253 @@ public class LogContext implements AutoCloseable {
     }
 
     public LogContext level(@Nullable final LogLevel level) {
+        checkOpen();
         this.level = level;
+        this.suppressed = null;
+        return this;
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    protected LogContext sampled(final boolean sampled) {
+        this.sampled = sampled;
         return this;
     }
 
+    /**
+     * Check record is known to be dropped by output.
+     * <p>
+     * Record is suppressed if it is not sampled or if level is set explicitly and output is disabled for it,
+     * so context without level (which may be raised on exception) is not suppressed by level. Trace, attach and
+     * formatted title/result calls are ignored for suppressed context.
+     *
+     * @return true if output will not write this record
+     */
+    public boolean isSuppressed() {
+        if (!sampled) {
+            return true;
+        }
+
+        if (level == null) {
+            return false;
+        }
+
+        if (suppressed == null) {
+            suppressed = !output.isEnabled(level);
+        }
+
+        return suppressed;
+    }
+
     @Nullable
     public Format format() {
         return format;
     }
 
     public LogContext format(@Nullable final Format format) {
+        checkOpen();
         this.format = format;
         return this;
     }
 
     @Nonnull
     public LogContext attach(@Nonnull final String name, @Nullable final Object value) {
-        if (attrs == null) {
-            attrs = new HashMap<>();
+        final Attributes attributes = openAttrs();
+        if (attributes != null) {
+            attributes.put(name, value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Attach primitive value, it is not boxed and is read back as Integer (short and byte are widened to int)
+     *
+     * @param name  attribute name
+     * @param value value
+     * @return this
+     */
+    @Nonnull
+    public LogContext attach(@Nonnull final String name, final int value) {
+        final Attributes attributes = openAttrs();
+        if (attributes != null) {
+            attributes.put(name, value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Attach char value, it is kept as Character, so it is rendered as char
+     *
+     * @param name  attribute name
+     * @param value value
+     * @return this
+     */
+    @Nonnull
+    public LogContext attach(@Nonnull final String name, final char value) {
+        return attach(name, (Object) value);
+    }
+
+    /**
+     * Attach primitive value, it is not boxed
+     *
+     * @param name  attribute name
+     * @param value value
+     * @return this
+     */
+    @Nonnull
+    public LogContext attach(@Nonnull final String name, final long value) {
+        final Attributes attributes = openAttrs();
+        if (attributes != null) {
+            attributes.put(name, value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Attach primitive value, it is not boxed and is read back as Float
+     *
+     * @param name  attribute name
+     * @param value value
+     * @return this
+     */
+    @Nonnull
+    public LogContext attach(@Nonnull final String name, final float value) {
+        final Attributes attributes = openAttrs();
+        if (attributes != null) {
+            attributes.put(name, value);
+        }
+
+        return this;
+    }
+
+    @Nonnull
+    public LogContext attach(@Nonnull final String name, final double value) {
+        final Attributes attributes = openAttrs();
+        if (attributes != null) {
+            attributes.put(name, value);
+        }
+
+        return this;
+    }
+
+    @Nonnull
+    public LogContext attach(@Nonnull final String name, final boolean value) {
+        final Attributes attributes = openAttrs();
+        if (attributes != null) {
+            attributes.put(name, value);
         }
 
-        attrs.put(name, value);
         return this;
     }
 
+    /**
+     * @return attributes to attach value to or null if context is suppressed
+     */
+    @Nullable
+    private Attributes openAttrs() {
+        checkOpen();
+        if (isSuppressed()) {
+            return null;
+        }
+
+        if (attrs == null) {
+            attrs = new Attributes();
+        }
+
+        return attrs;
+    }
+
+    /**
+     * @param name attribute name
+     * @return attribute value, primitive value is boxed
+     */
     @Nullable
     public Object getAttr(@Nonnull final String name) {
+        mergeForks();
         return attrs != null ? attrs.get(name) : null;
     }
 
+    /**
+     * Append attribute value without boxing, null and missing values are not appended
+     *
+     * @param name    attribute name, interned name is compared by reference
+     * @param builder builder
+     * @return true if value is appended
+     */
+    public boolean appendAttr(@Nonnull final String name, @Nonnull final StringBuilder builder) {
+        mergeForks();
+        return attrs != null && attrs.append(name, builder);
+    }
+
+    /**
+     * Pass attached attributes to visitor in attach order, primitive values are not boxed
+     *
+     * @param visitor visitor
+     */
+    public void visitAttrs(@Nonnull final AttributeVisitor visitor) {
+        mergeForks();
+        if (attrs != null) {
+            attrs.visit(visitor);
+        }
+    }
+
+    /**
+     * Attached attributes in attach order, primitive values are boxed
+     *
+     * @return unmodifiable attributes (name -> value) or null if nothing attached
+     */
+    @Nullable
+    public Map<String, Object> attrs() {
+        mergeForks();
+        return attrs != null && attrs.size() > 0 ? attrs.asMap() : null;
+    }
+
     @Nullable
     public Object result() {
+        if (resultArgs != null && result != null) {
+            result = MessageTemplate.of((String) result).format(resultArgs);
+            resultArgs = null;
+        }
+
         return result;
     }
 
+    /**
+     * @return true if result is set, description is not formatted
+     */
+    public boolean hasResult() {
+        return result != null;
+    }
+
     public LogContext result(@Nullable final Object result) {
+        checkOpen();
         this.result = result;
+        this.resultArgs = null;
         return this;
     }
 
+    /**
+     * Set result description, it is formatted only when record is written
+     *
+     * @param description description with {} placeholders (or String.format format)
+     * @param args        arguments
+     * @return this
+     */
     @Nonnull
     public LogContext result(final String description, final Object... args) {
-        return result(String.format(description, args));
+        checkOpen();
+        if (isSuppressed()) {
+            return this;
+        }
+
+        this.result = description;
+        this.resultArgs = args;
+        return this;
     }
 
     @Nonnull
@@ -208,7 +614,7 @@ public class LogContext implements AutoCloseable {
     @Nonnull
     public LogContext result(final LogLevel level, final String description, final Object... args) {
         return level(level)
-                .result(String.format(description, args));
+                .result(description, args);
     }
 
     @Nonnull
@@ -220,7 +626,9 @@ public class LogContext implements AutoCloseable {
 
     @Nonnull
     public LogContext result(final LogLevel level, final Throwable throwable, final String description, final Object... args) {
-        return result(level, throwable, String.format(description, args));
+        return level(level)
+                .throwable(throwable)
+                .result(description, args);
     }
 
     @Nullable
@@ -229,6 +637,7 @@ public class LogContext implements AutoCloseable {
     }
 
     public LogContext throwable(@Nonnull final Throwable newThrowable) {
+        checkOpen();
         if (throwable != null) {
             if (suppressedThrowables == null) {
                 suppressedThrowables = new ArrayList<>(1);
@@ -243,22 +652,87 @@ public class LogContext implements AutoCloseable {
 
     @Nullable
     public ArrayList<Throwable> suppressedThrowables() {
-        return suppressedThrowables;
+        mergeForks();
+        return suppressedThrowables != null && !suppressedThrowables.isEmpty() ? suppressedThrowables : null;
     }
 
     @Nonnull
     public LogContext markTime() {
-        this.timeMark = currentTimeMillis();
+        checkOpen();
+        this.timeMark = timeSource.nanoTime();
         return this;
     }
 
+    /**
+     * Render trace entries, e.g. "step1; step2 [10 ms]"
+     *
+     * @return rendered trace or empty string
+     */
     @Nonnull
     public String trace() {
-        if (trace != null) {
-            return trace.toString();
-        } else {
+        mergeForks();
+        if (trace == null || trace.size() == 0) {
             return "";
         }
+
+        if (renderedTrace == null) {
+            final StringBuilder builder = new StringBuilder(trace.size() * 16);
+            trace.render(builder, SmartLogConfig.getConfig().getTraceTimeUnit());
+            renderedTrace = builder.toString();
+        }
+
+        return renderedTrace;
+    }
+
+    /**
+     * @return number of trace entries
+     */
+    public int traceSize() {
+        mergeForks();
+        return trace != null ? trace.size() : 0;
+    }
+
+    /**
+     * @param index entry index, less than {@link #traceSize()}
+     * @return message of trace entry without arguments
+     */
+    @Nonnull
+    public String traceMessage(final int index) {
+        return trace.message(index);
+    }
+
+    /**
+     * @param index entry index
+     * @return formatted message of trace entry
+     */
+    @Nonnull
+    public String traceFormattedMessage(final int index) {
+        return trace.formatMessage(index);
+    }
+
+    /**
+     * @param index entry index
+     * @return true if trace entry has arguments, so formatted message differs from template
+     */
+    public boolean traceHasArgs(final int index) {
+        return trace.hasArgs(index);
+    }
+
+    /**
+     * @param index entry index
+     * @return flag of trace entry
+     */
+    @Nonnull
+    public TraceFlag traceFlag(final int index) {
+        return trace.flag(index);
+    }
+
+    /**
+     * @param index entry index
+     * @return step duration in nanoseconds (time since mark) or -1 if entry has no time
+     */
+    public long traceNanos(final int index) {
+        return trace.nanos(index);
     }
 
     @Nonnull
@@ -266,51 +740,143 @@ public class LogContext implements AutoCloseable {
         return trace(TraceFlag.NONE, msg);
     }
 
+    @Nonnull
+    public LogContext trace(@Nonnull final String msg, @Nullable final Object arg) {
+        return trace(TraceFlag.NONE, msg, arg);
+    }
+
+    @Nonnull
+    public LogContext trace(@Nonnull final String msg, final long arg) {
+        return trace(TraceFlag.NONE, msg, arg);
+    }
+
+    @Nonnull
+    public LogContext trace(@Nonnull final String msg, final double arg) {
+        return trace(TraceFlag.NONE, msg, arg);
+    }
+
     @Nonnull
     public LogContext trace(@Nonnull final String msg, @Nonnull final Object... args) {
-        return trace(TraceFlag.NONE, String.format(msg, args));
+        return trace(TraceFlag.NONE, msg, args);
     }
 
     @Nonnull
     public LogContext trace(@Nonnull final TraceFlag flag, @Nonnull final String msg) {
+        return addTrace(flag, msg, null);
+    }
+
+    /**
+     * Add trace entry, message is formatted only when record is written
+     *
+     * @param flag flag
+     * @param msg  message format
+     * @param args arguments
+     * @return this
+     */
+    @Nonnull
+    public LogContext trace(@Nonnull final TraceFlag flag, @Nonnull final String msg, @Nonnull final Object... args) {
+        return addTrace(flag, msg, args);
+    }
+
+    /**
+     * Add trace entry with single argument, keeps boxed primitives away from long/double overloads
+     *
+     * @param flag flag
+     * @param msg  message format
+     * @param arg  argument
+     * @return this
+     */
+    @Nonnull
+    public LogContext trace(@Nonnull final TraceFlag flag, @Nonnull final String msg, @Nullable final Object arg) {
+        return addTrace(flag, msg, new Object[]{arg});
+    }
+
+    /**
+     * Add trace entry with primitive argument, it is not boxed (int, short, byte and char are widened to long)
+     *
+     * @param flag flag
+     * @param msg  message format
+     * @param arg  argument
+     * @return this
+     */
+    @Nonnull
+    public LogContext trace(@Nonnull final TraceFlag flag, @Nonnull final String msg, final long arg) {
+        final TraceBuffer buffer = openTrace();
+        if (buffer != null) {
+            buffer.add(msg, arg, flag, stepNanos(flag));
+        }
+
+        return this;
+    }
+
+    @Nonnull
+    public LogContext trace(@Nonnull final TraceFlag flag, @Nonnull final String msg, final double arg) {
+        final TraceBuffer buffer = openTrace();
+        if (buffer != null) {
+            buffer.add(msg, arg, flag, stepNanos(flag));
+        }
+
+        return this;
+    }
+
+    @Nonnull
+    private LogContext addTrace(@Nonnull final TraceFlag flag, @Nonnull final String msg,
+                                @Nullable final Object[] args) {
+        final TraceBuffer buffer = openTrace();
+        if (buffer != null) {
+            buffer.add(msg, args, flag, stepNanos(flag));
+        }
+
+        return this;
+    }
+
+    /**
+     * @return trace buffer to add entry to or null if context is suppressed
+     */
+    @Nullable
+    private TraceBuffer openTrace() {
+        checkOpen();
+        if (isSuppressed()) {
+            return null;
+        }
+
+        mergeForks();
+
         if (trace == null) {
-            trace = new StringBuilder(128);
-        } else {
-            trace.append("; ");
+            trace = new TraceBuffer();
         }
 
+        renderedTrace = null;
+        return trace;
+    }
+
+    /**
+     * Apply time flag of new trace entry
+     *
+     * @param flag flag
+     * @return step duration or {@link TraceBuffer#NO_TIME}
+     */
+    private long stepNanos(@Nonnull final TraceFlag flag) {
         switch (flag) {
             case NONE:
-                trace.append(msg);
-                return this;
+                return TraceBuffer.NO_TIME;
             case MARK_TIME:
-                trace.append(msg);
                 markTime();
-                return this;
+                return TraceBuffer.NO_TIME;
             case WRITE_TIME:
+                return timeSource.nanoTime() - timeMark;
             case WRITE_AND_MARK_TIME:
-                trace.append(msg)
-                        .append(" [")
-                        .append(currentTimeMillis() - timeMark)
-                        .append(" ms]");
-
-                if (flag == TraceFlag.WRITE_AND_MARK_TIME) {
-                    markTime();
-                }
-
-                return this;
+                final long nanos = timeSource.nanoTime() - timeMark;
+                markTime();
+                return nanos;
             default:
                 throw new RuntimeException("Internal error, unknown flag: " + flag);
         }
     }
 
-    @Nonnull
-    public LogContext trace(@Nonnull final TraceFlag flag, @Nonnull final String msg, @Nonnull final Object... args) {
-        return trace(flag, String.format(msg, args));
-    }
-
     @Nonnull
     public LogContext pushMDC(@Nonnull final String key, @Nullable final String value) {
+        checkOpen();
         if (mdcStack == null) {
             mdcStack = new LinkedList<>();
         }
@@ -334,6 +900,23 @@ public class LogContext implements AutoCloseable {
         return this;
     }
 
+    /**
+     * @return name of thread which took this snapshot, null if context is not a snapshot
+     */
+    @Nullable
+    public String snapshotThreadName() {
+        return snapshotThreadName;
+    }
+
+    /**
+     * @return MDC (including pushed variables) of thread which took this snapshot, null if context is not a snapshot
+     * or MDC was empty
+     */
+    @Nullable
+    public Map<String, String> snapshotMDC() {
+        return snapshotMDC;
+    }
+
     @Nullable
     protected String oldThreadName() {
         return oldThreadName;
@@ -347,6 +930,7 @@ public class LogContext implements AutoCloseable {
 
     @Nonnull
     public LogContext threadName(@Nonnull final String newName) {
+        checkOpen();
         oldThreadName(Thread.currentThread().getName());
         Thread.currentThread().setName(newName);
         return this;
@@ -363,9 +947,213 @@ public class LogContext implements AutoCloseable {
 
     @Override
     public void close() {
+        checkOpen();
         SmartLog.finish();
     }
 
+    /**
+     * Create detached read-only copy of this context, e.g. to write it from another thread.
+     * <p>
+     * Title and trace messages are formatted (templates are kept), attached values and result are shared by
+     * reference. Thread name and MDC of current thread are kept, so output may restore them on writer thread.
+     *
+     * @return finished copy of context, any change of it is an error
+     */
+    @Nonnull
+    public LogContext snapshot() {
+        mergeForks();
+        final LogContext copy = new LogContext(output);
+        copy.startTime = startTime;
+        copy.endTime = endTime;
+        copy.startNanos = startNanos;
+        copy.endNanos = endNanos;
+        copy.timeMark = timeMark;
+        copy.sampled = sampled;
+        copy.threshold = threshold;
+        copy.loggableObject = loggableObject;
+        copy.level = level;
+        copy.format = format;
+        copy.title = title;
+        copy.formattedTitle = hasTitleArgs() ? title() : null;
+        copy.result = result();
+        copy.throwable = throwable;
+        copy.snapshotThreadName = Thread.currentThread().getName();
+
+        final Map<String, String> mdc = MDC.getCopyOfContextMap();
+        copy.snapshotMDC = mdc != null && !mdc.isEmpty() ? mdc : null;
+
+        if (suppressedThrowables != null && !suppressedThrowables.isEmpty()) {
+            copy.suppressedThrowables = new ArrayList<>(suppressedThrowables);
+        }
+
+        if (trace != null && trace.size() > 0) {
+            // arguments are formatted, so copy may be written by another thread, templates are kept
+            copy.trace = trace.formattedCopy();
+        }
+
+        if (attrs != null && attrs.size() > 0) {
+            copy.attrs = attrs.copy();
+        }
+
+        copy.closed = true;
+        return copy;
+    }
+
+    protected synchronized int generation() {
+        return generation;
+    }
+
+    /**
+     * Merge trace, attributes and throwable (as suppressed) of fork finished on another thread, may be called
+     * from any thread
+     *
+     * @param fork       finished fork
+     * @param generation generation of this context when fork was created
+     * @return false if this context is already finished, fork is not merged in this case
+     */
+    protected synchronized boolean addFork(@Nonnull final LogContext fork, final int generation) {
+        if (forksSealed || this.generation != generation) {
+            return false;
+        }
+
+        if (forks == null) {
+            forks = new ArrayList<>(1);
+        }
+
+        forks.add(fork);
+        hasForks = true;
+        return true;
+    }
+
+    /**
+     * Stop accepting forks and merge already finished ones, called on finish
+     *
+     * @return this
+     */
+    protected LogContext sealForks() {
+        synchronized (this) {
+            forksSealed = true;
+        }
+
+        mergeForks();
+        return this;
+    }
+
+    private void mergeForks() {
+        if (!hasForks) {
+            return;
+        }
+
+        final ArrayList<LogContext> finished;
+        synchronized (this) {
+            finished = new ArrayList<>(forks);
+            forks.clear();
+            hasForks = false;
+        }
+
+        for (final LogContext fork : finished) {
+            if (fork.trace != null && fork.trace.size() > 0 && !isSuppressed()) {
+                if (trace == null) {
+                    trace = new TraceBuffer();
+                }
+
+                trace.addAll(fork.trace);
+                renderedTrace = null;
+            }
+
+            if (fork.attrs != null && fork.attrs.size() > 0 && !isSuppressed()) {
+                if (attrs == null) {
+                    attrs = new Attributes();
+                }
+
+                attrs.putAll(fork.attrs);
+            }
+
+            if (fork.throwable != null) {
+                // throwable of this context stays, failure of task is printed with it
+                if (suppressedThrowables == null) {
+                    suppressedThrowables = new ArrayList<>(1);
+                }
+
+                suppressedThrowables.add(fork.throwable);
+            }
+
+            if (fork.suppressedThrowables != null && !fork.suppressedThrowables.isEmpty()) {
+                // failures of nested tasks merged into fork
+                if (suppressedThrowables == null) {
+                    suppressedThrowables = new ArrayList<>(fork.suppressedThrowables.size());
+                }
+
+                suppressedThrowables.addAll(fork.suppressedThrowables);
+            }
+        }
+    }
+
+    protected boolean recyclable() {
+        return recyclable;
+    }
+
+    /**
+     * Prepare pooled context for new loggable
+     *
+     * @param newOutput output
+     * @return this
+     */
+    protected LogContext reuse(@Nonnull final Output newOutput) {
+        this.output = newOutput;
+        this.suppressed = null;
+        this.sampled = true;
+        this.recyclable = true;
+        synchronized (this) {
+            this.forksSealed = false;
+            this.generation++;
+        }
+        this.closed = false;
+        start(SmartLogConfig.getConfig().getTimeSource());
+        return this;
+    }
+
+    /**
+     * Drop all references hold by finished context, but keep allocated buffers for next loggable
+     *
+     * @return this
+     */
+    protected LogContext recycle() {
+        closed = true;
+        loggableObject = null;
+        level = null;
+        format = null;
+        threshold = null;
+        title = null;
+        titleArgs = null;
+        formattedTitle = null;
+        result = null;
+        resultArgs = null;
+        throwable = null;
+        oldThreadName = null;
+
+        if (suppressedThrowables != null) {
+            suppressedThrowables.clear();
+        }
+
+        renderedTrace = null;
+        if (trace != null && !trace.clear(MAX_RECYCLED_TRACE_CAPACITY)) {
+            trace = null;
+        }
+
+        if (attrs != null) {
+            attrs.clear();
+        }
+
+        return this;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new RuntimeException("Loggable context is already finished");
+        }
+    }
+
     /**
      * MDC entry contains key-value pair
      */
@@ -0,0 +1,54 @@
+package org.smartlog;
+
+import org.smartlog.output.Output;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Per-thread pool of finished log contexts.
+ * <p>
+ * Contexts are finished in reverse order, so pool size never exceeds max nesting depth of loggables.
+ */
+@NotThreadSafe
+final class LogContextPool {
+    /**
+     * Protect from unbounded growth on deep recursion
+     */
+    private static final int MAX_SIZE = 64;
+
+    private LogContext[] free = new LogContext[4];
+
+    private int size;
+
+    @Nonnull
+    LogContext acquire(@Nonnull final Output output) {
+        if (size > 0) {
+            final LogContext ctx = free[--size];
+            free[size] = null;
+            return ctx.reuse(output);
+        }
+
+        return new LogContext(output).reuse(output);
+    }
+
+    void release(@Nonnull final LogContext ctx) {
+        ctx.recycle();
+
+        if (size == free.length) {
+            if (size == MAX_SIZE) {
+                return;
+            }
+
+            final LogContext[] newFree = new LogContext[Math.min(size * 2, MAX_SIZE)];
+            System.arraycopy(free, 0, newFree, 0, size);
+            free = newFree;
+        }
+
+        free[size++] = ctx;
+    }
+
+    int size() {
+        return size;
+    }
+}
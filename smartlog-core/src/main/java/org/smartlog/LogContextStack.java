@@ -0,0 +1,63 @@
+package org.smartlog;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Per-thread stack of active log contexts.
+ * <p>
+ * Array based, so push doesn't allocate, and keeps per-thread context pool to resolve both by one thread local lookup.
+ */
+@NotThreadSafe
+final class LogContextStack {
+    private final LogContextPool pool = new LogContextPool();
+
+    private LogContext[] contexts = new LogContext[8];
+
+    private int depth;
+
+    /**
+     * Top of the stack, cached to avoid array access
+     */
+    @Nullable
+    private LogContext top;
+
+    void push(@Nonnull final LogContext ctx) {
+        if (depth == contexts.length) {
+            final LogContext[] newContexts = new LogContext[depth * 2];
+            System.arraycopy(contexts, 0, newContexts, 0, depth);
+            contexts = newContexts;
+        }
+
+        contexts[depth++] = ctx;
+        top = ctx;
+    }
+
+    @Nullable
+    LogContext pop() {
+        if (depth == 0) {
+            return null;
+        }
+
+        final LogContext ctx = contexts[--depth];
+        contexts[depth] = null;
+        top = depth > 0 ? contexts[depth - 1] : null;
+
+        return ctx;
+    }
+
+    @Nullable
+    LogContext peek() {
+        return top;
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    @Nonnull
+    LogContextPool pool() {
+        return pool;
+    }
+}
@@ -0,0 +1,171 @@
+package org.smartlog;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IllegalFormatException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pre-parsed message with SLF4J-style {@code {}} placeholders ({@code \{}} is written as is).
+ * <p>
+ * Message without placeholders but with '%' is formatted by {@link String#format} for compatibility, invalid format
+ * string is written as is.
+ * Parsed templates are cached, so message is parsed once per call site.
+ */
+@Immutable
+final class MessageTemplate {
+    private static final int MAX_CACHE_SIZE = 4096;
+
+    private static final ConcurrentMap<String, MessageTemplate> CACHE = new ConcurrentHashMap<>();
+
+    @Nonnull
+    private final String pattern;
+
+    /**
+     * Text around placeholders, placeholder count is parts.length - 1
+     */
+    @Nonnull
+    private final String[] parts;
+
+    private final boolean printf;
+
+    private MessageTemplate(@Nonnull final String pattern) {
+        this.pattern = pattern;
+
+        final ArrayList<String> result = new ArrayList<>();
+        final StringBuilder part = new StringBuilder();
+        final int length = pattern.length();
+        for (int i = 0; i < length; i++) {
+            final char ch = pattern.charAt(i);
+            if (ch == '\\' && pattern.startsWith("{}", i + 1)) {
+                part.append("{}");
+                i += 2;
+            } else if (ch == '{' && i + 1 < length && pattern.charAt(i + 1) == '}') {
+                result.add(part.toString());
+                part.setLength(0);
+                i++;
+            } else {
+                part.append(ch);
+            }
+        }
+
+        result.add(part.toString());
+        this.parts = result.toArray(new String[0]);
+        this.printf = parts.length == 1 && pattern.indexOf('%') >= 0;
+    }
+
+    @Nonnull
+    static MessageTemplate of(@Nonnull final String pattern) {
+        MessageTemplate template = CACHE.get(pattern);
+        if (template == null) {
+            template = new MessageTemplate(pattern);
+            if (CACHE.size() < MAX_CACHE_SIZE) {
+                CACHE.putIfAbsent(pattern, template);
+            }
+        }
+
+        return template;
+    }
+
+    @Nonnull
+    String format(@Nullable final Object[] args) {
+        if (printf) {
+            return printf(args);
+        }
+
+        final StringBuilder builder = new StringBuilder(pattern.length() + 16);
+        render(builder, args);
+        return builder.toString();
+    }
+
+    void render(@Nonnull final StringBuilder builder, @Nullable final Object[] args) {
+        if (printf) {
+            builder.append(printf(args));
+            return;
+        }
+
+        builder.append(parts[0]);
+
+        final int argCount = args != null ? Math.min(args.length, parts.length - 1) : 0;
+        for (int i = 0; i < argCount; i++) {
+            appendArg(builder, args[i]);
+            builder.append(parts[i + 1]);
+        }
+
+        appendUnused(builder, argCount + 1);
+    }
+
+    void render(@Nonnull final StringBuilder builder, final long arg) {
+        if (printf) {
+            builder.append(printf(arg));
+            return;
+        }
+
+        builder.append(parts[0]);
+        if (parts.length > 1) {
+            builder.append(arg)
+                    .append(parts[1]);
+            appendUnused(builder, 2);
+        }
+    }
+
+    void render(@Nonnull final StringBuilder builder, final double arg) {
+        if (printf) {
+            builder.append(printf(arg));
+            return;
+        }
+
+        builder.append(parts[0]);
+        if (parts.length > 1) {
+            builder.append(arg)
+                    .append(parts[1]);
+            appendUnused(builder, 2);
+        }
+    }
+
+    /**
+     * Message is rendered when record is written, so bad format string must not fail loggable method
+     */
+    @Nonnull
+    private String printf(@Nullable final Object... args) {
+        try {
+            return String.format(pattern, args);
+        } catch (IllegalFormatException e) {
+            return pattern;
+        }
+    }
+
+    /**
+     * Placeholders without arguments are written as is
+     */
+    private void appendUnused(@Nonnull final StringBuilder builder, final int from) {
+        for (int i = from; i < parts.length; i++) {
+            builder.append("{}")
+                    .append(parts[i]);
+        }
+    }
+
+    private static void appendArg(@Nonnull final StringBuilder builder, @Nullable final Object arg) {
+        try {
+            if (arg != null && arg.getClass().isArray()) {
+                // handles primitive and nested arrays
+                final String array = Arrays.deepToString(new Object[]{arg});
+                builder.append(array, 1, array.length() - 1);
+            } else {
+                builder.append(String.valueOf(arg));
+            }
+        } catch (RuntimeException e) {
+            // same as slf4j
+            builder.append("[FAILED toString()]");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -0,0 +1,83 @@
+package org.smartlog;
+
+import org.smartlog.output.Output;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache of resolved default outputs (class -> output).
+ * <p>
+ * Outputs are stored in {@link ClassValue}, so cached value is bound to class lifetime and does not prevent
+ * class loader from being collected. When cache is full, outputs of new classes are resolved on every call
+ * without caching, so cached outputs of hot classes are kept.
+ */
+@ThreadSafe
+final class OutputCache {
+    @Nonnull
+    private final Function<Class, Output> resolver;
+
+    private final int maxSize;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private volatile ClassValue<Output> outputs = newOutputs();
+
+    OutputCache(@Nonnull final Function<Class, Output> resolver, final int maxSize) {
+        this.resolver = resolver;
+        this.maxSize = maxSize;
+    }
+
+    @Nonnull
+    Output get(@Nonnull final Class clazz) {
+        requests.increment();
+        final Output output = outputs.get(clazz);
+        if (output != null) {
+            return output;
+        }
+
+        // cache is full
+        misses.increment();
+        return resolver.apply(clazz);
+    }
+
+    void invalidate() {
+        outputs = newOutputs();
+        size.set(0);
+    }
+
+    long hits() {
+        return requests.sum() - misses.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    private ClassValue<Output> newOutputs() {
+        return new ClassValue<Output>() {
+            @Override
+            protected Output computeValue(final Class<?> type) {
+                if (size.incrementAndGet() > maxSize) {
+                    // null is cached as "not cached" mark, it doesn't keep output
+                    size.decrementAndGet();
+                    return null;
+                }
+
+                misses.increment();
+                return resolver.apply(type);
+            }
+        };
+    }
+}
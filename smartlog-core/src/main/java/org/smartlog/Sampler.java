@@ -0,0 +1,93 @@
+package org.smartlog;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides if loggable should be written, called once per context by {@link SmartLog#start}.
+ * <p>
+ * Unsampled context skips trace, attach and formatting work. It is still written if it finishes with throwable,
+ * ERROR level or lasts longer than {@link SmartLogConfig#getKeepUnsampledSlowerThanNanos()}, but without trace.
+ */
+@ThreadSafe
+public interface Sampler {
+    Sampler ALWAYS = () -> true;
+
+    /**
+     * @return true if record of new context should be written
+     */
+    boolean sample();
+
+    /**
+     * Sample every n-th context
+     *
+     * @param n rate, 1 means every context
+     * @return sampler
+     */
+    @Nonnull
+    static Sampler everyNth(final int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Sample rate must be positive: " + n);
+        }
+
+        if (n == 1) {
+            return ALWAYS;
+        }
+
+        final AtomicLong counter = new AtomicLong();
+        return () -> counter.getAndIncrement() % n == 0;
+    }
+
+    /**
+     * Sample context with given probability
+     *
+     * @param probability probability from 0 to 1
+     * @return sampler
+     */
+    @Nonnull
+    static Sampler probability(final double probability) {
+        if (!(probability >= 0 && probability <= 1)) {
+            throw new IllegalArgumentException("Sample probability must be in [0, 1]: " + probability);
+        }
+
+        if (probability == 1) {
+            return ALWAYS;
+        }
+
+        return () -> ThreadLocalRandom.current().nextDouble() < probability;
+    }
+
+    /**
+     * Sample at most given number of contexts per second (token bucket)
+     *
+     * @param perSecond max rate
+     * @param burst     max number of contexts sampled at once after idle period
+     * @return sampler
+     */
+    @Nonnull
+    static Sampler rateLimit(final double perSecond, final int burst) {
+        return new TokenBucketSampler(perSecond, burst);
+    }
+
+    /**
+     * Sample context only if all samplers sample it
+     *
+     * @param first  first sampler
+     * @param second second sampler
+     * @return sampler
+     */
+    @Nonnull
+    static Sampler all(@Nonnull final Sampler first, @Nonnull final Sampler second) {
+        if (first == ALWAYS) {
+            return second;
+        }
+
+        if (second == ALWAYS) {
+            return first;
+        }
+
+        return () -> first.sample() && second.sample();
+    }
+}
@@ -1,22 +1,21 @@
 package org.smartlog;
 
 import org.smartlog.format.Format;
+import org.smartlog.metrics.MetricsSink;
 import org.smartlog.output.Output;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 public class SmartLog {
-    private static final ThreadLocal<Deque<LogContext>> CONTEXTS = ThreadLocal.withInitial(LinkedList::new);
+    private static final ThreadLocal<LogContextStack> CONTEXTS = ThreadLocal.withInitial(LogContextStack::new);
 
     @Nonnull
     public static LogContext start(@Nonnull final Output output) {
-        final LogContext ctx = new LogContext(output);
-        CONTEXTS.get().push(ctx);
-
-        return ctx;
+        return startContext(output, null, null);
     }
 
     @Nonnull
@@ -28,7 +27,38 @@ public class SmartLog {
 
     @Nonnull
     public static LogContext start(@Nonnull final Output output, @Nullable final Object loggableObject) {
-        final LogContext ctx = start(output)
+        return start(output, loggableObject, null);
+    }
+
+    /**
+     * Start context, record is written only if it is sampled by both output sampler and given sampler
+     * (see {@link Sampler} for records written anyway).
+     *
+     * @param output         output
+     * @param loggableObject loggable object or null
+     * @param sampler        sampler of loggable (e.g. from @Loggable) or null
+     * @return new context
+     */
+    @Nonnull
+    public static LogContext start(@Nonnull final Output output, @Nullable final Object loggableObject,
+                                   @Nullable final Sampler sampler) {
+        return start(output, loggableObject, sampler, null);
+    }
+
+    /**
+     * Same as {@link #start(Output, Object, Sampler)}, but if output is disabled for default level, context gets
+     * this level at once (so trace/attach calls become no-op) and samplers are not called.
+     *
+     * @param output         output
+     * @param loggableObject loggable object or null
+     * @param sampler        sampler of loggable (e.g. from @Loggable) or null
+     * @param defaultLevel   default level of loggable or null
+     * @return new context
+     */
+    @Nonnull
+    public static LogContext start(@Nonnull final Output output, @Nullable final Object loggableObject,
+                                   @Nullable final Sampler sampler, @Nullable final LogLevel defaultLevel) {
+        final LogContext ctx = startContext(output, sampler, defaultLevel)
                 .loggableObject(loggableObject);
 
         if (loggableObject != null && loggableObject instanceof LoggableCallback) {
@@ -45,9 +75,10 @@ public class SmartLog {
     }
 
     public static void finish() {
-        final Deque<LogContext> list = CONTEXTS.get();
-        if (!list.isEmpty()) {
-            final LogContext ctx = list.pop();
+        final LogContextStack stack = CONTEXTS.get();
+        final LogContext ctx = stack.pop();
+        if (ctx != null) {
+            ctx.sealForks();
 
             final Object loggableObject = ctx.loggableObject();
             if (loggableObject != null && loggableObject instanceof LoggableCallback) {
@@ -60,28 +91,141 @@ public class SmartLog {
                 }
             }
 
-            ctx.endTime(System.currentTimeMillis());
-            ctx.output()
-                    .write(ctx);
+            ctx.finishTime();
+
+            try {
+                final MetricsSink metricsSink = SmartLogConfig.getConfig().getMetricsSink();
+                if (metricsSink != null) {
+                    metricsSink.record(ctx);
+                }
 
-            // recover old MDC variables and old thread name
-            ctx.clearMDC()
-                    .recoverThreadName();
+                if (ctx.shouldWrite()) {
+                    ctx.output()
+                            .write(ctx);
+                }
+            } finally {
+                // recover old MDC variables and old thread name
+                ctx.clearMDC()
+                        .recoverThreadName();
+
+                if (ctx.recyclable()) {
+                    stack.pool().release(ctx);
+                }
+            }
         } else {
             throw new RuntimeException("Loggable context is absent");
         }
     }
 
+    @Nonnull
+    private static LogContext startContext(@Nonnull final Output output, @Nullable final Sampler sampler,
+                                           @Nullable final LogLevel defaultLevel) {
+        final LogContextStack stack = CONTEXTS.get();
+        final LogContext ctx = SmartLogConfig.getConfig().isRecycleContexts()
+                ? stack.pool().acquire(output)
+                : new LogContext(output);
+
+        if (defaultLevel != null && !output.isEnabled(defaultLevel)) {
+            // suppressed record doesn't take rate limit tokens or sample slots of written ones
+            ctx.level(defaultLevel);
+        } else {
+            final Sampler outputSampler = output.sampler();
+            if (outputSampler != null && !outputSampler.sample() || sampler != null && !sampler.sample()) {
+                ctx.sampled(false);
+            }
+        }
+
+        stack.push(ctx);
+
+        return ctx;
+    }
+
     @Nonnull
     public static LogContext current() {
-        final Deque<LogContext> contextQueue = CONTEXTS.get();
-        if (!contextQueue.isEmpty()) {
-            return contextQueue.peek();
+        final LogContext ctx = CONTEXTS.get().peek();
+        if (ctx != null) {
+            return ctx;
         } else {
             throw new RuntimeException("Loggable context is absent");
         }
     }
 
+    /**
+     * Continue current context in task executed on another thread (executor, CompletableFuture, virtual thread).
+     * <p>
+     * Task gets its own fork of current context, trace and attributes of fork are merged back to current context
+     * when task is done. Exception thrown by task is rethrown to the executor and added to suppressed throwables
+     * of current context (they are written only with own throwable of context). If current context is finished
+     * earlier, fork is written as separate record.
+     * Task is returned as is if there is no current context.
+     *
+     * @param task task
+     * @return task wrapper
+     */
+    @Nonnull
+    public static Runnable wrapRunnable(@Nonnull final Runnable task) {
+        final LogContext ctx = CONTEXTS.get().peek();
+        if (ctx == null) {
+            return task;
+        }
+
+        final CapturedContext captured = new CapturedContext(ctx);
+        return () -> captured.run(task);
+    }
+
+    /**
+     * Same as {@link #wrapRunnable(Runnable)} for callable
+     *
+     * @param task task
+     * @param <T>  result type
+     * @return task wrapper
+     */
+    @Nonnull
+    public static <T> Callable<T> wrapCallable(@Nonnull final Callable<T> task) {
+        final LogContext ctx = CONTEXTS.get().peek();
+        if (ctx == null) {
+            return task;
+        }
+
+        final CapturedContext captured = new CapturedContext(ctx);
+        return () -> captured.call(task);
+    }
+
+    /**
+     * Same as {@link #wrapRunnable(Runnable)} for supplier, e.g. for CompletableFuture.supplyAsync
+     *
+     * @param task task
+     * @param <T>  result type
+     * @return task wrapper
+     */
+    @Nonnull
+    public static <T> Supplier<T> wrapSupplier(@Nonnull final Supplier<T> task) {
+        final LogContext ctx = CONTEXTS.get().peek();
+        if (ctx == null) {
+            return task;
+        }
+
+        final CapturedContext captured = new CapturedContext(ctx);
+        return () -> captured.get(task);
+    }
+
+    /**
+     * Executor which continues context current at the moment of task submission, tasks submitted without
+     * current context are passed to executor as is
+     *
+     * @param executor executor
+     * @return executor wrapper
+     */
+    @Nonnull
+    public static Executor wrapExecutor(@Nonnull final Executor executor) {
+        return task -> executor.execute(wrapRunnable(task));
+    }
+
+    @Nonnull
+    static LogContextStack contexts() {
+        return CONTEXTS.get();
+    }
+
     @Nonnull
     public static LogContext output(@Nonnull final Output output) {
         return current().output(output);
@@ -97,6 +241,11 @@ public class SmartLog {
         return current().format(format);
     }
 
+    @Nonnull
+    public static LogContext threshold(@Nullable final DurationThreshold threshold) {
+        return current().threshold(threshold);
+    }
+
     @Nonnull
     public static LogContext title(@Nonnull final String title) {
         return current().title(title);
@@ -112,6 +261,36 @@ public class SmartLog {
         return current().attach(name, value);
     }
 
+    @Nonnull
+    public static LogContext attach(@Nonnull final String name, final int value) {
+        return current().attach(name, value);
+    }
+
+    @Nonnull
+    public static LogContext attach(@Nonnull final String name, final char value) {
+        return current().attach(name, value);
+    }
+
+    @Nonnull
+    public static LogContext attach(@Nonnull final String name, final long value) {
+        return current().attach(name, value);
+    }
+
+    @Nonnull
+    public static LogContext attach(@Nonnull final String name, final float value) {
+        return current().attach(name, value);
+    }
+
+    @Nonnull
+    public static LogContext attach(@Nonnull final String name, final double value) {
+        return current().attach(name, value);
+    }
+
+    @Nonnull
+    public static LogContext attach(@Nonnull final String name, final boolean value) {
+        return current().attach(name, value);
+    }
+
     @Nonnull
     public static LogContext throwable(@Nonnull final Throwable newThrowable) {
         return current().throwable(newThrowable);
@@ -122,6 +301,21 @@ public class SmartLog {
         return current().trace(msg);
     }
 
+    @Nonnull
+    public static LogContext trace(final String format, final Object arg) {
+        return current().trace(format, arg);
+    }
+
+    @Nonnull
+    public static LogContext trace(final String format, final long arg) {
+        return current().trace(format, arg);
+    }
+
+    @Nonnull
+    public static LogContext trace(final String format, final double arg) {
+        return current().trace(format, arg);
+    }
+
     @Nonnull
     public static LogContext trace(final String format, final Object... args) {
         return current().trace(format, args);
@@ -137,6 +331,21 @@ public class SmartLog {
         return current().trace(flag, msg, args);
     }
 
+    @Nonnull
+    public static LogContext trace(@Nonnull final TraceFlag flag, @Nonnull final String msg, @Nullable final Object arg) {
+        return current().trace(flag, msg, arg);
+    }
+
+    @Nonnull
+    public static LogContext trace(@Nonnull final TraceFlag flag, @Nonnull final String msg, final long arg) {
+        return current().trace(flag, msg, arg);
+    }
+
+    @Nonnull
+    public static LogContext trace(@Nonnull final TraceFlag flag, @Nonnull final String msg, final double arg) {
+        return current().trace(flag, msg, arg);
+    }
+
     @Nonnull
     public static LogContext result(final Object result) {
         return current().result(result);
@@ -1,66 +1,364 @@
 package org.smartlog;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.smartlog.format.Format;
 import org.smartlog.format.SimpleTextFormat;
+import org.smartlog.metrics.MetricsSink;
 import org.smartlog.output.Output;
 import org.smartlog.output.Slf4JOutput;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
- * todo -
- * 1) make class thread safe
- * 2) load settings from smartlog.properties using ClassLoader.getInputStream
- * 3) add method freeze? (protect from changes - throw exception)
- * 4) fluent setters / builder
+ * Global settings, immutable snapshot published by single atomic swap.
+ * <p>
+ * Hot paths read {@link #getConfig()} once per record and use final fields of that snapshot. Change is made by
+ * {@link #update(Consumer)} (copy, modify, swap) or {@link #setConfig(SmartLogConfig)}; every built config gets
+ * new {@link #getVersion() version}, so caches derived from config can compare version to invalidate.
+ * <p>
+ * todo - load settings from smartlog.properties using ClassLoader.getInputStream
  */
-public class SmartLogConfig {
-    private static final Logger LOGGER = LoggerFactory.getLogger(SmartLogConfig.class);
+@Immutable
+public final class SmartLogConfig {
+    private static final AtomicLong VERSIONS = new AtomicLong();
 
-    private static SmartLogConfig config = new SmartLogConfig();
+    private static final AtomicReference<SmartLogConfig> CONFIG = new AtomicReference<>(create().build());
 
-    private Format defaultFormat = new SimpleTextFormat("${title} - [${result}], trace: [${trace}] [${time} ms]");
+    private final long version;
 
-    private boolean replaceCrLf = true;
+    @Nonnull
+    private final Format defaultFormat;
+
+    private final boolean replaceCrLf;
+
+    private final boolean recycleContexts;
+
+    @Nonnull
+    private final TimeSource timeSource;
 
-    private Function<Class, Output> defaultOutputResolver = (clazz) -> Slf4JOutput.create()
-            .withLoggerFor(clazz)
-            .build();
+    @Nonnull
+    private final TimeUnit traceTimeUnit;
+
+    private final long keepUnsampledSlowerThanNanos;
+
+    @Nullable
+    private final DurationThreshold defaultThreshold;
 
+    @Nullable
+    private final MetricsSink metricsSink;
+
+    @Nonnull
+    private final Function<Class, Output> defaultOutputResolver;
+
+    private final int outputCacheSize;
+
+    /**
+     * Resolved outputs, shared with configs derived by {@link #toBuilder()} while resolver is the same
+     */
+    @Nonnull
+    private final OutputCache outputCache;
+
+    private SmartLogConfig(final Builder builder) {
+        if (builder.defaultFormat == null || builder.timeSource == null || builder.traceTimeUnit == null
+                || builder.defaultOutputResolver == null) {
+            throw new RuntimeException("Default format, time source, trace time unit and output resolver "
+                    + "must be present");
+        }
+
+        this.version = VERSIONS.incrementAndGet();
+        this.defaultFormat = builder.defaultFormat;
+        this.replaceCrLf = builder.replaceCrLf;
+        this.recycleContexts = builder.recycleContexts;
+        this.timeSource = builder.timeSource;
+        this.traceTimeUnit = builder.traceTimeUnit;
+        this.keepUnsampledSlowerThanNanos = builder.keepUnsampledSlowerThanNanos;
+        this.defaultThreshold = builder.defaultThreshold;
+        this.metricsSink = builder.metricsSink;
+        this.defaultOutputResolver = builder.defaultOutputResolver;
+        this.outputCacheSize = builder.outputCacheSize;
+        this.outputCache = builder.outputCache != null
+                ? builder.outputCache
+                : new OutputCache(defaultOutputResolver, outputCacheSize);
+    }
+
+    /**
+     * @return current config
+     */
+    @Nonnull
     public static SmartLogConfig getConfig() {
-        return config;
+        return CONFIG.get();
     }
 
-    public static void setConfig(final SmartLogConfig config) {
-        SmartLogConfig.config = config;
+    /**
+     * Replace current config
+     *
+     * @param config new config
+     */
+    public static void setConfig(@Nonnull final SmartLogConfig config) {
+        CONFIG.set(config);
     }
 
-    public Format getDefaultFormat() {
-        return defaultFormat;
+    /**
+     * Atomically replace current config with its modified copy, change may be applied several times on contention
+     *
+     * @param change modification of builder initialized from current config
+     * @return new config
+     */
+    @Nonnull
+    public static SmartLogConfig update(@Nonnull final Consumer<Builder> change) {
+        return CONFIG.updateAndGet(config -> {
+            final Builder builder = config.toBuilder();
+            change.accept(builder);
+            return builder.build();
+        });
+    }
+
+    /**
+     * @return builder with default settings
+     */
+    public static Builder create() {
+        return new Builder();
+    }
+
+    /**
+     * @return builder initialized from this config
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
     }
 
-    public void setDefaultFormat(final Format defaultFormat) {
-        this.defaultFormat = defaultFormat;
+    /**
+     * @return unique number of config, greater for configs built later
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Nonnull
+    public Format getDefaultFormat() {
+        return defaultFormat;
     }
 
     public boolean isReplaceCrLf() {
         return replaceCrLf;
     }
 
-    public void setReplaceCrLf(final boolean replaceCrLf) {
-        this.replaceCrLf = replaceCrLf;
+    public boolean isRecycleContexts() {
+        return recycleContexts;
+    }
+
+    @Nonnull
+    public TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    @Nonnull
+    public TimeUnit getTraceTimeUnit() {
+        return traceTimeUnit;
+    }
+
+    public long getKeepUnsampledSlowerThanNanos() {
+        return keepUnsampledSlowerThanNanos;
     }
 
+    @Nullable
+    public DurationThreshold getDefaultThreshold() {
+        return defaultThreshold;
+    }
+
+    @Nullable
+    public MetricsSink getMetricsSink() {
+        return metricsSink;
+    }
+
+    /**
+     * Resolve default output for class, resolved outputs are cached per class
+     *
+     * @param clazz class
+     * @return output
+     */
     @Nonnull
     public Output getDefaultOutput(final Class clazz) {
-        // todo - add cache class -> output
-        return defaultOutputResolver.apply(clazz);
+        return outputCache.get(clazz);
+    }
+
+    @Nonnull
+    public Function<Class, Output> getDefaultOutputResolver() {
+        return defaultOutputResolver;
     }
 
-    public void setDefaultOutputResolver(final Function<Class, Output> defaultOutputResolver) {
-        this.defaultOutputResolver = defaultOutputResolver;
+    public int getOutputCacheSize() {
+        return outputCacheSize;
+    }
+
+    /**
+     * Drop cached outputs, e.g. when logger configuration is reloaded
+     */
+    public void invalidateOutputCache() {
+        outputCache.invalidate();
+    }
+
+    public long getOutputCacheHits() {
+        return outputCache.hits();
+    }
+
+    public long getOutputCacheMisses() {
+        return outputCache.misses();
+    }
+
+    public static class Builder {
+        private Format defaultFormat;
+
+        private boolean replaceCrLf = true;
+
+        private boolean recycleContexts = false;
+
+        private TimeSource timeSource = TimeSource.SYSTEM;
+
+        private TimeUnit traceTimeUnit = TimeUnit.MILLISECONDS;
+
+        private long keepUnsampledSlowerThanNanos = Long.MAX_VALUE;
+
+        private DurationThreshold defaultThreshold;
+
+        private MetricsSink metricsSink;
+
+        private Function<Class, Output> defaultOutputResolver;
+
+        private int outputCacheSize = 4096;
+
+        private OutputCache outputCache;
+
+        protected Builder() {
+            this.defaultFormat = new SimpleTextFormat("${title} - [${result}], trace: [${trace}] [${time} ms]");
+            this.defaultOutputResolver = (clazz) -> Slf4JOutput.create()
+                    .withLoggerFor(clazz)
+                    .build();
+        }
+
+        protected Builder(@Nonnull final SmartLogConfig config) {
+            this.defaultFormat = config.defaultFormat;
+            this.replaceCrLf = config.replaceCrLf;
+            this.recycleContexts = config.recycleContexts;
+            this.timeSource = config.timeSource;
+            this.traceTimeUnit = config.traceTimeUnit;
+            this.keepUnsampledSlowerThanNanos = config.keepUnsampledSlowerThanNanos;
+            this.defaultThreshold = config.defaultThreshold;
+            this.metricsSink = config.metricsSink;
+            this.defaultOutputResolver = config.defaultOutputResolver;
+            this.outputCacheSize = config.outputCacheSize;
+            this.outputCache = config.outputCache;
+        }
+
+        public Builder withDefaultFormat(final Format defaultFormat) {
+            this.defaultFormat = defaultFormat;
+            return this;
+        }
+
+        public Builder withReplaceCrLf(final boolean replaceCrLf) {
+            this.replaceCrLf = replaceCrLf;
+            return this;
+        }
+
+        /**
+         * Reuse finished log contexts (per-thread pool) instead of allocating new ones.
+         * <p>
+         * Context must not be used after finish in this mode, outputs must not keep reference to written context.
+         *
+         * @param recycleContexts true to enable recycling
+         * @return this
+         */
+        public Builder withRecycleContexts(final boolean recycleContexts) {
+            this.recycleContexts = recycleContexts;
+            return this;
+        }
+
+        /**
+         * Replace time source, e.g. with fake one in tests
+         *
+         * @param timeSource time source
+         * @return this
+         */
+        public Builder withTimeSource(final TimeSource timeSource) {
+            this.timeSource = timeSource;
+            return this;
+        }
+
+        /**
+         * Time unit of trace durations written with {@link TraceFlag#WRITE_TIME}, milliseconds by default
+         *
+         * @param traceTimeUnit time unit
+         * @return this
+         */
+        public Builder withTraceTimeUnit(final TimeUnit traceTimeUnit) {
+            this.traceTimeUnit = traceTimeUnit;
+            return this;
+        }
+
+        /**
+         * Write records dropped by {@link Sampler} anyway if they last longer than given duration
+         *
+         * @param duration min duration
+         * @param unit     duration unit
+         * @return this
+         */
+        public Builder withKeepUnsampledSlowerThan(final long duration, final TimeUnit unit) {
+            this.keepUnsampledSlowerThanNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Slow call threshold used if neither context nor output has own threshold
+         *
+         * @param defaultThreshold threshold or null to write records regardless of duration
+         * @return this
+         */
+        public Builder withDefaultThreshold(final DurationThreshold defaultThreshold) {
+            this.defaultThreshold = defaultThreshold;
+            return this;
+        }
+
+        /**
+         * Record every finished context to metrics sink, e.g. {@link org.smartlog.metrics.LatencyMetrics}
+         *
+         * @param metricsSink sink or null
+         * @return this
+         */
+        public Builder withMetricsSink(final MetricsSink metricsSink) {
+            this.metricsSink = metricsSink;
+            return this;
+        }
+
+        /**
+         * @param defaultOutputResolver resolver of default output for class, resolved outputs are cached
+         * @return this
+         */
+        public Builder withDefaultOutputResolver(final Function<Class, Output> defaultOutputResolver) {
+            this.defaultOutputResolver = defaultOutputResolver;
+            this.outputCache = null;
+            return this;
+        }
+
+        /**
+         * Max number of cached class -> output entries, outputs of other classes are resolved on every call
+         *
+         * @param outputCacheSize max cache size
+         * @return this
+         */
+        public Builder withOutputCacheSize(final int outputCacheSize) {
+            this.outputCacheSize = outputCacheSize;
+            this.outputCache = null;
+            return this;
+        }
+
+        public SmartLogConfig build() {
+            return new SmartLogConfig(this);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package org.smartlog;
+
+/**
+ * Source of time for log contexts, can be replaced in tests
+ */
+public interface TimeSource {
+    TimeSource SYSTEM = new TimeSource() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * @return wall clock time, used for start timestamp only
+     */
+    long currentTimeMillis();
+
+    /**
+     * @return monotonic time, used for durations
+     */
+    long nanoTime();
+}
@@ -0,0 +1,62 @@
+package org.smartlog;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket: instead of token count it keeps time when bucket was empty, bucket has
+ * {@code (now - emptyAt) / interval} tokens (at most burst), so single CAS is enough to take a token.
+ */
+@ThreadSafe
+final class TokenBucketSampler implements Sampler {
+    /**
+     * Time to refill one token (ns)
+     */
+    private final long interval;
+
+    /**
+     * Time to refill whole bucket (ns)
+     */
+    private final long capacity;
+
+    /**
+     * Monotonic time when bucket was empty (ns)
+     */
+    private final AtomicLong emptyAt;
+
+    TokenBucketSampler(final double perSecond, final int burst) {
+        if (!(perSecond > 0)) {
+            throw new IllegalArgumentException("Rate limit must be positive: " + perSecond);
+        }
+
+        if (burst < 1) {
+            throw new IllegalArgumentException("Burst must be positive: " + burst);
+        }
+
+        this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+        this.capacity = interval * burst;
+        this.emptyAt = new AtomicLong(nanoTime() - capacity);
+    }
+
+    @Override
+    public boolean sample() {
+        final long now = nanoTime();
+
+        while (true) {
+            final long curr = emptyAt.get();
+            final long next = Math.max(curr, now - capacity) + interval;
+            if (next - now > 0) {
+                return false;
+            }
+
+            if (emptyAt.compareAndSet(curr, next)) {
+                return true;
+            }
+        }
+    }
+
+    private static long nanoTime() {
+        return SmartLogConfig.getConfig().getTimeSource().nanoTime();
+    }
+}
@@ -0,0 +1,233 @@
+package org.smartlog;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trace entries stored as parallel arrays: message template, arguments (or formatted message), flag and step duration.
+ * <p>
+ * Entries are rendered to text only when record is written, buffer arrays are reused by recycled context.
+ * Single primitive argument is kept in primitive array, so it is not boxed.
+ */
+@NotThreadSafe
+final class TraceBuffer {
+    /**
+     * Step duration of entry without time
+     */
+    static final long NO_TIME = -1;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private static final byte OBJECTS = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+
+    /**
+     * Arguments are already formatted, message is kept in {@link #formattedMessages}
+     */
+    private static final byte FORMATTED = 3;
+
+    private String[] messages = new String[INITIAL_CAPACITY];
+    private Object[][] args = new Object[INITIAL_CAPACITY][];
+    private TraceFlag[] flags = new TraceFlag[INITIAL_CAPACITY];
+    private long[] nanos = new long[INITIAL_CAPACITY];
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Primitive argument (double as raw bits)
+     */
+    private long[] values = new long[INITIAL_CAPACITY];
+
+    /**
+     * Formatted messages of {@link #FORMATTED} entries, allocated by first such entry
+     */
+    private String[] formattedMessages;
+
+    private int size;
+
+    void add(@Nonnull final String message, @Nullable final Object[] entryArgs, @Nonnull final TraceFlag flag,
+             final long entryNanos) {
+        add(message, entryArgs, OBJECTS, 0, flag, entryNanos);
+    }
+
+    void add(@Nonnull final String message, final long value, @Nonnull final TraceFlag flag, final long entryNanos) {
+        add(message, null, LONG, value, flag, entryNanos);
+    }
+
+    void add(@Nonnull final String message, final double value, @Nonnull final TraceFlag flag,
+             final long entryNanos) {
+        add(message, null, DOUBLE, Double.doubleToRawLongBits(value), flag, entryNanos);
+    }
+
+    /**
+     * Add entry formatted elsewhere (copy for another thread), template is kept
+     */
+    private void addFormatted(@Nonnull final String message, @Nonnull final String formatted,
+                              @Nonnull final TraceFlag flag, final long entryNanos) {
+        if (formattedMessages == null) {
+            formattedMessages = new String[messages.length];
+        }
+
+        add(message, null, FORMATTED, 0, flag, entryNanos);
+        formattedMessages[size - 1] = formatted;
+    }
+
+    private void add(@Nonnull final String message, @Nullable final Object[] entryArgs, final byte kind,
+                     final long value, @Nonnull final TraceFlag flag, final long entryNanos) {
+        if (size == messages.length) {
+            final int capacity = size * 2;
+            messages = Arrays.copyOf(messages, capacity);
+            args = Arrays.copyOf(args, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            nanos = Arrays.copyOf(nanos, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            values = Arrays.copyOf(values, capacity);
+            if (formattedMessages != null) {
+                formattedMessages = Arrays.copyOf(formattedMessages, capacity);
+            }
+        }
+
+        messages[size] = message;
+        args[size] = entryArgs;
+        kinds[size] = kind;
+        values[size] = value;
+        flags[size] = flag;
+        nanos[size] = entryNanos;
+        size++;
+    }
+
+    void addAll(@Nonnull final TraceBuffer other) {
+        for (int i = 0; i < other.size; i++) {
+            if (other.kinds[i] == FORMATTED) {
+                addFormatted(other.messages[i], other.formattedMessages[i], other.flags[i], other.nanos[i]);
+            } else {
+                add(other.messages[i], other.args[i], other.kinds[i], other.values[i], other.flags[i],
+                        other.nanos[i]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Nonnull
+    String message(final int index) {
+        return messages[index];
+    }
+
+    /**
+     * @return true if message of entry has arguments, so formatted message is not the template
+     */
+    boolean hasArgs(final int index) {
+        return kinds[index] != OBJECTS || args[index] != null;
+    }
+
+    @Nonnull
+    TraceFlag flag(final int index) {
+        return flags[index];
+    }
+
+    long nanos(final int index) {
+        return nanos[index];
+    }
+
+    /**
+     * Render entries separated by "; ", formatted message is followed by step time if it was measured
+     *
+     * @param builder destination
+     * @param unit    unit of step time
+     */
+    void render(@Nonnull final StringBuilder builder, @Nonnull final TimeUnit unit) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append("; ");
+            }
+
+            renderMessage(builder, i);
+
+            if (nanos[i] != NO_TIME) {
+                builder.append(" [")
+                        .append(unit.convert(nanos[i], TimeUnit.NANOSECONDS))
+                        .append(' ')
+                        .append(Util.timeUnitSuffix(unit))
+                        .append(']');
+            }
+        }
+    }
+
+    @Nonnull
+    String formatMessage(final int index) {
+        if (!hasArgs(index)) {
+            return messages[index];
+        }
+
+        if (kinds[index] == FORMATTED) {
+            return formattedMessages[index];
+        }
+
+        final StringBuilder builder = new StringBuilder(messages[index].length() + 16);
+        renderMessage(builder, index);
+        return builder.toString();
+    }
+
+    private void renderMessage(@Nonnull final StringBuilder builder, final int index) {
+        switch (kinds[index]) {
+            case LONG:
+                MessageTemplate.of(messages[index]).render(builder, values[index]);
+                break;
+            case DOUBLE:
+                MessageTemplate.of(messages[index]).render(builder, Double.longBitsToDouble(values[index]));
+                break;
+            case FORMATTED:
+                builder.append(formattedMessages[index]);
+                break;
+            default:
+                if (args[index] != null) {
+                    MessageTemplate.of(messages[index]).render(builder, args[index]);
+                } else {
+                    // message without arguments is written as is
+                    builder.append(messages[index]);
+                }
+        }
+    }
+
+    /**
+     * Copy entries with formatted messages, so copy doesn't refer to arguments, templates are kept
+     *
+     * @return copy
+     */
+    @Nonnull
+    TraceBuffer formattedCopy() {
+        final TraceBuffer copy = new TraceBuffer();
+        for (int i = 0; i < size; i++) {
+            if (hasArgs(i)) {
+                copy.addFormatted(messages[i], formatMessage(i), flags[i], nanos[i]);
+            } else {
+                copy.add(messages[i], null, flags[i], nanos[i]);
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * Drop entries
+     *
+     * @return false if buffer is too big to be kept
+     */
+    boolean clear(final int maxCapacity) {
+        Arrays.fill(messages, 0, size, null);
+        Arrays.fill(args, 0, size, null);
+        Arrays.fill(flags, 0, size, null);
+        if (formattedMessages != null) {
+            Arrays.fill(formattedMessages, 0, size, null);
+        }
+        size = 0;
+
+        return messages.length <= maxCapacity;
+    }
+}
@@ -1,27 +1,210 @@
 package org.smartlog;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public final class Util {
     @Nonnull
     public static String stripCrLf(@Nonnull final String text) {
-        final char[] src = text.toCharArray();
-        final StringBuilder dest = new StringBuilder(src.length + 10);
+        final int length = text.length();
 
-        for (final char ch : src) {
+        int pos = 0;
+        while (pos < length && !isCrLf(text.charAt(pos))) {
+            pos++;
+        }
+
+        if (pos == length) {
+            return text;
+        }
+
+        final StringBuilder dest = new StringBuilder(length + 10);
+        dest.append(text);
+        stripCrLf(dest, pos);
+
+        return dest.toString();
+    }
+
+    /**
+     * Replace CR/LF with "\r" and "\n" sequences in place, without copying the builder
+     *
+     * @param text text
+     * @param from start position
+     */
+    public static void stripCrLf(@Nonnull final StringBuilder text, final int from) {
+        final int length = text.length();
+
+        int count = 0;
+        for (int i = from; i < length; i++) {
+            if (isCrLf(text.charAt(i))) {
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        // every CR/LF becomes two chars, move chars from the end
+        text.setLength(length + count);
+
+        int dest = length + count - 1;
+        for (int i = length - 1; i >= from && dest > i; i--) {
+            final char ch = text.charAt(i);
             switch (ch) {
                 case 10:
-                    dest.append("\\n");
+                    text.setCharAt(dest--, 'n');
+                    text.setCharAt(dest--, '\\');
                     break;
                 case 13:
-                    dest.append("\\r");
+                    text.setCharAt(dest--, 'r');
+                    text.setCharAt(dest--, '\\');
                     break;
                 default:
-                    dest.append(ch);
+                    text.setCharAt(dest--, ch);
             }
         }
+    }
 
-        return dest.toString();
+    /**
+     * Length of text in UTF-8, unpaired surrogate is counted as '?'
+     *
+     * @param text text
+     * @return number of bytes
+     */
+    public static int utf8Length(@Nonnull final CharSequence text) {
+        final int length = text.length();
+
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = text.charAt(i);
+            if (ch < 0x80) {
+                bytes++;
+            } else if (ch < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(ch)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Encode text to UTF-8 directly into buffer, without intermediate string or byte array.
+     * <p>
+     * Encoding stops when next char doesn't fit, so long text may be written by several calls.
+     * Unpaired surrogate is written as '?'.
+     *
+     * @param text   text
+     * @param from   index of first char to encode
+     * @param buffer destination
+     * @return index of first char which is not encoded
+     */
+    public static int encodeUtf8(@Nonnull final CharSequence text, final int from, @Nonnull final ByteBuffer buffer) {
+        final int length = text.length();
+
+        int i = from;
+        while (i < length) {
+            final char ch = text.charAt(i);
+            if (ch < 0x80) {
+                if (!buffer.hasRemaining()) {
+                    break;
+                }
+
+                buffer.put((byte) ch);
+            } else if (ch < 0x800) {
+                if (buffer.remaining() < 2) {
+                    break;
+                }
+
+                buffer.put((byte) (0xC0 | (ch >> 6)));
+                buffer.put((byte) (0x80 | (ch & 0x3F)));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                if (buffer.remaining() < 4) {
+                    break;
+                }
+
+                final int cp = Character.toCodePoint(ch, text.charAt(i + 1));
+                buffer.put((byte) (0xF0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (cp & 0x3F)));
+                i++;
+            } else if (Character.isSurrogate(ch)) {
+                if (!buffer.hasRemaining()) {
+                    break;
+                }
+
+                buffer.put((byte) '?');
+            } else {
+                if (buffer.remaining() < 3) {
+                    break;
+                }
+
+                buffer.put((byte) (0xE0 | (ch >> 12)));
+                buffer.put((byte) (0x80 | ((ch >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (ch & 0x3F)));
+            }
+
+            i++;
+        }
+
+        return i;
+    }
+
+    /**
+     * Add suppressed throwables which are not added yet, so record written by several outputs does not repeat them
+     *
+     * @param throwable  throwable
+     * @param suppressed suppressed throwables or null
+     */
+    public static void addSuppressed(@Nonnull final Throwable throwable, @Nullable final List<Throwable> suppressed) {
+        if (suppressed == null) {
+            return;
+        }
+
+        final Throwable[] added = throwable.getSuppressed();
+        for (final Throwable t : suppressed) {
+            boolean found = false;
+            for (final Throwable a : added) {
+                if (a == t) {
+                    found = true;
+                    break;
+                }
+            }
+
+            if (!found) {
+                throwable.addSuppressed(t);
+            }
+        }
+    }
+
+    private static boolean isCrLf(final char ch) {
+        return ch == 10 || ch == 13;
+    }
+
+    @Nonnull
+    public static String timeUnitSuffix(@Nonnull final TimeUnit unit) {
+        switch (unit) {
+            case NANOSECONDS:
+                return "ns";
+            case MICROSECONDS:
+                return "us";
+            case MILLISECONDS:
+                return "ms";
+            case SECONDS:
+                return "s";
+            default:
+                return unit.name().toLowerCase();
+        }
     }
 
     @Nonnull
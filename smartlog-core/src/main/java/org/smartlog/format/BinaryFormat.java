@@ -0,0 +1,339 @@
+package org.smartlog.format;
+
+import org.smartlog.AttributeVisitor;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.TraceFlag;
+import org.smartlog.Util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+/**
+ * Encodes log contexts to compact binary stream, e.g. for {@link org.smartlog.output.BinaryOutput}.
+ * <p>
+ * Stream starts with header (magic and version), followed by records. Title and trace templates and attribute names
+ * are written once and then referenced by dictionary id, numbers are written as varints and raw doubles, so text is
+ * rendered only for titles/trace entries with arguments, string values and stack traces.
+ * <p>
+ * Record layout:
+ * <pre>
+ * byte   fields (HAS_TITLE | HAS_RESULT | HAS_THROWABLE | HAS_TRACE | TITLE_FORMATTED)
+ * byte   level ordinal + 1, 0 if absent
+ * varint start time delta from previous record (ms, zigzag)
+ * varint end time - start time (ms, zigzag)
+ * varint duration (ns, zigzag)
+ * [title template string, [formatted title string]] [result value] [throwable stack trace string]
+ * [trace: varint count, (byte flag ordinal | TRACE_FORMATTED, template string, [formatted string], varint nanos + 1)*]
+ * attributes: (byte value type, name string, value)*, byte ATTRS_END
+ * </pre>
+ * String is varint tag: {@link #STRING_NULL}, {@link #STRING_DEFINE} or {@link #STRING_INLINE} followed by
+ * varint length and UTF-8 bytes, or {@link #STRING_REF} + dictionary id. Defined strings get ids 0, 1, 2...
+ * in stream order. Value is type byte followed by zigzag varint, 8 bytes of double bits or string.
+ * <p>
+ * Encoder is stateful (dictionary and time of previous record), one instance must be used per stream.
+ */
+@NotThreadSafe
+public class BinaryFormat {
+    public static final int MAGIC = 0x534c4f47;
+    public static final byte VERSION = 2;
+
+    public static final int DEFAULT_MAX_DICTIONARY_SIZE = 64 * 1024;
+
+    public static final int HAS_TITLE = 1;
+    public static final int HAS_RESULT = 2;
+    public static final int HAS_THROWABLE = 4;
+    public static final int HAS_TRACE = 8;
+    public static final int TITLE_FORMATTED = 16;
+
+    public static final int TRACE_FORMATTED = 0x80;
+
+    public static final int STRING_NULL = 0;
+    public static final int STRING_DEFINE = 1;
+    public static final int STRING_INLINE = 2;
+    public static final int STRING_REF = 3;
+
+    public static final byte VALUE_NULL = 0;
+    public static final byte VALUE_LONG = 1;
+    public static final byte VALUE_DOUBLE = 2;
+    public static final byte VALUE_FALSE = 3;
+    public static final byte VALUE_TRUE = 4;
+    public static final byte VALUE_STRING = 5;
+    public static final byte ATTRS_END = -1;
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final int maxDictionarySize;
+
+    private final HashMap<String, Integer> dictionary = new HashMap<>();
+
+    private final AttributeVisitor attributeWriter = new AttributeVisitor() {
+        @Override
+        public void visit(@Nonnull final String name, @Nullable final Object value) {
+            writeValue(name, value);
+        }
+
+        @Override
+        public void visit(@Nonnull final String name, final long value) {
+            writeByte(VALUE_LONG);
+            writeString(name, true);
+            writeVarLong(zigzag(value));
+        }
+
+        @Override
+        public void visit(@Nonnull final String name, final double value) {
+            writeByte(VALUE_DOUBLE);
+            writeString(name, true);
+            writeDouble(value);
+        }
+
+        @Override
+        public void visit(@Nonnull final String name, final boolean value) {
+            writeByte(value ? VALUE_TRUE : VALUE_FALSE);
+            writeString(name, true);
+        }
+    };
+
+    @Nonnull
+    private ByteBuffer out = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+    private long lastStartTime;
+
+    public BinaryFormat() {
+        this(DEFAULT_MAX_DICTIONARY_SIZE);
+    }
+
+    /**
+     * @param maxDictionarySize max number of dictionary strings, next strings are written inline
+     */
+    public BinaryFormat(final int maxDictionarySize) {
+        this.maxDictionarySize = maxDictionarySize;
+    }
+
+    /**
+     * Start new stream: write header and reset dictionary
+     */
+    public void writeHeader() {
+        dictionary.clear();
+        lastStartTime = 0;
+
+        ensure(5);
+        out.putInt(MAGIC);
+        out.put(VERSION);
+    }
+
+    /**
+     * Append encoded record to buffer
+     *
+     * @param log log context
+     */
+    public void write(@Nonnull final LogContext log) {
+        final String title = log.rawTitle();
+        final boolean titleFormatted = log.hasTitleArgs();
+        final Object result = log.result();
+        final Throwable throwable = log.throwable();
+        final int traceSize = log.traceSize();
+        final LogLevel level = log.level();
+
+        int fields = 0;
+        if (title != null) {
+            fields |= HAS_TITLE;
+        }
+        if (result != null) {
+            fields |= HAS_RESULT;
+        }
+        if (throwable != null) {
+            fields |= HAS_THROWABLE;
+        }
+        if (traceSize > 0) {
+            fields |= HAS_TRACE;
+        }
+        if (titleFormatted) {
+            fields |= TITLE_FORMATTED;
+        }
+
+        writeByte(fields);
+        writeByte(level != null ? level.ordinal() + 1 : 0);
+
+        final long startTime = log.startTime();
+        writeVarLong(zigzag(startTime - lastStartTime));
+        writeVarLong(zigzag(log.endTime() - startTime));
+        writeVarLong(zigzag(log.durationNanos()));
+        lastStartTime = startTime;
+
+        if (title != null) {
+            // formatted title is a new string, keep only templates in dictionary
+            writeString(title, true);
+            if (titleFormatted) {
+                writeString(log.title(), false);
+            }
+        }
+
+        if (result != null) {
+            writeValue(null, result);
+        }
+
+        if (throwable != null) {
+            final StringWriter stackTrace = new StringWriter(1024);
+            throwable.printStackTrace(new PrintWriter(stackTrace));
+            writeString(stackTrace.toString(), false);
+        }
+
+        if (traceSize > 0) {
+            writeVarLong(traceSize);
+            for (int i = 0; i < traceSize; i++) {
+                final TraceFlag flag = log.traceFlag(i);
+                final boolean formatted = log.traceHasArgs(i);
+                writeByte(formatted ? flag.ordinal() | TRACE_FORMATTED : flag.ordinal());
+                writeString(log.traceMessage(i), true);
+                if (formatted) {
+                    writeString(log.traceFormattedMessage(i), false);
+                }
+
+                writeVarLong(log.traceNanos(i) + 1);
+            }
+        }
+
+        log.visitAttrs(attributeWriter);
+        writeByte(ATTRS_END);
+    }
+
+    /**
+     * @return encoded bytes, from 0 to {@link #size()}
+     */
+    @Nonnull
+    public ByteBuffer buffer() {
+        return out;
+    }
+
+    /**
+     * @return number of encoded bytes in buffer
+     */
+    public int size() {
+        return out.position();
+    }
+
+    /**
+     * Drop bytes of partially encoded record, e.g. when toString() of value failed.
+     * <p>
+     * Dictionary strings defined by dropped bytes are still known by encoder, so stream must be restarted by
+     * {@link #writeHeader()}.
+     *
+     * @param size size before record
+     */
+    public void truncate(final int size) {
+        out.position(size);
+    }
+
+    /**
+     * Drop encoded bytes (e.g. after they are written), dictionary is kept
+     */
+    public void clear() {
+        out.clear();
+    }
+
+    private void writeValue(@Nullable final String name, @Nullable final Object value) {
+        final byte type;
+        if (value == null) {
+            type = VALUE_NULL;
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            type = VALUE_LONG;
+        } else if (value instanceof Double || value instanceof Float) {
+            type = VALUE_DOUBLE;
+        } else if (value instanceof Boolean) {
+            type = (Boolean) value ? VALUE_TRUE : VALUE_FALSE;
+        } else {
+            type = VALUE_STRING;
+        }
+
+        writeByte(type);
+        if (name != null) {
+            writeString(name, true);
+        }
+
+        switch (type) {
+            case VALUE_LONG:
+                writeVarLong(zigzag(((Number) value).longValue()));
+                break;
+            case VALUE_DOUBLE:
+                writeDouble(((Number) value).doubleValue());
+                break;
+            case VALUE_STRING:
+                writeString(value.toString(), false);
+                break;
+            default:
+        }
+    }
+
+    private void writeString(@Nullable final String value, final boolean dictionaryCandidate) {
+        if (value == null) {
+            writeVarLong(STRING_NULL);
+            return;
+        }
+
+        if (dictionaryCandidate) {
+            final Integer id = dictionary.get(value);
+            if (id != null) {
+                writeVarLong(STRING_REF + (long) id);
+                return;
+            }
+
+            if (dictionary.size() < maxDictionarySize) {
+                dictionary.put(value, dictionary.size());
+                writeVarLong(STRING_DEFINE);
+                writeUtf8(value);
+                return;
+            }
+        }
+
+        writeVarLong(STRING_INLINE);
+        writeUtf8(value);
+    }
+
+    private void writeUtf8(@Nonnull final String value) {
+        final int length = Util.utf8Length(value);
+        writeVarLong(length);
+        ensure(length);
+        Util.encodeUtf8(value, 0, out);
+    }
+
+    private void writeByte(final int value) {
+        ensure(1);
+        out.put((byte) value);
+    }
+
+    private void writeDouble(final double value) {
+        ensure(8);
+        out.putLong(Double.doubleToRawLongBits(value));
+    }
+
+    private void writeVarLong(final long value) {
+        ensure(10);
+
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+
+        out.put((byte) v);
+    }
+
+    private static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void ensure(final int bytes) {
+        if (out.remaining() < bytes) {
+            final ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+            out.flip();
+            bigger.put(out);
+            out = bigger;
+        }
+    }
+}
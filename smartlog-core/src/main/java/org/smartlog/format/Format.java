@@ -12,4 +12,16 @@ public interface Format {
      * @return string message
      */
     String format(@Nonnull LogContext log);
-}
\ No newline at end of file
+
+    /**
+     * Append string presentation of log object to builder.
+     * <p>
+     * Formats which can render directly to the builder should override it to avoid intermediate string.
+     *
+     * @param log     log object
+     * @param builder destination
+     */
+    default void format(@Nonnull final LogContext log, @Nonnull final StringBuilder builder) {
+        builder.append(format(log));
+    }
+}
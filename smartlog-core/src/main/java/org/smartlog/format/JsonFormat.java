@@ -1,28 +1,268 @@
 package org.smartlog.format;
 
+import org.smartlog.AttributeVisitor;
 import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.Util;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 
 /**
- *
+ * Writes log context as single line json object, e.g. for logstash.
+ * <p>
+ * Json is written directly to reused per-thread buffer without intermediate objects, field names are escaped once.
+ * Numbers and booleans are written as json values, other objects as strings using toString().
+ * Timed trace entries are also written as "steps" array of message templates and durations, so they can be aggregated.
+ * Attributes are nested in "attrs" object, so their names never clash with fields above. Throwable is written
+ * with its stack trace (including suppressed throwables of context) in "stack_trace" field.
  */
 public class JsonFormat implements Format {
-    static {
-        // todo - check gson/jackson present and select one
-    }
+    private static final int MAX_RECYCLED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final String TITLE = "{\"title\":";
+    private static final String RESULT = ",\"result\":";
+    private static final String TRACE = ",\"trace\":";
+    private static final String STEPS = ",\"steps\":[";
+    private static final String STEP = "{\"step\":";
+    private static final String TIME = ",\"time\":";
+    private static final String TIME_US = ",\"time_us\":";
+    private static final String LEVEL = ",\"level\":";
+    private static final String THROWABLE = ",\"throwable\":";
+    private static final String STACK_TRACE = ",\"stack_trace\":";
+    private static final String ATTRS = ",\"attrs\":{";
 
     @Override
     public String format(@Nonnull final LogContext log) {
-        // todo - call real implementation
-        return null;
+        StringBuilder builder = BUFFERS.get();
+        if (builder.length() > 0) {
+            // nested format() on this thread, e.g. from toString() of attached value
+            builder = new StringBuilder(256);
+        } else if (builder.capacity() > MAX_RECYCLED_CAPACITY) {
+            builder = new StringBuilder(256);
+            BUFFERS.set(builder);
+        }
+
+        try {
+            format(log, builder);
+            return builder.toString();
+        } finally {
+            builder.setLength(0);
+        }
     }
 
-    private class GsonFormat {
-        // todo
+    /**
+     * Append json object to builder
+     *
+     * @param log     log context
+     * @param builder destination
+     */
+    @Override
+    public void format(@Nonnull final LogContext log, @Nonnull final StringBuilder builder) {
+        builder.append(TITLE);
+        appendString(builder, log.title());
+
+        final Object result = log.result();
+        if (result != null) {
+            builder.append(RESULT);
+            appendValue(builder, result);
+        }
+
+        final String trace = log.trace();
+        if (trace != null && !trace.isEmpty()) {
+            builder.append(TRACE);
+            appendString(builder, trace);
+        }
+
+        boolean hasSteps = false;
+        final int traceSize = log.traceSize();
+        for (int i = 0; i < traceSize; i++) {
+            final long nanos = log.traceNanos(i);
+            if (nanos < 0) {
+                continue;
+            }
+
+            builder.append(hasSteps ? "," : STEPS)
+                    .append(STEP);
+            appendString(builder, log.traceMessage(i));
+            builder.append(TIME_US)
+                    .append(nanos / 1000)
+                    .append('}');
+            hasSteps = true;
+        }
+
+        if (hasSteps) {
+            builder.append(']');
+        }
+
+        builder.append(TIME)
+                .append(log.endTime() - log.startTime())
+                .append(TIME_US)
+                .append(log.durationNanos() / 1000);
+
+        final LogLevel level = log.level();
+        if (level != null) {
+            builder.append(LEVEL)
+                    .append('"')
+                    .append(level.name())
+                    .append('"');
+        }
+
+        final Throwable throwable = log.throwable();
+        if (throwable != null) {
+            builder.append(THROWABLE);
+            appendString(builder, throwable.toString());
+
+            Util.addSuppressed(throwable, log.suppressedThrowables());
+
+            final StringWriter stackTrace = new StringWriter(1024);
+            throwable.printStackTrace(new PrintWriter(stackTrace));
+
+            // printStackTrace ends with line separator
+            final StringBuffer buffer = stackTrace.getBuffer();
+            buffer.setLength(Math.max(0, buffer.length() - System.lineSeparator().length()));
+
+            builder.append(STACK_TRACE);
+            appendString(builder, buffer.toString());
+        }
+
+        final AttrAppender attrAppender = new AttrAppender(builder);
+        log.visitAttrs(attrAppender);
+        if (attrAppender.hasAttrs) {
+            builder.append('}');
+        }
+
+        builder.append('}');
     }
 
-    private class JacksonFormat {
-        // todo
+    @Override
+    public String toString() {
+        return "json";
+    }
+
+    private static void appendValue(@Nonnull final StringBuilder builder, @Nullable final Object value) {
+        if (value == null) {
+            builder.append("null");
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            builder.append(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            final double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                appendString(builder, value.toString());
+            } else {
+                builder.append(value);
+            }
+        } else if (value instanceof Boolean) {
+            builder.append(((Boolean) value).booleanValue());
+        } else {
+            appendString(builder, value.toString());
+        }
+    }
+
+    private static void appendString(@Nonnull final StringBuilder builder, @Nullable final String value) {
+        if (value == null) {
+            builder.append("null");
+            return;
+        }
+
+        builder.append('"');
+
+        final int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = value.charAt(i);
+            if (ch >= 0x20 && ch != '"' && ch != '\\') {
+                continue;
+            }
+
+            builder.append(value, start, i);
+            start = i + 1;
+
+            switch (ch) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\b':
+                    builder.append("\\b");
+                    break;
+                case '\f':
+                    builder.append("\\f");
+                    break;
+                default:
+                    builder.append("\\u00")
+                            .append(HEX[ch >> 4])
+                            .append(HEX[ch & 0xF]);
+            }
+        }
+
+        builder.append(value, start, length)
+                .append('"');
+    }
+
+    /**
+     * Appends attributes as fields of "attrs" object, primitive values are not boxed
+     */
+    private static final class AttrAppender implements AttributeVisitor {
+        @Nonnull
+        private final StringBuilder builder;
+
+        private boolean hasAttrs;
+
+        AttrAppender(@Nonnull final StringBuilder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public void visit(@Nonnull final String name, @Nullable final Object value) {
+            appendName(name);
+            appendValue(builder, value);
+        }
+
+        @Override
+        public void visit(@Nonnull final String name, final long value) {
+            appendName(name);
+            builder.append(value);
+        }
+
+        @Override
+        public void visit(@Nonnull final String name, final double value) {
+            appendName(name);
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                appendString(builder, Double.toString(value));
+            } else {
+                builder.append(value);
+            }
+        }
+
+        @Override
+        public void visit(@Nonnull final String name, final boolean value) {
+            appendName(name);
+            builder.append(value);
+        }
+
+        private void appendName(@Nonnull final String name) {
+            builder.append(hasAttrs ? "," : ATTRS);
+            hasAttrs = true;
+            appendString(builder, name);
+            builder.append(':');
+        }
     }
-}
\ No newline at end of file
+}
@@ -24,12 +24,14 @@ public class SimpleTextFormat implements Format {
         });
         STD_ATTRS.put("trace", (log, builder) -> builder.append(log.trace()));
         STD_ATTRS.put("time", (log, builder) -> builder.append(log.endTime() - log.startTime()));
+        STD_ATTRS.put("time_us", (log, builder) -> builder.append(log.durationNanos() / 1000));
+        STD_ATTRS.put("time_ns", (log, builder) -> builder.append(log.durationNanos()));
     }
 
     @Nonnull
     private final String format;
     @Nonnull
-    private final ArrayList<Token> tokens;
+    private final Token[] tokens;
 
     public SimpleTextFormat(@Nonnull final String format) {
         this(format, DEFAULT_VARIABLE_PATTERN);
@@ -41,7 +43,7 @@ public class SimpleTextFormat implements Format {
         final Matcher matcher = variablePattern.matcher(format);
 
         int pos = 0;
-        tokens = new ArrayList<>();
+        final ArrayList<Token> tokens = new ArrayList<>();
         while (matcher.find(pos)) {
             int start = matcher.start();
             if (start > pos) {
@@ -63,17 +65,21 @@ public class SimpleTextFormat implements Format {
             tokens.add(new TextToken(format.substring(pos)));
         }
 
-        tokens.trimToSize();
+        this.tokens = tokens.toArray(new Token[0]);
     }
 
     @Override
     public String format(@Nonnull final LogContext log) {
-        final StringBuilder builder = new StringBuilder();
+        final StringBuilder builder = new StringBuilder(128);
+        format(log, builder);
+        return builder.toString();
+    }
+
+    @Override
+    public void format(@Nonnull final LogContext log, @Nonnull final StringBuilder builder) {
         for (final Token token : tokens) {
             token.append(log, builder);
         }
-
-        return builder.toString();
     }
 
     @Override
@@ -103,15 +109,13 @@ public class SimpleTextFormat implements Format {
         private final String name;
 
         AttributeToken(final String name) {
-            this.name = name;
+            // interned once, so attribute attached with literal name is found by reference
+            this.name = name.intern();
         }
 
         @Override
         public void append(final LogContext log, final StringBuilder builder) {
-            final Object value = log.getAttr(name);
-            if (value != null) {
-                builder.append(value);
-            }
+            log.appendAttr(name, builder);
         }
     }
 }
\ No newline at end of file
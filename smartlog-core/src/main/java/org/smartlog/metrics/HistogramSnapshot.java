@@ -0,0 +1,105 @@
+package org.smartlog.metrics;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Point-in-time copy of {@link LatencyHistogram}, values are nanoseconds
+ */
+@Immutable
+public class HistogramSnapshot {
+    private final long[] counts;
+
+    private final long count;
+
+    HistogramSnapshot(final long[] counts) {
+        this.counts = counts;
+
+        long total = 0;
+        for (final long bucketCount : counts) {
+            total += bucketCount;
+        }
+
+        this.count = total;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMinNanos() {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                return LatencyHistogram.value(i);
+            }
+        }
+
+        return 0;
+    }
+
+    public long getMaxNanos() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] > 0) {
+                return LatencyHistogram.value(i);
+            }
+        }
+
+        return 0;
+    }
+
+    public long getMeanNanos() {
+        if (count == 0) {
+            return 0;
+        }
+
+        double sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                sum += (double) counts[i] * LatencyHistogram.value(i);
+            }
+        }
+
+        return (long) (sum / count);
+    }
+
+    public long getP50Nanos() {
+        return percentile(50);
+    }
+
+    public long getP99Nanos() {
+        return percentile(99);
+    }
+
+    public long getP999Nanos() {
+        return percentile(99.9);
+    }
+
+    /**
+     * @param percentile percentile from 0 to 100
+     * @return value (ns) not exceeded by given percent of values, 0 if snapshot is empty
+     */
+    public long percentile(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return LatencyHistogram.value(i);
+            }
+        }
+
+        return getMaxNanos();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count
+                + ", p50=" + getP50Nanos()
+                + ", p99=" + getP99Nanos()
+                + ", p999=" + getP999Nanos()
+                + ", max=" + getMaxNanos() + " ns";
+    }
+}
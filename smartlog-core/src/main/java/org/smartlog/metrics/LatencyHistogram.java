@@ -0,0 +1,101 @@
+package org.smartlog.metrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of durations (ns), HdrHistogram-style.
+ * <p>
+ * Values below {@link #SUB_BUCKETS} are counted exactly, larger values are counted in buckets of relative width
+ * 1/64, so percentiles have at most ~1.6% error. Values above 2^{@value #MAX_BITS} ns (~9.7 hours) are counted in
+ * the last bucket.
+ */
+@ThreadSafe
+public class LatencyHistogram {
+    private static final int SUB_BITS = 7;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+
+    static final int MAX_BITS = 45;
+    static final int SIZE = SUB_BUCKETS + (MAX_BITS - SUB_BITS) * HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SIZE);
+
+    /**
+     * Counts of last interval snapshot, guarded by this
+     */
+    private long[] intervalCounts = new long[SIZE];
+
+    public void record(final long nanos) {
+        counts.incrementAndGet(index(nanos));
+    }
+
+    /**
+     * @return all values recorded since creation or reset
+     */
+    @Nonnull
+    public HistogramSnapshot snapshot() {
+        return new HistogramSnapshot(copyCounts());
+    }
+
+    /**
+     * @return values recorded since previous interval snapshot
+     */
+    @Nonnull
+    public synchronized HistogramSnapshot intervalSnapshot() {
+        final long[] curr = copyCounts();
+        final long[] diff = new long[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            diff[i] = curr[i] - intervalCounts[i];
+        }
+
+        intervalCounts = curr;
+        return new HistogramSnapshot(diff);
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < SIZE; i++) {
+            counts.set(i, 0);
+        }
+
+        intervalCounts = new long[SIZE];
+    }
+
+    private long[] copyCounts() {
+        final long[] result = new long[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            result[i] = counts.get(i);
+        }
+
+        return result;
+    }
+
+    static int index(final long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return nanos > 0 ? (int) nanos : 0;
+        }
+
+        if (nanos >= 1L << MAX_BITS) {
+            return SIZE - 1;
+        }
+
+        // top SUB_BITS bits of value select sub-bucket, position of highest bit selects bucket
+        final int shift = 64 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) ((nanos >> shift) - HALF);
+    }
+
+    /**
+     * @param index bucket index
+     * @return middle value of bucket
+     */
+    static long value(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int shift = (index - SUB_BUCKETS) / HALF + 1;
+        final long top = (index - SUB_BUCKETS) % HALF + HALF;
+        return (top << shift) + (1L << (shift - 1));
+    }
+}
@@ -0,0 +1,153 @@
+package org.smartlog.metrics;
+
+import org.smartlog.LogContext;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms per title of loggable.
+ * <p>
+ * Title is taken without formatting arguments (e.g. "load order %s"), so histogram is kept per call site,
+ * title of @Loggable method is method name by default. Number of titles is limited, contexts with new titles
+ * above the limit are counted as dropped.
+ * <p>
+ * Optionally timed trace entries are recorded too, with key {@code <title> > <trace message>}.
+ */
+@ThreadSafe
+public class LatencyMetrics implements MetricsSink, LatencyMetricsMXBean {
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private final int maxTitles;
+
+    private final boolean recordSteps;
+
+    private final LongAdder dropped = new LongAdder();
+
+    public LatencyMetrics() {
+        this(1024, false);
+    }
+
+    /**
+     * @param maxTitles   max number of histograms, each takes ~20 KB
+     * @param recordSteps record durations of timed trace entries
+     */
+    public LatencyMetrics(final int maxTitles, final boolean recordSteps) {
+        this.maxTitles = maxTitles;
+        this.recordSteps = recordSteps;
+    }
+
+    @Override
+    public void record(@Nonnull final LogContext ctx) {
+        final String title = ctx.rawTitle();
+        if (title == null) {
+            return;
+        }
+
+        record(title, ctx.durationNanos());
+
+        if (recordSteps) {
+            final int traceSize = ctx.traceSize();
+            for (int i = 0; i < traceSize; i++) {
+                final long nanos = ctx.traceNanos(i);
+                if (nanos >= 0) {
+                    record(title + " > " + ctx.traceMessage(i), nanos);
+                }
+            }
+        }
+    }
+
+    public void record(@Nonnull final String title, final long nanos) {
+        LatencyHistogram histogram = histograms.get(title);
+        if (histogram == null) {
+            if (histograms.size() >= maxTitles) {
+                dropped.increment();
+                return;
+            }
+
+            histogram = histograms.computeIfAbsent(title, t -> new LatencyHistogram());
+        }
+
+        histogram.record(nanos);
+    }
+
+    @Nullable
+    public LatencyHistogram histogram(@Nonnull final String title) {
+        return histograms.get(title);
+    }
+
+    @Nullable
+    public HistogramSnapshot snapshot(@Nonnull final String title) {
+        final LatencyHistogram histogram = histograms.get(title);
+        return histogram != null ? histogram.snapshot() : null;
+    }
+
+    @Override
+    public Map<String, HistogramSnapshot> getSnapshots() {
+        final Map<String, HistogramSnapshot> result = new TreeMap<>();
+        for (final Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<String, HistogramSnapshot> intervalSnapshots() {
+        final Map<String, HistogramSnapshot> result = new TreeMap<>();
+        for (final Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().intervalSnapshot());
+        }
+
+        return result;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void reset() {
+        histograms.clear();
+        dropped.reset();
+    }
+
+    /**
+     * Register in platform MBean server as {@code org.smartlog:type=LatencyMetrics,name=<name>}
+     *
+     * @param name name of metrics
+     * @return object name
+     */
+    @Nonnull
+    public ObjectName registerMBean(@Nonnull final String name) {
+        try {
+            final ObjectName objectName = objectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new RuntimeException("Failed to register latency metrics MBean: " + name, e);
+        }
+    }
+
+    public void unregisterMBean(@Nonnull final String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+        } catch (JMException e) {
+            throw new RuntimeException("Failed to unregister latency metrics MBean: " + name, e);
+        }
+    }
+
+    private static ObjectName objectName(final String name) throws JMException {
+        return new ObjectName("org.smartlog:type=LatencyMetrics,name=" + ObjectName.quote(name));
+    }
+}
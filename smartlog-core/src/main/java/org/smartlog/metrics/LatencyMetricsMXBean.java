@@ -0,0 +1,25 @@
+package org.smartlog.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link LatencyMetrics}
+ */
+public interface LatencyMetricsMXBean {
+    /**
+     * @return title -> snapshot of all values recorded since creation or reset
+     */
+    Map<String, HistogramSnapshot> getSnapshots();
+
+    /**
+     * @return number of contexts not recorded because max number of titles is reached
+     */
+    long getDroppedCount();
+
+    /**
+     * @return title -> snapshot of values recorded since previous call
+     */
+    Map<String, HistogramSnapshot> intervalSnapshots();
+
+    void reset();
+}
@@ -0,0 +1,19 @@
+package org.smartlog.metrics;
+
+import org.smartlog.LogContext;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives every finished context (including unsampled and dropped by duration threshold ones),
+ * see {@link org.smartlog.SmartLogConfig.Builder#withMetricsSink(MetricsSink)}, e.g.
+ * {@code SmartLogConfig.update(builder -> builder.withMetricsSink(sink))}
+ */
+public interface MetricsSink {
+    /**
+     * Called on finish, must not keep reference to context
+     *
+     * @param ctx finished context
+     */
+    void record(@Nonnull LogContext ctx);
+}
@@ -0,0 +1,301 @@
+package org.smartlog.output;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smartlog.DurationThreshold;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.Sampler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes log records to delegate output from background thread.
+ * <p>
+ * Request thread only takes snapshot of finished context and puts it to preallocated ring buffer,
+ * formatting and writing to delegate are done by consumer thread. Result and attached objects are rendered
+ * in consumer thread, so they should be immutable or thread safe.
+ * <p>
+ * Delegate runs on consumer thread, {@link Slf4JOutput} logs record with thread name and MDC of thread which
+ * finished it (they are captured in snapshot), other delegates see consumer thread.
+ */
+@ThreadSafe
+public class AsyncOutput implements Output, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncOutput.class);
+
+    @Nonnull
+    private final Output output;
+
+    @Nonnull
+    private final RingBuffer<LogContext> buffer;
+
+    @Nonnull
+    private final WaitStrategy waitStrategy;
+
+    private final boolean blockWhenFull;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Number of producers between running check and publish, writer thread doesn't stop until they finish
+     */
+    private final AtomicInteger producers = new AtomicInteger();
+
+    @Nonnull
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    public AsyncOutput(final Builder builder) {
+        if (builder.output == null) {
+            throw new RuntimeException("Output is absent");
+        }
+
+        this.output = builder.output;
+        this.buffer = new RingBuffer<>(builder.bufferSize);
+        this.waitStrategy = builder.waitStrategy;
+        this.blockWhenFull = builder.blockWhenFull;
+
+        this.writer = new Thread(this::consume, builder.threadName);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public static Builder create() {
+        return new Builder();
+    }
+
+    @Override
+    public void write(final LogContext log) {
+        producers.incrementAndGet();
+        try {
+            if (!running) {
+                dropped.incrementAndGet();
+                return;
+            }
+
+            final LogContext event = log.snapshot();
+
+            int attempt = 0;
+            while (!buffer.offer(event)) {
+                if (!blockWhenFull || !running) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+
+                waitStrategy.idle(attempt++);
+            }
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean isEnabled(@Nonnull final LogLevel level) {
+        return output.isEnabled(level);
+    }
+
+    @Nullable
+    @Override
+    public Sampler sampler() {
+        return output.sampler();
+    }
+
+    @Nullable
+    @Override
+    public DurationThreshold threshold() {
+        return output.threshold();
+    }
+
+    /**
+     * Stop accepting new records, write all buffered ones and wait for writer thread
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Nonnull
+    public Output getOutput() {
+        return output;
+    }
+
+    /**
+     * @return number of records dropped because buffer was full or output was closed
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of records failed by delegate output
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public int getBufferSize() {
+        return buffer.capacity();
+    }
+
+    /**
+     * @return approximate number of records waiting to be written
+     */
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    private void consume() {
+        int attempt = 0;
+        while (true) {
+            final LogContext event = buffer.poll();
+            if (event != null) {
+                writeToOutput(event);
+                attempt = 0;
+            } else if (running) {
+                waitStrategy.idle(attempt++);
+            } else {
+                // producers which passed running check before close may still publish records
+                if (producers.get() == 0 && buffer.size() == 0) {
+                    return;
+                }
+
+                Thread.yield();
+            }
+        }
+    }
+
+    private void writeToOutput(final LogContext event) {
+        try {
+            output.write(event);
+        } catch (Throwable e) {
+            // writer thread must keep draining buffer whatever delegate throws
+            failed.incrementAndGet();
+            LOGGER.error("Failed to write log record", e);
+        }
+    }
+
+    /**
+     * Defines how writer thread waits for new records and how producer waits for free slot
+     */
+    public enum WaitStrategy {
+        /**
+         * Lowest latency, occupies cpu core
+         */
+        BUSY_SPIN {
+            @Override
+            void idle(final int attempt) {
+            }
+        },
+
+        /**
+         * Spin for a while, then yield cpu to other threads
+         */
+        YIELDING {
+            @Override
+            void idle(final int attempt) {
+                if (attempt >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+            }
+        },
+
+        /**
+         * Spin, yield and finally park for short time, lowest cpu usage
+         */
+        PARKING {
+            @Override
+            void idle(final int attempt) {
+                if (attempt >= SPIN_TRIES + YIELD_TRIES) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                } else if (attempt >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+            }
+        };
+
+        private static final int SPIN_TRIES = 100;
+        private static final int YIELD_TRIES = 100;
+        private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+        abstract void idle(int attempt);
+    }
+
+    public static class Builder {
+        private Output output;
+
+        private int bufferSize = 1024;
+
+        private WaitStrategy waitStrategy = WaitStrategy.PARKING;
+
+        private boolean blockWhenFull;
+
+        private String threadName = "smartlog-async-output";
+
+        protected Builder() {
+        }
+
+        public Builder withOutput(final Output output) {
+            this.output = output;
+            return this;
+        }
+
+        /**
+         * @param bufferSize max number of pending records, must be power of 2
+         * @return this
+         */
+        public Builder withBufferSize(final int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public Builder withWaitStrategy(final WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        public Builder withThreadName(final String threadName) {
+            this.threadName = threadName;
+            return this;
+        }
+
+        /**
+         * Drop new records when buffer is full (default)
+         *
+         * @return this
+         */
+        public Builder dropWhenFull() {
+            this.blockWhenFull = false;
+            return this;
+        }
+
+        /**
+         * Wait for free slot when buffer is full
+         *
+         * @return this
+         */
+        public Builder blockWhenFull() {
+            this.blockWhenFull = true;
+            return this;
+        }
+
+        public AsyncOutput build() {
+            return new AsyncOutput(this);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package org.smartlog.output;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smartlog.DurationThreshold;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.Sampler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Groups records and writes them to delegate output in batches by {@link Output#writeBatch}.
+ * <p>
+ * Snapshots of finished contexts are collected in striped buffers (stripe is chosen by thread id), full stripe is
+ * written by thread which filled it, other stripes are written by timer every max latency and on close.
+ * Records of different threads may be reordered. Result and attached objects are rendered when batch is written,
+ * so they should be immutable or thread safe.
+ * <p>
+ * Delegate runs on timer thread or on thread which filled stripe, {@link Slf4JOutput} logs record with thread name
+ * and MDC of thread which finished it (they are captured in snapshot), other delegates see the writing thread.
+ */
+@ThreadSafe
+public class BatchingOutput implements Output, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchingOutput.class);
+
+    @Nonnull
+    private final Output output;
+
+    private final int batchSize;
+
+    @Nonnull
+    private final Stripe[] stripes;
+
+    private final int stripeMask;
+
+    @Nonnull
+    private final ScheduledExecutorService timer;
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public BatchingOutput(final Builder builder) {
+        if (builder.output == null) {
+            throw new RuntimeException("Output is absent");
+        }
+
+        if (builder.batchSize <= 0 || builder.maxLatencyNanos <= 0) {
+            throw new RuntimeException("Batch size and max latency must be positive");
+        }
+
+        this.output = builder.output;
+        this.batchSize = builder.batchSize;
+
+        final int stripeCount = Integer.highestOneBit(Math.max(1, builder.stripes) * 2 - 1);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(batchSize);
+        }
+
+        this.stripeMask = stripeCount - 1;
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, builder.threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.scheduleAtFixedRate(this::flush, builder.maxLatencyNanos, builder.maxLatencyNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    public static Builder create() {
+        return new Builder();
+    }
+
+    @Override
+    public void write(final LogContext log) {
+        if (!running) {
+            // nothing flushes buffers after close
+            writeToOutput(log);
+            return;
+        }
+
+        final Stripe stripe = stripes[(int) Thread.currentThread().getId() & stripeMask];
+        final List<LogContext> batch = stripe.add(log.snapshot());
+        if (batch != null) {
+            writeToOutput(batch);
+        }
+    }
+
+    @Override
+    public boolean isEnabled(@Nonnull final LogLevel level) {
+        return output.isEnabled(level);
+    }
+
+    @Nullable
+    @Override
+    public Sampler sampler() {
+        return output.sampler();
+    }
+
+    @Nullable
+    @Override
+    public DurationThreshold threshold() {
+        return output.threshold();
+    }
+
+    /**
+     * Write all buffered records
+     */
+    public void flush() {
+        for (final Stripe stripe : stripes) {
+            final List<LogContext> batch = stripe.drain();
+            if (batch != null) {
+                writeToOutput(batch);
+            }
+        }
+    }
+
+    /**
+     * Stop timer and write buffered records, records written after close are passed to delegate one by one
+     */
+    @Override
+    public void close() {
+        running = false;
+        timer.shutdown();
+
+        try {
+            timer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // write() which passed running check before close adds to closed stripe and writes record itself
+        for (final Stripe stripe : stripes) {
+            final List<LogContext> batch = stripe.close();
+            if (batch != null) {
+                writeToOutput(batch);
+            }
+        }
+    }
+
+    @Nonnull
+    public Output getOutput() {
+        return output;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return number of records failed by delegate output (whole batch is counted on failure)
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    private void writeToOutput(@Nonnull final List<LogContext> batch) {
+        try {
+            output.writeBatch(batch);
+        } catch (RuntimeException e) {
+            failed.addAndGet(batch.size());
+            LOGGER.error("Failed to write log records", e);
+        }
+    }
+
+    private void writeToOutput(@Nonnull final LogContext log) {
+        try {
+            output.write(log);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            LOGGER.error("Failed to write log record", e);
+        }
+    }
+
+    /**
+     * Records buffered by group of threads
+     */
+    private static final class Stripe {
+        private final int batchSize;
+
+        // guarded by this
+        private ArrayList<LogContext> records;
+
+        // guarded by this
+        private boolean closed;
+
+        Stripe(final int batchSize) {
+            this.batchSize = batchSize;
+            this.records = new ArrayList<>(batchSize);
+        }
+
+        /**
+         * @return full batch to write (or record itself if stripe is closed) or null
+         */
+        @Nullable
+        synchronized List<LogContext> add(@Nonnull final LogContext log) {
+            if (closed) {
+                return Collections.singletonList(log);
+            }
+
+            records.add(log);
+            if (records.size() < batchSize) {
+                return null;
+            }
+
+            return swap();
+        }
+
+        /**
+         * @return buffered records or null if nothing is buffered
+         */
+        @Nullable
+        synchronized List<LogContext> drain() {
+            return records.isEmpty() ? null : swap();
+        }
+
+        /**
+         * Stop buffering, next records are returned by {@link #add} at once
+         *
+         * @return buffered records or null if nothing is buffered
+         */
+        @Nullable
+        synchronized List<LogContext> close() {
+            closed = true;
+            return drain();
+        }
+
+        @Nonnull
+        private List<LogContext> swap() {
+            final List<LogContext> batch = records;
+            records = new ArrayList<>(batchSize);
+            return batch;
+        }
+    }
+
+    public static class Builder {
+        private Output output;
+
+        private int batchSize = 64;
+
+        private long maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+        private int stripes = Runtime.getRuntime().availableProcessors();
+
+        private String threadName = "smartlog-batching-output";
+
+        protected Builder() {
+        }
+
+        public Builder withOutput(final Output output) {
+            this.output = output;
+            return this;
+        }
+
+        /**
+         * @param batchSize number of records which triggers write of stripe, 64 by default
+         * @return this
+         */
+        public Builder withBatchSize(final int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param maxLatency max time record waits in buffer, 100 ms by default
+         * @param unit       time unit
+         * @return this
+         */
+        public Builder withMaxLatency(final long maxLatency, final TimeUnit unit) {
+            this.maxLatencyNanos = unit.toNanos(maxLatency);
+            return this;
+        }
+
+        /**
+         * @param stripes number of buffers (rounded up to power of 2), number of cpus by default
+         * @return this
+         */
+        public Builder withStripes(final int stripes) {
+            this.stripes = stripes;
+            return this;
+        }
+
+        public Builder withThreadName(final String threadName) {
+            this.threadName = threadName;
+            return this;
+        }
+
+        public BatchingOutput build() {
+            return new BatchingOutput(this);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package org.smartlog.output;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smartlog.DurationThreshold;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.Sampler;
+import org.smartlog.format.BinaryFormat;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes records encoded by {@link BinaryFormat} to rolling files, use smartlog-decoder to read them.
+ * <p>
+ * Segments are named {@code <file>.<N>} like segments of {@link FileOutput}, every segment starts with header and
+ * has its own dictionary. Records are buffered and written when buffer is full, on {@link #flush()} and on close.
+ * Errors are logged by SLF4J and counted, failed segment is closed and next record starts new one.
+ * Record written by toString() of value while outer record is encoded is dropped and counted as failed.
+ */
+@ThreadSafe
+public class BinaryOutput implements Output, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryOutput.class);
+
+    @Nonnull
+    private final Path file;
+
+    @Nonnull
+    private final LogLevel level;
+
+    private final long segmentSize;
+
+    private final int bufferSize;
+
+    @Nullable
+    private final Sampler sampler;
+
+    @Nullable
+    private final DurationThreshold threshold;
+
+    private final AtomicLong failed = new AtomicLong();
+
+    // guarded by this
+
+    @Nonnull
+    private final BinaryFormat format;
+
+    @Nullable
+    private FileChannel channel;
+
+    /**
+     * Bytes written to current segment
+     */
+    private long segmentBytes;
+
+    private int sequence = -1;
+
+    private boolean closed;
+
+    /**
+     * Record is being encoded, set while toString() of value may write another record on this thread
+     */
+    private boolean encoding;
+
+    public BinaryOutput(final Builder builder) {
+        if (builder.file == null) {
+            throw new RuntimeException("File is absent");
+        }
+
+        this.file = builder.file.toAbsolutePath();
+        this.level = builder.level;
+        this.segmentSize = builder.segmentSize;
+        this.bufferSize = builder.bufferSize;
+        this.sampler = builder.sampler;
+        this.threshold = builder.threshold;
+        this.format = new BinaryFormat(builder.maxDictionarySize);
+    }
+
+    public static Builder create() {
+        return new Builder();
+    }
+
+    @Override
+    public synchronized void write(final LogContext log) {
+        writeRecord(log);
+    }
+
+    /**
+     * Encode all records under single lock
+     *
+     * @param batch records
+     */
+    @Override
+    public synchronized void writeBatch(@Nonnull final List<LogContext> batch) {
+        for (final LogContext log : batch) {
+            writeRecord(log);
+        }
+    }
+
+    @Override
+    public boolean isEnabled(@Nonnull final LogLevel level) {
+        return level.ordinal() >= this.level.ordinal();
+    }
+
+    @Nullable
+    @Override
+    public Sampler sampler() {
+        return sampler;
+    }
+
+    @Nullable
+    @Override
+    public DurationThreshold threshold() {
+        return threshold;
+    }
+
+    /**
+     * Write buffered records to file
+     */
+    public synchronized void flush() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            writeBuffer();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Write buffered records and close current segment, records written after close are dropped
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Nonnull
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return path of current segment or null if nothing is written yet
+     */
+    @Nullable
+    public synchronized Path getSegment() {
+        return sequence >= 0 ? Segments.path(file, sequence) : null;
+    }
+
+    /**
+     * @return number of failed writes, buffered records are lost on failure
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Encode record, caller holds lock
+     */
+    private void writeRecord(final LogContext log) {
+        if (closed || !isEnabled(log.level() != null ? log.level() : LogLevel.INFO)) {
+            return;
+        }
+
+        if (encoding) {
+            // nested record would be mixed with outer one in the stream
+            failed.incrementAndGet();
+            return;
+        }
+
+        try {
+            if (channel == null || segmentBytes + format.size() >= segmentSize) {
+                roll();
+            }
+
+            final int start = format.size();
+            encoding = true;
+            try {
+                format.write(log);
+            } catch (RuntimeException e) {
+                // dictionary may refer to strings of dropped record, so segment is closed
+                format.truncate(start);
+                closeSegment();
+                throw e;
+            } finally {
+                encoding = false;
+            }
+
+            if (format.size() >= bufferSize) {
+                writeBuffer();
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    private void roll() throws IOException {
+        if (channel != null) {
+            closeSegment();
+        }
+
+        if (sequence < 0) {
+            sequence = Segments.lastIndex(file);
+        }
+
+        final Path path = Segments.path(file, ++sequence);
+        final Path parent = path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        segmentBytes = 0;
+
+        format.clear();
+        format.writeHeader();
+    }
+
+    private void writeBuffer() throws IOException {
+        final ByteBuffer buffer = format.buffer();
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        segmentBytes += buffer.limit();
+        format.clear();
+    }
+
+    private void closeSegment() throws IOException {
+        try {
+            writeBuffer();
+            channel.force(false);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void fail(@Nonnull final Exception e) {
+        failed.incrementAndGet();
+        LOGGER.error("Failed to write log file " + getSegment(), e);
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+
+            channel = null;
+        }
+
+        format.clear();
+    }
+
+    public static class Builder {
+        private Path file;
+        private LogLevel level = LogLevel.INFO;
+
+        private long segmentSize = 64L * 1024 * 1024;
+        private int bufferSize = 64 * 1024;
+        private int maxDictionarySize = BinaryFormat.DEFAULT_MAX_DICTIONARY_SIZE;
+
+        private Sampler sampler;
+
+        private DurationThreshold threshold;
+
+        protected Builder() {
+        }
+
+        /**
+         * @param file base path of segments, segments are {@code file.0}, {@code file.1}, ...
+         * @return this
+         */
+        public Builder withFile(final Path file) {
+            this.file = file;
+            return this;
+        }
+
+        /**
+         * @param level min level of written records, INFO by default
+         * @return this
+         */
+        public Builder withLevel(final LogLevel level) {
+            this.level = level;
+            return this;
+        }
+
+        /**
+         * @param bytes segment size, new segment is started when it is exceeded, 64 MB by default
+         * @return this
+         */
+        public Builder withSegmentSize(final long bytes) {
+            this.segmentSize = bytes;
+            return this;
+        }
+
+        /**
+         * @param bytes size of buffered records written at once, 0 to write every record, 64 KB by default
+         * @return this
+         */
+        public Builder withBufferSize(final int bytes) {
+            this.bufferSize = bytes;
+            return this;
+        }
+
+        /**
+         * @param size max number of dictionary strings per segment
+         * @return this
+         */
+        public Builder withMaxDictionarySize(final int size) {
+            this.maxDictionarySize = size;
+            return this;
+        }
+
+        /**
+         * Write only sampled records, see {@link Sampler}
+         *
+         * @param sampler sampler
+         * @return this
+         */
+        public Builder withSampler(final Sampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * Write only slow records, see {@link DurationThreshold}
+         *
+         * @param threshold threshold
+         * @return this
+         */
+        public Builder withThreshold(final DurationThreshold threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        public BinaryOutput build() {
+            return new BinaryOutput(this);
+        }
+    }
+}
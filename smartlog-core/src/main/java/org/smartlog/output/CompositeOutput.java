@@ -0,0 +1,282 @@
+package org.smartlog.output;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smartlog.DurationThreshold;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.Sampler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes every record to several outputs, each output has own min level and filter.
+ * <p>
+ * Outputs sharing a format (e.g. default format of config) render record once, text is reused by
+ * {@link Slf4JOutput} and {@link FileOutput}. Failure of one output is logged and counted, other outputs still get
+ * the record. Sampler and threshold of composite output are used, ones of wrapped outputs are ignored.
+ */
+@ThreadSafe
+public class CompositeOutput implements Output, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompositeOutput.class);
+
+    /**
+     * Accepted outputs of record are kept in long bit mask
+     */
+    private static final int MAX_OUTPUTS = 64;
+
+    @Nonnull
+    private final Route[] routes;
+
+    @Nullable
+    private final Sampler sampler;
+
+    @Nullable
+    private final DurationThreshold threshold;
+
+    private final AtomicLong failed = new AtomicLong();
+
+    public CompositeOutput(final Builder builder) {
+        if (builder.routes.isEmpty()) {
+            throw new RuntimeException("Outputs are absent");
+        }
+
+        if (builder.routes.size() > MAX_OUTPUTS) {
+            throw new IllegalArgumentException("Too many outputs, max is " + MAX_OUTPUTS);
+        }
+
+        this.routes = builder.routes.toArray(new Route[0]);
+        this.sampler = builder.sampler;
+        this.threshold = builder.threshold;
+    }
+
+    public static Builder create() {
+        return new Builder();
+    }
+
+    @Override
+    public void write(final LogContext log) {
+        final LogLevel level = log.level() != null ? log.level() : LogLevel.INFO;
+
+        // filters are checked first, render cache is needed only if record goes to several outputs
+        long accepted = 0;
+        for (int i = 0; i < routes.length; i++) {
+            if (routes[i].accept(log, level)) {
+                accepted |= 1L << i;
+            }
+        }
+
+        if (accepted == 0) {
+            return;
+        }
+
+        if (Long.bitCount(accepted) == 1) {
+            writeToOutput(routes[Long.numberOfTrailingZeros(accepted)].output, log);
+            return;
+        }
+
+        final RenderCache cache = RenderCache.open(log);
+        try {
+            for (int i = 0; i < routes.length; i++) {
+                if ((accepted & (1L << i)) != 0) {
+                    writeToOutput(routes[i].output, log);
+                }
+            }
+        } finally {
+            cache.close();
+        }
+    }
+
+    /**
+     * Split batch by outputs, every output gets its records by single {@link Output#writeBatch} call.
+     * <p>
+     * Rendered text is not shared between outputs of batch.
+     *
+     * @param batch records
+     */
+    @Override
+    public void writeBatch(@Nonnull final List<LogContext> batch) {
+        for (final Route route : routes) {
+            final List<LogContext> accepted = new ArrayList<>(batch.size());
+            for (final LogContext log : batch) {
+                if (route.accept(log, log.level() != null ? log.level() : LogLevel.INFO)) {
+                    accepted.add(log);
+                }
+            }
+
+            if (accepted.isEmpty()) {
+                continue;
+            }
+
+            try {
+                route.output.writeBatch(accepted);
+            } catch (RuntimeException e) {
+                failed.addAndGet(accepted.size());
+                LOGGER.error("Failed to write log records", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isEnabled(@Nonnull final LogLevel level) {
+        for (final Route route : routes) {
+            if (route.isEnabled(level)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public Sampler sampler() {
+        return sampler;
+    }
+
+    @Nullable
+    @Override
+    public DurationThreshold threshold() {
+        return threshold;
+    }
+
+    /**
+     * Close wrapped outputs which are {@link AutoCloseable}
+     */
+    @Override
+    public void close() {
+        for (final Route route : routes) {
+            if (route.output instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) route.output).close();
+                } catch (Exception e) {
+                    LOGGER.error("Failed to close output " + route.output, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of records failed by wrapped outputs (record is counted once per failed output)
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    private void writeToOutput(@Nonnull final Output output, @Nonnull final LogContext log) {
+        try {
+            output.write(log);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            LOGGER.error("Failed to write log record", e);
+        }
+    }
+
+    /**
+     * Output with its filters
+     */
+    private static final class Route {
+        @Nonnull
+        private final Output output;
+
+        @Nonnull
+        private final LogLevel level;
+
+        @Nonnull
+        private final RecordFilter filter;
+
+        Route(@Nonnull final Output output, @Nonnull final LogLevel level, @Nonnull final RecordFilter filter) {
+            this.output = output;
+            this.level = level;
+            this.filter = filter;
+        }
+
+        boolean isEnabled(@Nonnull final LogLevel level) {
+            return level.ordinal() >= this.level.ordinal() && output.isEnabled(level);
+        }
+
+        boolean accept(@Nonnull final LogContext log, @Nonnull final LogLevel level) {
+            return isEnabled(level) && filter.accept(log);
+        }
+    }
+
+    public static class Builder {
+        private final List<Route> routes = new ArrayList<>();
+
+        private Sampler sampler;
+
+        private DurationThreshold threshold;
+
+        protected Builder() {
+        }
+
+        /**
+         * Write every record to output
+         *
+         * @param output output
+         * @return this
+         */
+        public Builder withOutput(final Output output) {
+            return withOutput(output, LogLevel.DEBUG, RecordFilter.ALL);
+        }
+
+        /**
+         * Write records with given or higher level to output
+         *
+         * @param output output
+         * @param level  min level
+         * @return this
+         */
+        public Builder withOutput(final Output output, final LogLevel level) {
+            return withOutput(output, level, RecordFilter.ALL);
+        }
+
+        /**
+         * Write records with given or higher level accepted by filter to output
+         *
+         * @param output output
+         * @param level  min level
+         * @param filter filter, e.g. {@link RecordFilter#attrEquals}
+         * @return this
+         */
+        public Builder withOutput(final Output output, final LogLevel level, final RecordFilter filter) {
+            if (output == null || level == null || filter == null) {
+                throw new RuntimeException("Output, level and filter must be present");
+            }
+
+            routes.add(new Route(output, level, filter));
+            return this;
+        }
+
+        /**
+         * Write only sampled records, see {@link Sampler}
+         *
+         * @param sampler sampler
+         * @return this
+         */
+        public Builder withSampler(final Sampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * Write only slow records, see {@link DurationThreshold}
+         *
+         * @param threshold threshold
+         * @return this
+         */
+        public Builder withThreshold(final DurationThreshold threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        public CompositeOutput build() {
+            return new CompositeOutput(this);
+        }
+    }
+}
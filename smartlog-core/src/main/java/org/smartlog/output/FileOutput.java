@@ -0,0 +1,648 @@
+package org.smartlog.output;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smartlog.DurationThreshold;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.Sampler;
+import org.smartlog.SmartLogConfig;
+import org.smartlog.Util;
+import org.smartlog.format.Format;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes records to rolling files directly, without SLF4J and logging backend.
+ * <p>
+ * Record is written as {@code "yyyy-MM-dd HH:mm:ss.SSS LEVEL message"} line followed by stack trace, message is
+ * encoded to UTF-8 straight into memory-mapped segment (or direct buffer written to file channel).
+ * Segments are named {@code <file>.<N>}, numbering continues after existing segments. New segment is started
+ * when record doesn't fit into segment size or segment is older than roll interval.
+ * <p>
+ * Data is synced to disk every N records and/or every interval if configured, otherwise OS decides when to write it.
+ * Errors are logged by SLF4J and counted, failed segment is closed and next record starts new one.
+ */
+@ThreadSafe
+public class FileOutput implements Output, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileOutput.class);
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Placeholder of "yyyy-MM-dd HH:mm:ss.SSS" time
+     */
+    private static final String TIME_PLACEHOLDER = "                       ";
+
+    /**
+     * Max length of UTF-8 encoded char (surrogate pair)
+     */
+    private static final int MIN_BUFFER_SIZE = 4;
+
+    @Nonnull
+    private final Path file;
+
+    @Nonnull
+    private final LogLevel level;
+
+    @Nullable
+    private final Format format;
+
+    @Nullable
+    private final Boolean replaceCrLf;
+
+    private final boolean memoryMapped;
+
+    private final long segmentSize;
+
+    private final long rollIntervalMillis;
+
+    private final int bufferSize;
+
+    private final int syncEveryRecords;
+
+    private final long syncIntervalNanos;
+
+    @Nullable
+    private final Sampler sampler;
+
+    @Nullable
+    private final DurationThreshold threshold;
+
+    @Nonnull
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    // segment state, guarded by this
+
+    @Nullable
+    private FileChannel channel;
+
+    /**
+     * Mapped segment or direct buffer of channel
+     */
+    @Nullable
+    private ByteBuffer buffer;
+
+    private long segmentBytes;
+
+    private long segmentStartMillis;
+
+    private int sequence = -1;
+
+    private int unsyncedRecords;
+
+    private long lastSyncNanos;
+
+    private boolean closed;
+
+    // cached "yyyy-MM-dd HH:mm:ss" of last record second, guarded by this
+
+    private long cachedSecond = Long.MIN_VALUE;
+
+    @Nonnull
+    private String cachedTime = "";
+
+    public FileOutput(final Builder builder) {
+        if (builder.file == null) {
+            throw new RuntimeException("File is absent");
+        }
+
+        if (builder.segmentSize <= 0) {
+            throw new RuntimeException("Segment size must be positive");
+        }
+
+        if (builder.bufferSize < MIN_BUFFER_SIZE) {
+            // encoder makes no progress if buffer can't hold one encoded char
+            throw new RuntimeException("Buffer size must be at least " + MIN_BUFFER_SIZE + " bytes");
+        }
+
+        this.file = builder.file.toAbsolutePath();
+        this.level = builder.level;
+        this.format = builder.format;
+        this.replaceCrLf = builder.replaceCrLf;
+        this.memoryMapped = builder.memoryMapped;
+        this.segmentSize = builder.segmentSize;
+        this.rollIntervalMillis = builder.rollIntervalMillis;
+        this.bufferSize = builder.bufferSize;
+        this.syncEveryRecords = builder.syncEveryRecords;
+        this.syncIntervalNanos = builder.syncIntervalNanos;
+        this.sampler = builder.sampler;
+        this.threshold = builder.threshold;
+    }
+
+    public static Builder create() {
+        return new Builder();
+    }
+
+    @Override
+    public void write(final LogContext log) {
+        final LogLevel recordLevel = log.level() != null ? log.level() : LogLevel.INFO;
+        if (!isEnabled(recordLevel)) {
+            return;
+        }
+
+        final StringBuilder builder = MessageBuffers.acquire();
+        try {
+            render(log, recordLevel, builder);
+            append(log.endTime(), builder);
+        } finally {
+            builder.setLength(0);
+        }
+    }
+
+    /**
+     * Render all records and write them under single lock
+     *
+     * @param batch records
+     */
+    @Override
+    public void writeBatch(@Nonnull final List<LogContext> batch) {
+        final long[] times = new long[batch.size()];
+        final int[] starts = new int[batch.size()];
+
+        final StringBuilder builder = MessageBuffers.acquire();
+        try {
+            int count = 0;
+            for (final LogContext log : batch) {
+                final LogLevel recordLevel = log.level() != null ? log.level() : LogLevel.INFO;
+                if (isEnabled(recordLevel)) {
+                    times[count] = log.endTime();
+                    starts[count] = builder.length();
+                    render(log, recordLevel, builder);
+                    count++;
+                }
+            }
+
+            if (count > 0) {
+                append(times, starts, count, builder);
+            }
+        } finally {
+            builder.setLength(0);
+        }
+    }
+
+    @Override
+    public boolean isEnabled(@Nonnull final LogLevel level) {
+        return level.ordinal() >= this.level.ordinal();
+    }
+
+    @Nullable
+    @Override
+    public Sampler sampler() {
+        return sampler;
+    }
+
+    @Nullable
+    @Override
+    public DurationThreshold threshold() {
+        return threshold;
+    }
+
+    /**
+     * Sync written records to disk
+     */
+    public synchronized void sync() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            syncSegment();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Sync and close current segment, records written after close are dropped
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Nonnull
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return path of current segment or null if nothing is written yet
+     */
+    @Nullable
+    public synchronized Path getSegment() {
+        return sequence >= 0 ? Segments.path(file, sequence) : null;
+    }
+
+    /**
+     * @return number of records failed to write
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    private void render(@Nonnull final LogContext log, @Nonnull final LogLevel recordLevel,
+                        @Nonnull final StringBuilder builder) {
+        // time is filled under lock, it depends on cached second
+        builder.append(TIME_PLACEHOLDER)
+                .append(' ')
+                .append(recordLevel.name())
+                .append(' ');
+
+        final int from = builder.length();
+        // one snapshot of config per record
+        final SmartLogConfig config = SmartLogConfig.getConfig();
+        RenderCache.format(MessageBuffers.selectFormat(log, format, config), log, builder);
+
+        final boolean replace = replaceCrLf == null ? config.isReplaceCrLf() : replaceCrLf;
+        if (replace) {
+            Util.stripCrLf(builder, from);
+        }
+
+        final Throwable throwable = log.throwable();
+        if (throwable != null) {
+            Util.addSuppressed(throwable, log.suppressedThrowables());
+
+            final StringWriter stackTrace = new StringWriter(1024);
+            throwable.printStackTrace(new PrintWriter(stackTrace));
+            builder.append(System.lineSeparator())
+                    .append(stackTrace.getBuffer());
+
+            // printStackTrace ends with line separator
+            builder.setLength(builder.length() - System.lineSeparator().length());
+        }
+
+        builder.append(System.lineSeparator());
+    }
+
+    private synchronized void append(final long timeMillis, @Nonnull final StringBuilder builder) {
+        if (closed) {
+            return;
+        }
+
+        writeTime(timeMillis, builder, 0);
+        encode(builder, 1);
+    }
+
+    private synchronized void append(@Nonnull final long[] times, @Nonnull final int[] starts, final int count,
+                                     @Nonnull final StringBuilder builder) {
+        if (closed) {
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            writeTime(times[i], builder, starts[i]);
+        }
+
+        encode(builder, count);
+    }
+
+    /**
+     * Write rendered records to current segment, caller holds lock
+     */
+    private void encode(@Nonnull final StringBuilder builder, final int records) {
+        try {
+            final int length = Util.utf8Length(builder);
+            final long now = SmartLogConfig.getConfig().getTimeSource().currentTimeMillis();
+            if (channel == null
+                    || segmentBytes > 0 && segmentBytes + length > segmentSize
+                    || memoryMapped && length > buffer.remaining()
+                    || rollIntervalMillis > 0 && now - segmentStartMillis >= rollIntervalMillis) {
+                roll(now, length);
+            }
+
+            final ByteBuffer dest = buffer;
+            int pos = 0;
+            while (pos < builder.length()) {
+                pos = Util.encodeUtf8(builder, pos, dest);
+                if (pos < builder.length()) {
+                    // direct buffer of channel is full, mapped segment is big enough for the record
+                    flushBuffer();
+                }
+            }
+
+            if (!memoryMapped) {
+                flushBuffer();
+            }
+
+            segmentBytes += length;
+            unsyncedRecords += records;
+
+            if (syncEveryRecords > 0 && unsyncedRecords >= syncEveryRecords
+                    || syncIntervalNanos > 0 && System.nanoTime() - lastSyncNanos >= syncIntervalNanos) {
+                syncSegment();
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Write "yyyy-MM-dd HH:mm:ss.SSS" over placeholder at given position, date is formatted once per second
+     */
+    private void writeTime(final long timeMillis, @Nonnull final StringBuilder builder, final int start) {
+        final long second = Math.floorDiv(timeMillis, 1000);
+        if (second != cachedSecond) {
+            cachedTime = TIME_FORMAT.format(Instant.ofEpochSecond(second).atZone(zone));
+            cachedSecond = second;
+        }
+
+        final String time = cachedTime;
+        final int length = Math.min(time.length(), TIME_PLACEHOLDER.length() - 4);
+        for (int i = 0; i < length; i++) {
+            builder.setCharAt(start + i, time.charAt(i));
+        }
+
+        final int millis = (int) Math.floorMod(timeMillis, 1000);
+        final int pos = start + length;
+        builder.setCharAt(pos, '.');
+        builder.setCharAt(pos + 1, (char) ('0' + millis / 100));
+        builder.setCharAt(pos + 2, (char) ('0' + millis / 10 % 10));
+        builder.setCharAt(pos + 3, (char) ('0' + millis % 10));
+    }
+
+    private void roll(final long now, final int recordLength) throws IOException {
+        if (channel != null) {
+            closeSegment();
+        }
+
+        if (sequence < 0) {
+            sequence = Segments.lastIndex(file);
+        }
+
+        final Path path = Segments.path(file, ++sequence);
+        final Path parent = path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        final FileChannel newChannel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (memoryMapped) {
+                // record bigger than segment gets its own segment
+                buffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, recordLength));
+            } else if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(bufferSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            newChannel.close();
+            throw e;
+        }
+
+        channel = newChannel;
+        segmentBytes = 0;
+        segmentStartMillis = now;
+        unsyncedRecords = 0;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (memoryMapped) {
+            throw new IOException("Record doesn't fit into mapped segment");
+        }
+
+        final ByteBuffer dest = buffer;
+        dest.flip();
+        while (dest.hasRemaining()) {
+            channel.write(dest);
+        }
+
+        dest.clear();
+    }
+
+    private void syncSegment() throws IOException {
+        if (memoryMapped) {
+            ((MappedByteBuffer) buffer).force();
+        } else {
+            channel.force(false);
+        }
+
+        unsyncedRecords = 0;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private void closeSegment() throws IOException {
+        final FileChannel current = channel;
+        channel = null;
+
+        try {
+            if (memoryMapped) {
+                ((MappedByteBuffer) buffer).force();
+                buffer = null;
+                // drop unused tail of mapped region
+                current.truncate(segmentBytes);
+            } else {
+                current.force(false);
+            }
+        } finally {
+            current.close();
+        }
+    }
+
+    private void fail(@Nonnull final Exception e) {
+        failed.incrementAndGet();
+        LOGGER.error("Failed to write log file " + getSegment(), e);
+
+        if (channel != null) {
+            try {
+                if (memoryMapped) {
+                    // drop unused (and partially written) tail of mapped region, as on close
+                    channel.truncate(segmentBytes);
+                }
+            } catch (IOException truncateError) {
+                e.addSuppressed(truncateError);
+            }
+
+            try {
+                channel.close();
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+
+            channel = null;
+        }
+
+        if (memoryMapped) {
+            buffer = null;
+        } else if (buffer != null) {
+            buffer.clear();
+        }
+    }
+
+    public static class Builder {
+        private Path file;
+        private LogLevel level = LogLevel.INFO;
+        private Format format;
+
+        private Boolean replaceCrLf;
+
+        private boolean memoryMapped = true;
+        private long segmentSize = 64L * 1024 * 1024;
+        private long rollIntervalMillis;
+        private int bufferSize = 64 * 1024;
+
+        private int syncEveryRecords;
+        private long syncIntervalNanos;
+
+        private Sampler sampler;
+
+        private DurationThreshold threshold;
+
+        protected Builder() {
+        }
+
+        /**
+         * @param file base path of segments, segments are {@code file.0}, {@code file.1}, ...
+         * @return this
+         */
+        public Builder withFile(final Path file) {
+            this.file = file;
+            return this;
+        }
+
+        /**
+         * @param level min level of written records, INFO by default
+         * @return this
+         */
+        public Builder withLevel(final LogLevel level) {
+            this.level = level;
+            return this;
+        }
+
+        public Builder withFormat(final Format format) {
+            this.format = format;
+            return this;
+        }
+
+        public Builder replaceCrLf() {
+            this.replaceCrLf = true;
+            return this;
+        }
+
+        public Builder keepCrLf() {
+            this.replaceCrLf = false;
+            return this;
+        }
+
+        /**
+         * Write records to memory-mapped segments (default), segment file is truncated to written size on roll
+         *
+         * @return this
+         */
+        public Builder memoryMapped() {
+            this.memoryMapped = true;
+            return this;
+        }
+
+        /**
+         * Write records through direct buffer to file channel, one write call per record
+         *
+         * @param bufferSize direct buffer size, at least 4 bytes
+         * @return this
+         */
+        public Builder fileChannel(final int bufferSize) {
+            this.memoryMapped = false;
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * @param bytes max segment size, 64 MB by default
+         * @return this
+         */
+        public Builder withSegmentSize(final long bytes) {
+            this.segmentSize = bytes;
+            return this;
+        }
+
+        /**
+         * Start new segment when current one is older than interval
+         *
+         * @param interval interval
+         * @param unit     time unit
+         * @return this
+         */
+        public Builder withRollInterval(final long interval, final TimeUnit unit) {
+            this.rollIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * Sync to disk after every N records
+         *
+         * @param records number of records
+         * @return this
+         */
+        public Builder withSyncEvery(final int records) {
+            this.syncEveryRecords = records;
+            return this;
+        }
+
+        /**
+         * Sync to disk when interval passed since last sync, checked on write
+         *
+         * @param interval interval
+         * @param unit     time unit
+         * @return this
+         */
+        public Builder withSyncInterval(final long interval, final TimeUnit unit) {
+            this.syncIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * Write only sampled records, see {@link Sampler}
+         *
+         * @param sampler sampler
+         * @return this
+         */
+        public Builder withSampler(final Sampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * Write only slow records, see {@link DurationThreshold}
+         *
+         * @param threshold threshold
+         * @return this
+         */
+        public Builder withThreshold(final DurationThreshold threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        public FileOutput build() {
+            return new FileOutput(this);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.smartlog.output;
+
+import org.smartlog.LogContext;
+import org.smartlog.SmartLogConfig;
+import org.smartlog.format.Format;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Reused per-thread message buffers and format selection of text outputs
+ */
+final class MessageBuffers {
+    private static final int MAX_RECYCLED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private MessageBuffers() {
+    }
+
+    /**
+     * Take buffer of current thread, caller must reset its length when message is written
+     *
+     * @return empty buffer
+     */
+    @Nonnull
+    static StringBuilder acquire() {
+        StringBuilder builder = BUFFERS.get();
+        if (builder.length() > 0) {
+            // buffer is used by outer call on this thread, e.g. result.toString() writes another log
+            builder = new StringBuilder(256);
+        } else if (builder.capacity() > MAX_RECYCLED_CAPACITY) {
+            builder = new StringBuilder(256);
+            BUFFERS.set(builder);
+        }
+
+        return builder;
+    }
+
+    /**
+     * @param log          record
+     * @param outputFormat format of output or null
+     * @param config       config snapshot of record
+     * @return format of record, then of output, then default one
+     */
+    @Nonnull
+    static Format selectFormat(@Nonnull final LogContext log, @Nullable final Format outputFormat,
+                               @Nonnull final SmartLogConfig config) {
+        final Format currFormat = log.format();
+        if (currFormat != null) {
+            return currFormat;
+        }
+
+        if (outputFormat != null) {
+            return outputFormat;
+        }
+
+        return config.getDefaultFormat();
+    }
+}
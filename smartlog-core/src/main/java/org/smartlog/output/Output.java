@@ -1,10 +1,63 @@
 package org.smartlog.output;
 
+import org.smartlog.DurationThreshold;
 import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.Sampler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
 
 /**
  *
  */
 public interface Output {
     void write(LogContext log);
-}
\ No newline at end of file
+
+    /**
+     * Write several records at once, e.g. by {@link BatchingOutput}.
+     * <p>
+     * Outputs which can write batch cheaper than record by record (single lock, single call to backend)
+     * should override it.
+     *
+     * @param batch records
+     */
+    default void writeBatch(@Nonnull final List<LogContext> batch) {
+        for (final LogContext log : batch) {
+            write(log);
+        }
+    }
+
+    /**
+     * Check record with given level will be written.
+     * <p>
+     * Log context uses it to skip trace/title/result formatting for suppressed records.
+     *
+     * @param level log level
+     * @return false if record with this level will be dropped by output
+     */
+    default boolean isEnabled(@Nonnull final LogLevel level) {
+        return true;
+    }
+
+    /**
+     * Sampler applied to every context started with this output
+     *
+     * @return sampler or null to write every record
+     */
+    @Nullable
+    default Sampler sampler() {
+        return null;
+    }
+
+    /**
+     * Slow call threshold of records written to this output, used if context has no own threshold
+     *
+     * @return threshold or null to use default one
+     */
+    @Nullable
+    default DurationThreshold threshold() {
+        return null;
+    }
+}
@@ -0,0 +1,73 @@
+package org.smartlog.output;
+
+import org.smartlog.LogContext;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Objects;
+
+/**
+ * Decides if finished record is written to destination of {@link CompositeOutput}
+ */
+@ThreadSafe
+public interface RecordFilter {
+    RecordFilter ALL = log -> true;
+
+    /**
+     * @param log finished record
+     * @return true if record should be written
+     */
+    boolean accept(@Nonnull LogContext log);
+
+    /**
+     * Accept records with given attribute
+     *
+     * @param name attribute name
+     * @return filter
+     */
+    @Nonnull
+    static RecordFilter hasAttr(@Nonnull final String name) {
+        return log -> log.getAttr(name) != null;
+    }
+
+    /**
+     * Accept records with given attribute value. Integral values (long, int, short, byte) are compared by value,
+     * so {@code attrEquals("x", 1L)} accepts {@code attach("x", 1)}, other values are compared by equals().
+     *
+     * @param name  attribute name
+     * @param value attribute value
+     * @return filter
+     */
+    @Nonnull
+    static RecordFilter attrEquals(@Nonnull final String name, @Nullable final Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            final long expected = ((Number) value).longValue();
+            return log -> {
+                final Object attr = log.getAttr(name);
+                return (attr instanceof Long || attr instanceof Integer
+                        || attr instanceof Short || attr instanceof Byte)
+                        && ((Number) attr).longValue() == expected;
+            };
+        }
+
+        return log -> Objects.equals(log.getAttr(name), value);
+    }
+
+    /**
+     * @param other other filter
+     * @return filter accepting records accepted by both filters
+     */
+    @Nonnull
+    default RecordFilter and(@Nonnull final RecordFilter other) {
+        return log -> accept(log) && other.accept(log);
+    }
+
+    /**
+     * @return filter accepting records rejected by this filter
+     */
+    @Nonnull
+    default RecordFilter negate() {
+        return log -> !accept(log);
+    }
+}
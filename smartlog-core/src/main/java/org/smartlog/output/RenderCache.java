@@ -0,0 +1,108 @@
+package org.smartlog.output;
+
+import org.smartlog.LogContext;
+import org.smartlog.format.Format;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Text of record rendered by formats while record is written by {@link CompositeOutput}, so outputs sharing
+ * a format render it once.
+ * <p>
+ * Cache is bound to current thread and opened record, outputs render through {@link #format} which falls back to
+ * the format itself for other records. Raw format output is cached, CR/LF are stripped by every output.
+ */
+@NotThreadSafe
+final class RenderCache implements AutoCloseable {
+    private static final ThreadLocal<RenderCache> CURRENT = new ThreadLocal<>();
+
+    @Nonnull
+    private final LogContext log;
+
+    /**
+     * Cache of outer record, e.g. record written by toString() of value is nested
+     */
+    @Nullable
+    private final RenderCache outer;
+
+    private Format[] formats;
+
+    private String[] rendered;
+
+    private int size;
+
+    private RenderCache(@Nonnull final LogContext log, @Nullable final RenderCache outer) {
+        this.log = log;
+        this.outer = outer;
+    }
+
+    /**
+     * Start caching rendered text of record on current thread
+     *
+     * @param log record
+     * @return cache to close when record is written
+     */
+    @Nonnull
+    static RenderCache open(@Nonnull final LogContext log) {
+        final RenderCache cache = new RenderCache(log, CURRENT.get());
+        CURRENT.set(cache);
+        return cache;
+    }
+
+    /**
+     * Append text of record rendered by format, text is reused if format already rendered this record
+     *
+     * @param format  format
+     * @param log     record
+     * @param builder destination
+     */
+    static void format(@Nonnull final Format format, @Nonnull final LogContext log,
+                       @Nonnull final StringBuilder builder) {
+        final RenderCache cache = CURRENT.get();
+        if (cache == null || cache.log != log) {
+            format.format(log, builder);
+            return;
+        }
+
+        cache.render(format, builder);
+    }
+
+    @Override
+    public void close() {
+        if (outer != null) {
+            CURRENT.set(outer);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    private void render(@Nonnull final Format format, @Nonnull final StringBuilder builder) {
+        for (int i = 0; i < size; i++) {
+            if (formats[i] == format) {
+                builder.append(rendered[i]);
+                return;
+            }
+        }
+
+        final int from = builder.length();
+        format.format(log, builder);
+
+        if (formats == null) {
+            formats = new Format[2];
+            rendered = new String[2];
+        } else if (size == formats.length) {
+            final Format[] biggerFormats = new Format[size * 2];
+            final String[] biggerRendered = new String[size * 2];
+            System.arraycopy(formats, 0, biggerFormats, 0, size);
+            System.arraycopy(rendered, 0, biggerRendered, 0, size);
+            formats = biggerFormats;
+            rendered = biggerRendered;
+        }
+
+        formats[size] = format;
+        rendered[size] = builder.substring(from);
+        size++;
+    }
+}
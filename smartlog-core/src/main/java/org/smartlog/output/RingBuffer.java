@@ -0,0 +1,108 @@
+package org.smartlog.output;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and single consumer.
+ * <p>
+ * Slots are preallocated, every slot has sequence number which tells whether slot is free for producer
+ * (sequence == position) or published for consumer (sequence == position + 1).
+ *
+ * @param <E> element type
+ */
+@ThreadSafe
+final class RingBuffer<E> {
+    private final int mask;
+
+    private final Object[] slots;
+
+    private final AtomicLongArray sequences;
+
+    /**
+     * Next position to be claimed by producers
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Next position to be read by consumer, changed by consumer thread only
+     */
+    private volatile long head;
+
+    RingBuffer(final int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be power of 2, got: " + capacity);
+        }
+
+        this.mask = capacity - 1;
+        this.slots = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Publish element
+     *
+     * @param element element
+     * @return false if buffer is full
+     */
+    boolean offer(@Nonnull final E element) {
+        long pos = tail.get();
+        while (true) {
+            final int index = (int) pos & mask;
+            final long diff = sequences.get(index) - pos;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[index] = element;
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Take next element, must be called from single consumer thread
+     *
+     * @return element or null if buffer is empty
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    E poll() {
+        final long pos = head;
+        final int index = (int) pos & mask;
+
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+
+        final E element = (E) slots[index];
+        slots[index] = null;
+        sequences.lazySet(index, pos + slots.length);
+        head = pos + 1;
+
+        return element;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    int size() {
+        final long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, slots.length));
+    }
+}
@@ -0,0 +1,46 @@
+package org.smartlog.output;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Naming of rolling file segments: {@code <file>.<N>}
+ */
+final class Segments {
+    private Segments() {
+    }
+
+    @Nonnull
+    static Path path(@Nonnull final Path file, final int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    /**
+     * @param file base path of segments
+     * @return max number of existing segment or -1
+     */
+    static int lastIndex(@Nonnull final Path file) throws IOException {
+        final Path dir = file.getParent();
+        if (dir == null || !Files.isDirectory(dir)) {
+            return -1;
+        }
+
+        final String prefix = file.getFileName() + ".";
+
+        int last = -1;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(dir, prefix.replace("*", "\\*") + "*")) {
+            for (final Path segment : segments) {
+                try {
+                    last = Math.max(last, Integer.parseInt(segment.getFileName().toString().substring(prefix.length())));
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+
+        return last;
+    }
+}
@@ -2,15 +2,17 @@ package org.smartlog.output;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.smartlog.DurationThreshold;
 import org.smartlog.LogContext;
 import org.smartlog.LogLevel;
+import org.smartlog.Sampler;
 import org.smartlog.SmartLogConfig;
 import org.smartlog.Util;
 import org.smartlog.format.Format;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -23,6 +25,14 @@ public class Slf4JOutput implements Output {
 
     private final Boolean replaceCrLf;
 
+    @Nullable
+    private final Sampler sampler;
+
+    @Nullable
+    private final DurationThreshold threshold;
+
+    private final boolean joinBatches;
+
     public Slf4JOutput(final Builder builder) {
         if (builder.logger == null) {
             throw new RuntimeException("Logger is absent");
@@ -31,22 +41,39 @@ public class Slf4JOutput implements Output {
         this.logger = builder.logger;
         this.format = builder.format;
         this.replaceCrLf = builder.replaceCrLf;
+        this.sampler = builder.sampler;
+        this.threshold = builder.threshold;
+        this.joinBatches = builder.joinBatches;
     }
 
     public static Builder create() {
         return new Builder();
     }
 
+    /**
+     * Write record, snapshot written by background thread is logged with thread name and MDC of thread which
+     * finished it
+     *
+     * @param log log record
+     */
     @Override
     public void write(final LogContext log) {
+        final ThreadState state = ThreadState.apply(log);
+        try {
+            writeRecord(log);
+        } finally {
+            if (state != null) {
+                state.restore();
+            }
+        }
+    }
+
+    private void writeRecord(@Nonnull final LogContext log) {
         final LogLevel level = log.level();
         final Throwable throwable = log.throwable();
-        final ArrayList<Throwable> suppressedThrowables = log.suppressedThrowables();
 
-        if (throwable != null && suppressedThrowables != null) {
-            for (Throwable t : suppressedThrowables) {
-                throwable.addSuppressed(t);
-            }
+        if (throwable != null) {
+            Util.addSuppressed(throwable, log.suppressedThrowables());
         }
 
         switch (level != null ? level : LogLevel.INFO) {
@@ -97,6 +124,77 @@ public class Slf4JOutput implements Output {
         }
     }
 
+    /**
+     * Write batch, if batches are joined then adjacent records of the same level and thread without throwable are
+     * written as single multi-line message
+     *
+     * @param batch records
+     */
+    @Override
+    public void writeBatch(@Nonnull final List<LogContext> batch) {
+        if (!joinBatches) {
+            Output.super.writeBatch(batch);
+            return;
+        }
+
+        final int size = batch.size();
+        int i = 0;
+        while (i < size) {
+            final LogContext first = batch.get(i);
+            final LogLevel level = levelOf(first);
+
+            int end = i + 1;
+            if (first.throwable() == null) {
+                while (end < size && batch.get(end).throwable() == null && levelOf(batch.get(end)) == level
+                        && ThreadState.same(first, batch.get(end))) {
+                    end++;
+                }
+            }
+
+            if (end - i == 1) {
+                write(first);
+            } else if (isEnabled(level)) {
+                final ThreadState state = ThreadState.apply(first);
+                try {
+                    log(level, join(batch, i, end));
+                } finally {
+                    if (state != null) {
+                        state.restore();
+                    }
+                }
+            }
+
+            i = end;
+        }
+    }
+
+    @Override
+    public boolean isEnabled(@Nonnull final LogLevel level) {
+        switch (level) {
+            case DEBUG:
+                return logger.isDebugEnabled();
+            case INFO:
+                return logger.isInfoEnabled();
+            case WARN:
+                return logger.isWarnEnabled();
+            case ERROR:
+            default:
+                return logger.isErrorEnabled();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Sampler sampler() {
+        return sampler;
+    }
+
+    @Nullable
+    @Override
+    public DurationThreshold threshold() {
+        return threshold;
+    }
+
     @Nonnull
     public Logger getLogger() {
         return logger;
@@ -112,27 +210,72 @@ public class Slf4JOutput implements Output {
         return replaceCrLf;
     }
 
-    private String format(final LogContext log) {
-        final Format fmt = selectFormat(log);
-        final String rawMessage = fmt.format(log);
-
-        final boolean replace = replaceCrLf == null ? SmartLogConfig.getConfig().isReplaceCrLf() : replaceCrLf;
+    @Nonnull
+    private static LogLevel levelOf(@Nonnull final LogContext log) {
+        final LogLevel level = log.level();
+        return level != null ? level : LogLevel.INFO;
+    }
 
-        return replace ? Util.stripCrLf(rawMessage) : rawMessage;
+    private void log(@Nonnull final LogLevel level, @Nonnull final String message) {
+        switch (level) {
+            case DEBUG:
+                logger.debug(message);
+                break;
+            case INFO:
+                logger.info(message);
+                break;
+            case WARN:
+                logger.warn(message);
+                break;
+            case ERROR:
+            default:
+                logger.error(message);
+        }
     }
 
-    @Nonnull
-    private Format selectFormat(final LogContext log) {
-        final Format currFormat = log.format();
-        if (currFormat != null) {
-            return currFormat;
+    /**
+     * Format records from start to end (exclusive) as lines of one message
+     */
+    private String join(@Nonnull final List<LogContext> batch, final int start, final int end) {
+        final StringBuilder builder = MessageBuffers.acquire();
+        try {
+            for (int i = start; i < end; i++) {
+                if (i > start) {
+                    builder.append(System.lineSeparator());
+                }
+
+                format(batch.get(i), builder);
+            }
+
+            return builder.toString();
+        } finally {
+            builder.setLength(0);
         }
+    }
 
-        if (this.format != null) {
-            return this.format;
+    private String format(final LogContext log) {
+        final StringBuilder builder = MessageBuffers.acquire();
+        try {
+            format(log, builder);
+            return builder.toString();
+        } finally {
+            builder.setLength(0);
         }
+    }
 
-        return SmartLogConfig.getConfig().getDefaultFormat();
+    /**
+     * Append formatted record, CR/LF of record are replaced if needed
+     */
+    private void format(final LogContext log, final StringBuilder builder) {
+        final int from = builder.length();
+        // one snapshot of config per record
+        final SmartLogConfig config = SmartLogConfig.getConfig();
+        RenderCache.format(MessageBuffers.selectFormat(log, format, config), log, builder);
+
+        final boolean replace = replaceCrLf == null ? config.isReplaceCrLf() : replaceCrLf;
+        if (replace) {
+            Util.stripCrLf(builder, from);
+        }
     }
 
     public static class Builder {
@@ -141,6 +284,12 @@ public class Slf4JOutput implements Output {
 
         private Boolean replaceCrLf;
 
+        private Sampler sampler;
+
+        private DurationThreshold threshold;
+
+        private boolean joinBatches;
+
         protected Builder() {
         }
 
@@ -179,6 +328,39 @@ public class Slf4JOutput implements Output {
             return this;
         }
 
+        /**
+         * Write only sampled records, see {@link Sampler}
+         *
+         * @param sampler sampler
+         * @return this
+         */
+        public Builder withSampler(final Sampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * Write only slow records, see {@link DurationThreshold}
+         *
+         * @param threshold threshold
+         * @return this
+         */
+        public Builder withThreshold(final DurationThreshold threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Write adjacent records of batch with the same level as single multi-line message, so logging backend
+         * is called once per batch, see {@link BatchingOutput}
+         *
+         * @return this
+         */
+        public Builder joinBatches() {
+            this.joinBatches = true;
+            return this;
+        }
+
         public Slf4JOutput build() {
             return new Slf4JOutput(this);
         }
@@ -0,0 +1,67 @@
+package org.smartlog.output;
+
+import org.slf4j.MDC;
+import org.smartlog.LogContext;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Thread name and MDC of writer thread replaced by ones captured in snapshot while record is logged,
+ * so appenders see the thread which finished the record instead of background one
+ */
+final class ThreadState {
+    @Nonnull
+    private final String oldName;
+
+    @Nullable
+    private final Map<String, String> oldMDC;
+
+    private ThreadState(@Nonnull final String oldName, @Nullable final Map<String, String> oldMDC) {
+        this.oldName = oldName;
+        this.oldMDC = oldMDC;
+    }
+
+    /**
+     * Apply thread name and MDC captured in snapshot to current thread
+     *
+     * @param log log record
+     * @return state to restore or null if record is not a snapshot
+     */
+    @Nullable
+    static ThreadState apply(@Nonnull final LogContext log) {
+        final String threadName = log.snapshotThreadName();
+        if (threadName == null) {
+            return null;
+        }
+
+        final Thread thread = Thread.currentThread();
+        final ThreadState state = new ThreadState(thread.getName(), MDC.getCopyOfContextMap());
+        thread.setName(threadName);
+        setMDC(log.snapshotMDC());
+        return state;
+    }
+
+    /**
+     * @return true if both records were captured with the same thread name and MDC
+     */
+    static boolean same(@Nonnull final LogContext log, @Nonnull final LogContext other) {
+        return Objects.equals(log.snapshotThreadName(), other.snapshotThreadName())
+                && Objects.equals(log.snapshotMDC(), other.snapshotMDC());
+    }
+
+    void restore() {
+        Thread.currentThread().setName(oldName);
+        setMDC(oldMDC);
+    }
+
+    private static void setMDC(@Nullable final Map<String, String> mdc) {
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        } else {
+            MDC.clear();
+        }
+    }
+}
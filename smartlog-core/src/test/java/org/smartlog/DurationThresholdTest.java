@@ -0,0 +1,112 @@
+package org.smartlog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.smartlog.output.Output;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class DurationThresholdTest {
+    private final AtomicLong nanos = new AtomicLong(1_000_000_000L);
+
+    private final Output output = mock(Output.class);
+
+    private final DurationThreshold threshold = DurationThreshold.create()
+            .withMinDuration(100, TimeUnit.MICROSECONDS)
+            .withPromotion(10, TimeUnit.MILLISECONDS, LogLevel.WARN)
+            .build();
+
+    @Before
+    public void setup() {
+        SmartLogConfig.update(builder -> builder.withTimeSource(new TimeSource() {
+            @Override
+            public long currentTimeMillis() {
+                return 1000L;
+            }
+
+            @Override
+            public long nanoTime() {
+                return nanos.get();
+            }
+        }));
+
+        when(output.isEnabled(any())).thenReturn(true);
+    }
+
+    @After
+    public void tearDown() {
+        SmartLogConfig.update(builder -> builder
+                .withTimeSource(TimeSource.SYSTEM)
+                .withDefaultThreshold(null));
+    }
+
+    @Test
+    public void testFastCallIsDropped() {
+        when(output.threshold()).thenReturn(threshold);
+
+        SmartLog.start(output)
+                .trace("fast");
+        nanos.addAndGet(TimeUnit.MICROSECONDS.toNanos(99));
+        SmartLog.finish();
+
+        verify(output, never()).write(any());
+    }
+
+    @Test
+    public void testFastCallWithThrowableIsKept() {
+        when(output.threshold()).thenReturn(threshold);
+
+        SmartLog.start(output)
+                .throwable(new RuntimeException("test"));
+        SmartLog.finish();
+
+        verify(output).write(any());
+    }
+
+    @Test
+    public void testSlowCallIsPromoted() {
+        when(output.threshold()).thenReturn(threshold);
+
+        SmartLog.start(output)
+                .level(LogLevel.INFO);
+        nanos.addAndGet(TimeUnit.MICROSECONDS.toNanos(100));
+        SmartLog.finish();
+
+        SmartLog.start(output)
+                .level(LogLevel.INFO);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        SmartLog.finish();
+
+        SmartLog.start(output)
+                .level(LogLevel.ERROR);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        SmartLog.finish();
+
+        final ArgumentCaptor<LogContext> ctxCaptor = ArgumentCaptor.forClass(LogContext.class);
+        verify(output, times(3)).write(ctxCaptor.capture());
+        assertThat(ctxCaptor.getAllValues())
+                .extracting(LogContext::level)
+                .containsExactly(LogLevel.INFO, LogLevel.WARN, LogLevel.ERROR);
+    }
+
+    @Test
+    public void testContextThresholdOverridesDefault() {
+        SmartLogConfig.update(builder -> builder.withDefaultThreshold(threshold));
+
+        SmartLog.start(output);
+        SmartLog.finish();
+        verify(output, never()).write(any());
+
+        SmartLog.start(output)
+                .threshold(DurationThreshold.create().build());
+        SmartLog.finish();
+        verify(output).write(any());
+    }
+}
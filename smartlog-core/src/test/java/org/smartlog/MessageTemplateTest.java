@@ -0,0 +1,64 @@
+package org.smartlog;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageTemplateTest {
+    @Test
+    public void testPlaceholders() {
+        assertThat(MessageTemplate.of("a {} b {}").format(new Object[]{1, "x"})).isEqualTo("a 1 b x");
+        assertThat(MessageTemplate.of("{}{}").format(new Object[]{null, 2})).isEqualTo("null2");
+        assertThat(MessageTemplate.of("no args").format(new Object[]{1})).isEqualTo("no args");
+    }
+
+    @Test
+    public void testMissingArgs() {
+        assertThat(MessageTemplate.of("a {} b {}").format(new Object[]{1})).isEqualTo("a 1 b {}");
+        assertThat(MessageTemplate.of("a {}").format(null)).isEqualTo("a {}");
+    }
+
+    @Test
+    public void testEscape() {
+        assertThat(MessageTemplate.of("\\{} {}").format(new Object[]{1})).isEqualTo("{} 1");
+    }
+
+    @Test
+    public void testArrays() {
+        assertThat(MessageTemplate.of("{} {}").format(new Object[]{new int[]{1, 2}, new Object[]{"a", new long[]{3}}}))
+                .isEqualTo("[1, 2] [a, [3]]");
+    }
+
+    @Test
+    public void testPrimitives() {
+        final StringBuilder builder = new StringBuilder();
+        MessageTemplate.of("long {} {}").render(builder, 5L);
+        builder.append(';');
+        MessageTemplate.of("double {}").render(builder, 1.5);
+
+        assertThat(builder.toString()).isEqualTo("long 5 {};double 1.5");
+    }
+
+    @Test
+    public void testPrintfCompatibility() {
+        assertThat(MessageTemplate.of("%s=%d").format(new Object[]{"a", 1})).isEqualTo("a=1");
+
+        final StringBuilder builder = new StringBuilder();
+        MessageTemplate.of("%05d").render(builder, 42L);
+        assertThat(builder.toString()).isEqualTo("00042");
+    }
+
+    @Test
+    public void testInvalidArgs() {
+        assertThat(MessageTemplate.of("count %d").format(new Object[]{"x"})).isEqualTo("count %d");
+
+        final Object failing = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("test");
+            }
+        };
+        assertThat(MessageTemplate.of("a {} b {}").format(new Object[]{failing, 1}))
+                .isEqualTo("a [FAILED toString()] b 1");
+    }
+}
@@ -0,0 +1,176 @@
+package org.smartlog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.smartlog.output.Output;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SamplerTest {
+    private final AtomicLong nanos = new AtomicLong(1_000_000_000L);
+
+    private final Output output = mock(Output.class);
+
+    @Before
+    public void setup() {
+        SmartLogConfig.update(builder -> builder.withTimeSource(new TimeSource() {
+            @Override
+            public long currentTimeMillis() {
+                return 1000L;
+            }
+
+            @Override
+            public long nanoTime() {
+                return nanos.get();
+            }
+        }));
+
+        when(output.isEnabled(any())).thenReturn(true);
+        when(output.sampler()).thenReturn(() -> false);
+    }
+
+    @After
+    public void tearDown() {
+        SmartLogConfig.update(builder -> builder
+                .withTimeSource(TimeSource.SYSTEM)
+                .withKeepUnsampledSlowerThan(Long.MAX_VALUE, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testEveryNth() {
+        final Sampler sampler = Sampler.everyNth(3);
+
+        int sampled = 0;
+        for (int i = 0; i < 9; i++) {
+            if (sampler.sample()) {
+                sampled++;
+            }
+        }
+
+        assertThat(sampled).isEqualTo(3);
+        assertThat(Sampler.everyNth(1)).isSameAs(Sampler.ALWAYS);
+    }
+
+    @Test
+    public void testProbability() {
+        assertThat(Sampler.probability(0).sample()).isFalse();
+        assertThat(Sampler.probability(1)).isSameAs(Sampler.ALWAYS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidProbability() {
+        Sampler.probability(1.5);
+    }
+
+    @Test
+    public void testRateLimit() {
+        final Sampler sampler = Sampler.rateLimit(10, 2);
+
+        // full bucket allows burst
+        assertThat(sampler.sample()).isTrue();
+        assertThat(sampler.sample()).isTrue();
+        assertThat(sampler.sample()).isFalse();
+
+        // one token per 100 ms
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(sampler.sample()).isTrue();
+        assertThat(sampler.sample()).isFalse();
+
+        // bucket never holds more than burst
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertThat(sampler.sample()).isTrue();
+        assertThat(sampler.sample()).isTrue();
+        assertThat(sampler.sample()).isFalse();
+    }
+
+    @Test
+    public void testUnsampledIsSkipped() {
+        final LogContext ctx = SmartLog.start(output)
+                .trace("trace")
+                .attach("var", "val");
+
+        assertThat(ctx.isSampled()).isFalse();
+        assertThat(ctx.isSuppressed()).isTrue();
+        assertThat(ctx.trace()).isEmpty();
+        assertThat(ctx.getAttr("var")).isNull();
+
+        SmartLog.finish();
+
+        verify(output, never()).write(any());
+    }
+
+    @Test
+    public void testUnsampledThrowableIsKept() {
+        SmartLog.start(output)
+                .throwable(new RuntimeException("test"));
+        SmartLog.finish();
+
+        final ArgumentCaptor<LogContext> ctxCaptor = ArgumentCaptor.forClass(LogContext.class);
+        verify(output).write(ctxCaptor.capture());
+        assertThat(ctxCaptor.getValue().throwable()).hasMessage("test");
+    }
+
+    @Test
+    public void testUnsampledErrorIsKept() {
+        SmartLog.start(output)
+                .level(LogLevel.ERROR);
+        SmartLog.finish();
+
+        verify(output).write(any());
+    }
+
+    @Test
+    public void testUnsampledSlowIsKept() {
+        SmartLogConfig.update(builder -> builder.withKeepUnsampledSlowerThan(10, TimeUnit.MILLISECONDS));
+
+        SmartLog.start(output);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(5));
+        SmartLog.finish();
+        verify(output, never()).write(any());
+
+        SmartLog.start(output);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        SmartLog.finish();
+        verify(output).write(any());
+    }
+
+    @Test
+    public void testLoggableSampler() {
+        when(output.sampler()).thenReturn(null);
+        final Sampler sampler = Sampler.everyNth(2);
+
+        for (int i = 0; i < 4; i++) {
+            SmartLog.start(output, null, sampler);
+            SmartLog.finish();
+        }
+
+        verify(output, times(2)).write(any());
+    }
+
+    @Test
+    public void testDisabledLevelIsNotSampled() {
+        final Sampler outputSampler = mock(Sampler.class);
+        final Sampler sampler = mock(Sampler.class);
+        when(output.sampler()).thenReturn(outputSampler);
+        when(output.isEnabled(LogLevel.DEBUG)).thenReturn(false);
+
+        final LogContext ctx = SmartLog.start(output, null, sampler, LogLevel.DEBUG)
+                .trace("step");
+
+        assertThat(ctx.level()).isEqualTo(LogLevel.DEBUG);
+        assertThat(ctx.isSuppressed()).isTrue();
+        assertThat(ctx.trace()).isEmpty();
+
+        SmartLog.finish();
+
+        verify(outputSampler, never()).sample();
+        verify(sampler, never()).sample();
+    }
+}
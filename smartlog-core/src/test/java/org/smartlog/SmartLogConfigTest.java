@@ -0,0 +1,53 @@
+package org.smartlog;
+
+import org.junit.After;
+import org.junit.Test;
+import org.smartlog.metrics.MetricsSink;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class SmartLogConfigTest {
+    @After
+    public void tearDown() {
+        SmartLogConfig.update(builder -> builder
+                .withTraceTimeUnit(TimeUnit.MILLISECONDS)
+                .withKeepUnsampledSlowerThan(Long.MAX_VALUE, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testUpdateSwapsCopy() throws Exception {
+        final SmartLogConfig before = SmartLogConfig.getConfig();
+        final MetricsSink metricsSink = mock(MetricsSink.class);
+
+        final SmartLogConfig after = SmartLogConfig.update(builder -> builder
+                .withTraceTimeUnit(TimeUnit.MICROSECONDS)
+                .withMetricsSink(metricsSink));
+
+        assertThat(SmartLogConfig.getConfig()).isSameAs(after);
+        assertThat(after.getTraceTimeUnit()).isEqualTo(TimeUnit.MICROSECONDS);
+        assertThat(after.getMetricsSink()).isSameAs(metricsSink);
+        assertThat(after.getDefaultFormat()).isSameAs(before.getDefaultFormat());
+        assertThat(after.getVersion()).isGreaterThan(before.getVersion());
+
+        // published snapshot is never changed
+        assertThat(before.getTraceTimeUnit()).isEqualTo(TimeUnit.MILLISECONDS);
+
+        SmartLogConfig.setConfig(before);
+        assertThat(SmartLogConfig.getConfig()).isSameAs(before);
+    }
+
+    @Test
+    public void testCreateIgnoresCurrentConfig() throws Exception {
+        SmartLogConfig.update(builder -> builder.withKeepUnsampledSlowerThan(10, TimeUnit.MILLISECONDS));
+
+        final SmartLogConfig config = SmartLogConfig.create().build();
+
+        assertThat(config.getKeepUnsampledSlowerThanNanos()).isEqualTo(Long.MAX_VALUE);
+        assertThat(config.toBuilder().build().getKeepUnsampledSlowerThanNanos()).isEqualTo(Long.MAX_VALUE);
+        assertThat(SmartLogConfig.getConfig().getKeepUnsampledSlowerThanNanos())
+                .isEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+}
@@ -1,6 +1,7 @@
 package org.smartlog;
 
 import org.assertj.core.api.Assertions;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -11,7 +12,18 @@ import org.smartlog.format.SimpleTextFormat;
 import org.smartlog.output.Output;
 import org.smartlog.output.Slf4JOutput;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.smartlog.TraceFlag.WRITE_TIME;
@@ -247,17 +259,72 @@ public class SmartLogTest {
         final Object loggableCallback = new LoggableCallback() {
         };
         final Output output = mock(Output.class);
-        SmartLogConfig.getConfig().setDefaultOutputResolver(clazz -> {
+        SmartLogConfig.update(builder -> builder.withDefaultOutputResolver(clazz -> {
             // should be external class
             Assertions.assertThat(clazz).isEqualTo(SmartLogTest.class);
             return output;
-        });
+        }));
 
         SmartLog.start(loggableCallback);
         Assertions.assertThat(SmartLog.current().output()).isSameAs(output);
         SmartLog.finish();
     }
 
+    @Test
+    public void testDefaultOutputCache() throws Exception {
+        final Function<Class, Output> resolver = mock(Function.class);
+        when(resolver.apply(any())).thenAnswer(invocation -> mock(Output.class));
+        final SmartLogConfig config = SmartLogConfig.create()
+                .withDefaultOutputResolver(resolver)
+                .build();
+
+        final Output output1 = config.getDefaultOutput(SmartLogTest.class);
+        final Output output2 = config.getDefaultOutput(SmartLogTest.class);
+        final Output output3 = config.getDefaultOutput(SmartLog.class);
+
+        assertThat(output1).isSameAs(output2);
+        assertThat(output1).isNotSameAs(output3);
+        verify(resolver, times(1)).apply(SmartLogTest.class);
+        assertThat(config.getOutputCacheHits()).isEqualTo(1);
+        assertThat(config.getOutputCacheMisses()).isEqualTo(2);
+
+        config.invalidateOutputCache();
+        assertThat(config.getDefaultOutput(SmartLogTest.class)).isNotSameAs(output1);
+        verify(resolver, times(2)).apply(SmartLogTest.class);
+
+        // derived config keeps resolved outputs until resolver is changed
+        final Output cached = config.getDefaultOutput(SmartLogTest.class);
+        assertThat(config.toBuilder().withMetricsSink(null).build().getDefaultOutput(SmartLogTest.class))
+                .isSameAs(cached);
+
+        final Output newOutput = mock(Output.class);
+        final SmartLogConfig newConfig = config.toBuilder()
+                .withDefaultOutputResolver(clazz -> newOutput)
+                .build();
+        assertThat(newConfig.getDefaultOutput(SmartLogTest.class)).isSameAs(newOutput);
+    }
+
+    @Test
+    public void testDefaultOutputCacheIsBounded() throws Exception {
+        final SmartLogConfig config = SmartLogConfig.create()
+                .withOutputCacheSize(1)
+                .withDefaultOutputResolver(clazz -> mock(Output.class))
+                .build();
+
+        final Output output1 = config.getDefaultOutput(SmartLogTest.class);
+        assertThat(config.getDefaultOutput(SmartLogTest.class)).isSameAs(output1);
+
+        // class above max size is resolved on every call, cached output is kept
+        final Output output2 = config.getDefaultOutput(SmartLog.class);
+        assertThat(config.getDefaultOutput(SmartLog.class)).isNotSameAs(output2);
+        assertThat(config.getDefaultOutput(SmartLogTest.class)).isSameAs(output1);
+        assertThat(config.getOutputCacheMisses()).isEqualTo(3);
+        assertThat(config.getOutputCacheHits()).isEqualTo(2);
+
+        config.invalidateOutputCache();
+        assertThat(config.getDefaultOutput(SmartLog.class)).isSameAs(config.getDefaultOutput(SmartLog.class));
+    }
+
     @Test
     public void testMdc() throws Exception {
         MDC.put("mdc-var1", "mdc-oldval");
@@ -291,6 +358,38 @@ public class SmartLogTest {
         assertThat(Thread.currentThread().getName()).isEqualTo(oldName);
     }
 
+    @Test
+    public void testBadFormatStringIsWrittenAsIs() throws Exception {
+        SmartLog.start(output)
+                .format(new SimpleTextFormat("${trace}"))
+                .trace("count %d", "x");
+        SmartLog.finish();
+
+        verify(logger).info("count %d");
+    }
+
+    @Test
+    public void testRecoverThreadWhenOutputFails() throws Exception {
+        final String oldName = Thread.currentThread().getName();
+        final Output failing = mock(Output.class);
+        when(failing.isEnabled(any())).thenReturn(true);
+        doThrow(new IllegalStateException("test")).when(failing).write(any());
+
+        SmartLog.start(failing)
+                .threadName("new-thread-name")
+                .pushMDC("mdc-var", "mdc-val");
+
+        try {
+            SmartLog.finish();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessage("test");
+        }
+
+        assertThat(Thread.currentThread().getName()).isEqualTo(oldName);
+        assertThat(MDC.get("mdc-var")).isNull();
+    }
+
     @Test
     public void testAutoclosable() throws Exception {
         try (LogContext ctx = SmartLog.start(output)) {
@@ -348,4 +447,382 @@ public class SmartLogTest {
         assertThat(SmartLog.current()).isSameAs(outer);
         SmartLog.finish();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRecycleContexts() throws Exception {
+        SmartLogConfig.update(builder -> builder.withRecycleContexts(true));
+        try {
+            final LogContext outer = SmartLog.start(output)
+                    .format(new SimpleTextFormat("${title}, var=${var}, trace: [${trace}]"))
+                    .title("first")
+                    .attach("var", "val")
+                    .trace("trace1");
+            final LogContext inner = SmartLog.start(output);
+            SmartLog.finish();
+            SmartLog.finish();
+
+            // pool keeps contexts for each nesting level
+            assertThat(SmartLog.start(output)).isSameAs(outer);
+            assertThat(SmartLog.start(output)).isSameAs(inner);
+            SmartLog.finish();
+
+            outer.format(new SimpleTextFormat("${title}, var=${var}, trace: [${trace}]"))
+                    .title("second")
+                    .trace("trace2");
+            SmartLog.finish();
+
+            final ArgumentCaptor<String> msgCaptor = ArgumentCaptor.forClass(String.class);
+            Mockito.verify(logger, times(4)).info(msgCaptor.capture());
+
+            assertThat(msgCaptor.getAllValues().get(1)).isEqualTo("first, var=val, trace: [trace1]");
+            assertThat(msgCaptor.getAllValues().get(3)).isEqualTo("second, var=, trace: [trace2]");
+        } finally {
+            SmartLogConfig.update(builder -> builder.withRecycleContexts(false));
+        }
+    }
+
+    @Test
+    public void testRecycledContextCannotBeUsedAfterFinish() throws Exception {
+        SmartLogConfig.update(builder -> builder.withRecycleContexts(true));
+        try {
+            final LogContext ctx = SmartLog.start(output);
+            ctx.close();
+
+            try {
+                ctx.trace("trace after finish");
+                Assert.fail();
+            } catch (Exception e) {
+                assertThat(e).hasMessage("Loggable context is already finished");
+            }
+
+            try {
+                ctx.close();
+                Assert.fail();
+            } catch (Exception e) {
+                assertThat(e).hasMessage("Loggable context is already finished");
+            }
+        } finally {
+            SmartLogConfig.update(builder -> builder.withRecycleContexts(false));
+        }
+    }
+
+    @Test
+    public void testSkipTraceIfLevelDisabled() throws Exception {
+        when(logger.isDebugEnabled()).thenReturn(false);
+
+        final LogContext ctx = SmartLog.start(output)
+                .level(LogLevel.DEBUG)
+                .trace("trace %s", 1)
+                .attach("var", "val")
+                .result("result %s", 2);
+
+        assertThat(ctx.isSuppressed()).isTrue();
+        assertThat(ctx.trace()).isEmpty();
+        assertThat(ctx.getAttr("var")).isNull();
+        assertThat(ctx.result()).isNull();
+
+        SmartLog.finish();
+
+        verify(logger, never()).debug(anyString());
+        verify(logger).isDebugEnabled();
+    }
+
+    @Test
+    public void testDoNotSuppressContextWithoutLevel() throws Exception {
+        when(logger.isInfoEnabled()).thenReturn(false);
+
+        final LogContext ctx = SmartLog.start(output)
+                .trace("trace1");
+
+        assertThat(ctx.isSuppressed()).isFalse();
+        assertThat(ctx.trace()).isEqualTo("trace1");
+
+        ctx.level(LogLevel.INFO)
+                .trace("trace2");
+
+        assertThat(ctx.isSuppressed()).isTrue();
+        assertThat(ctx.trace()).isEqualTo("trace1");
+
+        ctx.level(LogLevel.ERROR)
+                .trace("trace3");
+
+        assertThat(ctx.isSuppressed()).isFalse();
+        assertThat(ctx.trace()).isEqualTo("trace1; trace3");
+
+        SmartLog.finish();
+    }
+
+    @Test
+    public void testWrapRunnable() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SmartLog.start(output)
+                    .format(new SimpleTextFormat("${title}, var=${var}, trace: [${trace}]"))
+                    .title("parent")
+                    .trace("before");
+
+            executor.submit(SmartLog.wrapRunnable(() -> {
+                assertThat(SmartLog.current().title()).isEqualTo("parent");
+                SmartLog.trace("child");
+                SmartLog.attach("var", "val");
+            })).get();
+
+            SmartLog.trace("after");
+            SmartLog.finish();
+
+            verify(logger).info("parent, var=val, trace: [before; child; after]");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWrapSupplierAfterParentFinished() throws Exception {
+        SmartLog.start(output)
+                .format(new SimpleTextFormat("${title}, trace: [${trace}]"))
+                .title("parent");
+
+        final Supplier<Integer> task = SmartLog.wrapSupplier(() -> {
+            SmartLog.trace("child");
+            return 42;
+        });
+
+        SmartLog.finish();
+
+        assertThat(CompletableFuture.supplyAsync(task).get()).isEqualTo(42);
+
+        final ArgumentCaptor<String> msgCaptor = ArgumentCaptor.forClass(String.class);
+        verify(logger, times(2)).info(msgCaptor.capture());
+        assertThat(msgCaptor.getAllValues()).containsExactly("parent, trace: []", "parent, trace: [child]");
+    }
+
+    @Test
+    public void testWrapCallableKeepsThreadContexts() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SmartLog.start(output);
+
+            final Callable<String> task = SmartLog.wrapCallable(() -> {
+                SmartLog.start(output);
+                throw new IllegalStateException("task failed");
+            });
+
+            try {
+                executor.submit(task).get();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).hasMessage("task failed");
+            }
+
+            // executor thread has no context after task
+            assertThat(executor.submit(() -> {
+                try {
+                    SmartLog.current();
+                    return false;
+                } catch (RuntimeException e) {
+                    return true;
+                }
+            }).get()).isTrue();
+
+            SmartLog.finish();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWrapWithoutContext() throws Exception {
+        final Runnable runnable = () -> {
+        };
+        final Callable<String> callable = () -> "ok";
+        final Supplier<String> supplier = () -> "ok";
+
+        assertThat(SmartLog.wrapRunnable(runnable)).isSameAs(runnable);
+        assertThat(SmartLog.wrapCallable(callable)).isSameAs(callable);
+        assertThat(SmartLog.wrapSupplier(supplier)).isSameAs(supplier);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CompletableFuture<String> future = new CompletableFuture<>();
+            SmartLog.wrapExecutor(executor).execute(() -> future.complete("done"));
+            assertThat(future.get()).isEqualTo("done");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testForkThrowableIsSuppressedByParent() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final LogContext ctx = SmartLog.start(output);
+
+            try {
+                executor.submit(SmartLog.wrapRunnable(() -> {
+                    throw new IllegalStateException("task failed");
+                })).get();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).hasMessage("task failed");
+            }
+
+            assertThat(ctx.trace()).isEmpty();
+            assertThat(ctx.suppressedThrowables()).hasSize(1);
+            assertThat(ctx.suppressedThrowables().get(0)).hasMessage("task failed");
+
+            SmartLog.finish();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testNestedForkIsMergedToParent() throws Exception {
+        final ExecutorService outerExecutor = Executors.newSingleThreadExecutor();
+        final ExecutorService innerExecutor = Executors.newSingleThreadExecutor();
+        try {
+            final LogContext ctx = SmartLog.start(output)
+                    .format(new SimpleTextFormat("${title}, var=${var}, trace: [${trace}]"))
+                    .title("parent");
+
+            outerExecutor.submit(SmartLog.wrapRunnable(() -> {
+                SmartLog.trace("outer");
+
+                try {
+                    innerExecutor.submit(SmartLog.wrapRunnable(() -> {
+                        SmartLog.trace("inner");
+                        SmartLog.attach("var", "val");
+                        throw new IllegalStateException("inner failed");
+                    })).get();
+                    Assert.fail();
+                } catch (InterruptedException | ExecutionException e) {
+                    assertThat(e.getCause()).hasMessage("inner failed");
+                }
+            })).get();
+
+            assertThat(ctx.suppressedThrowables()).hasSize(1);
+            assertThat(ctx.suppressedThrowables().get(0)).hasMessage("inner failed");
+
+            SmartLog.finish();
+
+            verify(logger).info("parent, var=val, trace: [outer; inner]");
+        } finally {
+            outerExecutor.shutdown();
+            innerExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeSource() throws Exception {
+        final AtomicLong nanos = new AtomicLong(1_000_000_000L);
+        final TimeSource timeSource = new TimeSource() {
+            @Override
+            public long currentTimeMillis() {
+                return 1000L;
+            }
+
+            @Override
+            public long nanoTime() {
+                return nanos.get();
+            }
+        };
+
+        SmartLogConfig.update(builder -> builder
+                .withTimeSource(timeSource)
+                .withTraceTimeUnit(TimeUnit.MICROSECONDS));
+        try {
+            final LogContext ctx = SmartLog.start(output)
+                    .format(new SimpleTextFormat("${time} ms, ${time_us} us, trace: [${trace}]"));
+
+            nanos.addAndGet(1_500_000L);
+            SmartLog.trace(WRITE_TIME, "step1");
+            nanos.addAndGet(1_000_000L);
+            SmartLog.finish();
+
+            assertThat(ctx.startTime()).isEqualTo(1000L);
+            assertThat(ctx.endTime()).isEqualTo(1002L);
+            assertThat(ctx.durationNanos()).isEqualTo(2_500_000L);
+            verify(logger).info("2 ms, 2500 us, trace: [step1 [1500 us]]");
+        } finally {
+            SmartLogConfig.update(builder -> builder
+                    .withTimeSource(TimeSource.SYSTEM)
+                    .withTraceTimeUnit(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void testStructuredTrace() throws Exception {
+        final AtomicLong nanos = new AtomicLong(1_000_000_000L);
+        SmartLogConfig.update(builder -> builder.withTimeSource(new TimeSource() {
+            @Override
+            public long currentTimeMillis() {
+                return 1000L;
+            }
+
+            @Override
+            public long nanoTime() {
+                return nanos.get();
+            }
+        }));
+
+        try {
+            final AtomicLong toStringCalls = new AtomicLong();
+            final Object arg = new Object() {
+                @Override
+                public String toString() {
+                    toStringCalls.incrementAndGet();
+                    return "arg";
+                }
+            };
+
+            final LogContext ctx = SmartLog.start(output)
+                    .trace("step %s", arg);
+            nanos.addAndGet(2_000_000L);
+            ctx.trace(TraceFlag.WRITE_AND_MARK_TIME, "load");
+
+            // arguments are formatted only when trace is rendered
+            assertThat(toStringCalls.get()).isEqualTo(0);
+
+            assertThat(ctx.traceSize()).isEqualTo(2);
+            assertThat(ctx.traceMessage(0)).isEqualTo("step %s");
+            assertThat(ctx.traceFlag(0)).isEqualTo(TraceFlag.NONE);
+            assertThat(ctx.traceNanos(0)).isEqualTo(-1L);
+            assertThat(ctx.traceFlag(1)).isEqualTo(TraceFlag.WRITE_AND_MARK_TIME);
+            assertThat(ctx.traceNanos(1)).isEqualTo(2_000_000L);
+            assertThat(ctx.trace()).isEqualTo("step arg; load [2 ms]");
+
+            SmartLog.finish();
+        } finally {
+            SmartLogConfig.update(builder -> builder.withTimeSource(TimeSource.SYSTEM));
+        }
+    }
+
+    @Test
+    public void testParameterizedMessages() throws Exception {
+        final AtomicLong toStringCalls = new AtomicLong();
+        final Object arg = new Object() {
+            @Override
+            public String toString() {
+                toStringCalls.incrementAndGet();
+                return "arg";
+            }
+        };
+
+        final LogContext ctx = SmartLog.start(output)
+                .title("title {} {}", arg, 1)
+                .trace("count {}", 5)
+                .trace("ratio {}", 0.5)
+                .trace("legacy %s", arg)
+                .result("result {}", arg);
+
+        // title and result are formatted on first read
+        assertThat(toStringCalls.get()).isEqualTo(0);
+        assertThat(ctx.hasResult()).isTrue();
+
+        assertThat(ctx.title()).isEqualTo("title arg 1");
+        assertThat(ctx.result()).isEqualTo("result arg");
+        assertThat(ctx.trace()).isEqualTo("count 5; ratio 0.5; legacy arg");
+
+        SmartLog.finish();
+    }
+}
@@ -2,6 +2,9 @@ package org.smartlog;
 
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class UtilTest {
@@ -11,6 +14,37 @@ public class UtilTest {
         assertThat(Util.stripCrLf("\n\rtest\r\n")).isEqualTo("\\n\\rtest\\r\\n");
     }
 
+    @Test
+    public void stripCrLfReturnsSameStringIfNothingToStrip() throws Exception {
+        final String text = "test";
+        assertThat(Util.stripCrLf(text)).isSameAs(text);
+    }
+
+    @Test
+    public void stripCrLfInPlace() throws Exception {
+        final StringBuilder builder = new StringBuilder("\nkeep\n\rtest\r\n");
+        Util.stripCrLf(builder, 5);
+        assertThat(builder.toString()).isEqualTo("\nkeep\\n\\rtest\\r\\n");
+    }
+
+    @Test
+    public void encodeUtf8() throws Exception {
+        final String text = "a\u00e9\u20ac\ud83d\ude00\ud800b";
+        final byte[] expected = "a\u00e9\u20ac\ud83d\ude00?b".getBytes(StandardCharsets.UTF_8);
+        assertThat(Util.utf8Length(text)).isEqualTo(expected.length);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+        assertThat(Util.encodeUtf8(text, 0, buffer)).isEqualTo(text.length());
+        assertThat(buffer.array()).isEqualTo(expected);
+    }
+
+    @Test
+    public void encodeUtf8StopsWhenBufferIsFull() throws Exception {
+        final ByteBuffer buffer = ByteBuffer.allocate(4);
+        assertThat(Util.encodeUtf8("ab\u20ac", 0, buffer)).isEqualTo(2);
+        assertThat(buffer.position()).isEqualTo(2);
+    }
+
     @Test
     public void findRootEnclosingClass() throws Exception {
         assertThat(Util.findRootEnclosingClass(UtilTest.class)).isSameAs(UtilTest.class);
@@ -0,0 +1,126 @@
+package org.smartlog.format;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.smartlog.AttributeVisitor;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+public class JsonFormatTest {
+    @Test
+    public void testAllFields() {
+        final LogContext ctx = Mockito.mock(LogContext.class);
+        when(ctx.title()).thenReturn("test-title");
+        when(ctx.result()).thenReturn("test-result");
+        when(ctx.trace()).thenReturn("trace1; trace2");
+        when(ctx.startTime()).thenReturn(100L);
+        when(ctx.endTime()).thenReturn(105L);
+        when(ctx.durationNanos()).thenReturn(5_000_000L);
+        when(ctx.level()).thenReturn(LogLevel.WARN);
+        final RuntimeException throwable = new RuntimeException("error");
+        throwable.setStackTrace(new StackTraceElement[]{new StackTraceElement("Test", "run", "Test.java", 1)});
+        when(ctx.throwable()).thenReturn(throwable);
+        doAnswer(invocation -> {
+            final AttributeVisitor visitor = invocation.getArgument(0);
+            visitor.visit("str", "val");
+            visitor.visit("int", 42L);
+            visitor.visit("double", 1.5);
+            visitor.visit("bool", true);
+            visitor.visit("nan", Double.NaN);
+            visitor.visit("null", null);
+            return null;
+        }).when(ctx).visitAttrs(any());
+
+        final String result = new JsonFormat().format(ctx);
+
+        Assertions.assertThat(result).isEqualTo("{\"title\":\"test-title\",\"result\":\"test-result\","
+                + "\"trace\":\"trace1; trace2\",\"time\":5,\"time_us\":5000,\"level\":\"WARN\","
+                + "\"throwable\":\"java.lang.RuntimeException: error\","
+                + "\"stack_trace\":\"java.lang.RuntimeException: error" + escapedLineSeparator()
+                + "\\tat Test.run(Test.java:1)\","
+                + "\"attrs\":{\"str\":\"val\",\"int\":42,\"double\":1.5,\"bool\":true,\"nan\":\"NaN\",\"null\":null}}");
+    }
+
+    @Test
+    public void testAttrsDontClashWithFields() {
+        final LogContext ctx = Mockito.mock(LogContext.class);
+        when(ctx.title()).thenReturn("t");
+        when(ctx.level()).thenReturn(LogLevel.INFO);
+        doAnswer(invocation -> {
+            final AttributeVisitor visitor = invocation.getArgument(0);
+            visitor.visit("level", "x");
+            visitor.visit("title", 5L);
+            return null;
+        }).when(ctx).visitAttrs(any());
+
+        final String result = new JsonFormat().format(ctx);
+
+        Assertions.assertThat(result).isEqualTo("{\"title\":\"t\",\"time\":0,\"time_us\":0,\"level\":\"INFO\","
+                + "\"attrs\":{\"level\":\"x\",\"title\":5}}");
+    }
+
+    @Test
+    public void testSuppressedThrowables() {
+        final LogContext ctx = Mockito.mock(LogContext.class);
+        when(ctx.throwable()).thenReturn(new RuntimeException("error"));
+        when(ctx.suppressedThrowables()).thenReturn(new ArrayList<>(Collections.singletonList(
+                new IllegalStateException("task failed"))));
+
+        final String result = new JsonFormat().format(ctx);
+
+        Assertions.assertThat(result).contains("Suppressed: java.lang.IllegalStateException: task failed");
+    }
+
+    @Test
+    public void testSteps() {
+        final LogContext ctx = Mockito.mock(LogContext.class);
+        when(ctx.title()).thenReturn("test-title");
+        when(ctx.trace()).thenReturn("load 1 [2 ms]; check; save [3 ms]");
+        when(ctx.traceSize()).thenReturn(3);
+        when(ctx.traceMessage(0)).thenReturn("load %d");
+        when(ctx.traceNanos(0)).thenReturn(2_000_000L);
+        when(ctx.traceNanos(1)).thenReturn(-1L);
+        when(ctx.traceMessage(2)).thenReturn("save");
+        when(ctx.traceNanos(2)).thenReturn(3_000_000L);
+
+        final String result = new JsonFormat().format(ctx);
+
+        Assertions.assertThat(result).isEqualTo("{\"title\":\"test-title\","
+                + "\"trace\":\"load 1 [2 ms]; check; save [3 ms]\","
+                + "\"steps\":[{\"step\":\"load %d\",\"time_us\":2000},{\"step\":\"save\",\"time_us\":3000}],"
+                + "\"time\":0,\"time_us\":0}");
+    }
+
+    @Test
+    public void testEmptyContext() {
+        final LogContext ctx = Mockito.mock(LogContext.class);
+
+        final String result = new JsonFormat().format(ctx);
+
+        Assertions.assertThat(result).isEqualTo("{\"title\":null,\"time\":0,\"time_us\":0}");
+    }
+
+    @Test
+    public void testEscape() {
+        final LogContext ctx = Mockito.mock(LogContext.class);
+        when(ctx.title()).thenReturn("quote \" backslash \\ crlf \r\n tab \t ctrl \u0001");
+        when(ctx.result()).thenReturn(Double.NaN);
+
+        final String result = new JsonFormat().format(ctx);
+
+        Assertions.assertThat(result).isEqualTo("{\"title\":\"quote \\\" backslash \\\\ crlf \\r\\n tab \\t ctrl \\u0001\","
+                + "\"result\":\"NaN\",\"time\":0,\"time_us\":0}");
+    }
+
+    private static String escapedLineSeparator() {
+        return System.lineSeparator().replace("\r", "\\r").replace("\n", "\\n");
+    }
+}
@@ -5,8 +5,10 @@ import org.assertj.core.api.Assertions;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.smartlog.LogContext;
+import org.smartlog.SmartLog;
+import org.smartlog.output.Output;
 
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
 public class SimpleTextFormatTest {
@@ -20,6 +22,27 @@ public class SimpleTextFormatTest {
         Assertions.assertThat(result).isEqualTo("[test-title]");
     }
 
+    @Test
+    public void testFormatToBuilder() {
+        final LogContext ctx = Mockito.mock(LogContext.class);
+        when(ctx.title()).thenReturn("test-title");
+
+        final StringBuilder builder = new StringBuilder("prefix ");
+        new SimpleTextFormat("[${title}]").format(ctx, builder);
+
+        Assertions.assertThat(builder.toString()).isEqualTo("prefix [test-title]");
+    }
+
+    @Test
+    public void testPreciseTime() {
+        final LogContext ctx = Mockito.mock(LogContext.class);
+        when(ctx.durationNanos()).thenReturn(1_234_567L);
+
+        String result = new SimpleTextFormat("[${time_us} us] [${time_ns} ns]").format(ctx);
+
+        Assertions.assertThat(result).isEqualTo("[1234 us] [1234567 ns]");
+    }
+
     @Test
     public void testResult() {
         final LogContext ctx = Mockito.mock(LogContext.class);
@@ -78,18 +101,51 @@ public class SimpleTextFormatTest {
 
     @Test
     public void testAttrs() {
-        final LogContext ctx = Mockito.mock(LogContext.class);
-        when(ctx.getAttr(eq("attr1"))).thenReturn("value1");
-        when(ctx.getAttr(eq("attr2"))).thenReturn(null);
-        when(ctx.getAttr(eq("attr3"))).thenReturn(new Object() {
-            @Override
-            public String toString() {
-                return "to-string";
-            }
-        });
+        final LogContext ctx = SmartLog.start(output())
+                .attach("attr1", "value1")
+                .attach("attr2", null)
+                .attach("attr3", new Object() {
+                    @Override
+                    public String toString() {
+                        return "to-string";
+                    }
+                });
+
+        try {
+            String result = new SimpleTextFormat("[${attr1}][${attr2}][${attr3}][${attr4}]").format(ctx);
+
+            Assertions.assertThat(result).isEqualTo("[value1][][to-string][]");
+        } finally {
+            SmartLog.finish();
+        }
+    }
 
-        String result = new SimpleTextFormat("[${attr1}][${attr2}][${attr3}]").format(ctx);
+    @Test
+    public void testPrimitiveAttrs() {
+        final LogContext ctx = SmartLog.start(output())
+                .attach("long", 42L)
+                .attach("int", 7)
+                .attach("char", 'c')
+                .attach("float", 1.1f)
+                .attach("double", 1.5)
+                .attach("bool", true);
+
+        try {
+            String result = new SimpleTextFormat("${long} ${int} ${char} ${float} ${double} ${bool}").format(ctx);
+
+            Assertions.assertThat(result).isEqualTo("42 7 c 1.1 1.5 true");
+            Assertions.assertThat(ctx.getAttr("long")).isEqualTo(42L);
+            Assertions.assertThat(ctx.getAttr("int")).isEqualTo(7);
+            Assertions.assertThat(ctx.getAttr("char")).isEqualTo('c');
+            Assertions.assertThat(ctx.getAttr("float")).isEqualTo(1.1f);
+        } finally {
+            SmartLog.finish();
+        }
+    }
 
-        Assertions.assertThat(result).isEqualTo("[value1][][to-string]");
+    private static Output output() {
+        final Output output = Mockito.mock(Output.class);
+        when(output.isEnabled(any())).thenReturn(true);
+        return output;
     }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package org.smartlog.metrics;
+
+import org.junit.After;
+import org.junit.Test;
+import org.smartlog.LogContext;
+import org.smartlog.SmartLog;
+import org.smartlog.SmartLogConfig;
+import org.smartlog.TraceFlag;
+import org.smartlog.output.Output;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+
+public class LatencyMetricsTest {
+    @After
+    public void tearDown() {
+        SmartLogConfig.update(builder -> builder.withMetricsSink(null));
+    }
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            final int index = LatencyHistogram.index(value);
+            assertThat(LatencyHistogram.value(index)).isCloseTo(value, within(Math.max(1, value / 64)));
+        }
+
+        assertThat(LatencyHistogram.index(-1)).isEqualTo(0);
+        assertThat(LatencyHistogram.index(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.SIZE - 1);
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        final HistogramSnapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(1000);
+        assertThat(snapshot.getP50Nanos()).isCloseTo(500_000L, within(500_000L / 64));
+        assertThat(snapshot.getP99Nanos()).isCloseTo(990_000L, within(990_000L / 64));
+        assertThat(snapshot.getP999Nanos()).isCloseTo(999_000L, within(999_000L / 64));
+        assertThat(snapshot.getMinNanos()).isCloseTo(1000L, within(1000L / 64));
+    }
+
+    @Test
+    public void testIntervalSnapshot() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.record(100);
+        assertThat(histogram.intervalSnapshot().getCount()).isEqualTo(2);
+
+        histogram.record(200);
+        final HistogramSnapshot interval = histogram.intervalSnapshot();
+        assertThat(interval.getCount()).isEqualTo(1);
+        assertThat(interval.getMaxNanos()).isCloseTo(200L, within(4L));
+        assertThat(histogram.snapshot().getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testRecordPerTitle() {
+        final LatencyMetrics metrics = new LatencyMetrics(2, false);
+        SmartLogConfig.update(builder -> builder.withMetricsSink(metrics));
+
+        final Output output = mock(Output.class);
+        for (int i = 0; i < 3; i++) {
+            SmartLog.start(output)
+                    .title("load %d", i);
+            SmartLog.finish();
+        }
+
+        SmartLog.start(output)
+                .title("save");
+        SmartLog.finish();
+
+        SmartLog.start(output)
+                .title("other");
+        SmartLog.finish();
+
+        assertThat(metrics.getSnapshots()).containsOnlyKeys("load %d", "save");
+        assertThat(metrics.snapshot("load %d").getCount()).isEqualTo(3);
+        assertThat(metrics.getDroppedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRecordTemplateOfFormattedTitle() {
+        final LatencyMetrics metrics = new LatencyMetrics(2, false);
+        SmartLogConfig.update(builder -> builder.withMetricsSink(metrics));
+
+        for (int i = 0; i < 3; i++) {
+            final LogContext ctx = SmartLog.start(mock(Output.class))
+                    .title("load {}", i);
+
+            // e.g. @Loggable support reads title before finish
+            assertThat(ctx.title()).isEqualTo("load " + i);
+            assertThat(ctx.rawTitle()).isEqualTo("load {}");
+            assertThat(ctx.hasTitleArgs()).isTrue();
+            SmartLog.finish();
+        }
+
+        assertThat(metrics.getSnapshots()).containsOnlyKeys("load {}");
+        assertThat(metrics.snapshot("load {}").getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testRecordSteps() {
+        final LatencyMetrics metrics = new LatencyMetrics(10, true);
+        SmartLogConfig.update(builder -> builder.withMetricsSink(metrics));
+
+        SmartLog.start(mock(Output.class))
+                .title("load")
+                .trace(TraceFlag.WRITE_TIME, "query %d", 1)
+                .trace("no time");
+        SmartLog.finish();
+
+        assertThat(metrics.getSnapshots()).containsOnlyKeys("load", "load > query %d");
+    }
+}
@@ -0,0 +1,209 @@
+package org.smartlog.output;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.MDC;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.SmartLog;
+import org.smartlog.format.SimpleTextFormat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class AsyncOutputTest {
+    @Test
+    public void testWriteSnapshotInBackground() throws Exception {
+        final Output delegate = mock(Output.class);
+        when(delegate.isEnabled(Mockito.any())).thenReturn(true);
+
+        final AsyncOutput output = AsyncOutput.create()
+                .withOutput(delegate)
+                .build();
+
+        final LogContext ctx = SmartLog.start(output)
+                .level(LogLevel.WARN)
+                .title("title-%d", 1)
+                .attach("var", "val")
+                .trace("trace1")
+                .result("result");
+        SmartLog.finish();
+
+        output.close();
+
+        final ArgumentCaptor<LogContext> captor = ArgumentCaptor.forClass(LogContext.class);
+        verify(delegate).write(captor.capture());
+
+        final LogContext event = captor.getValue();
+        assertThat(event).isNotSameAs(ctx);
+        assertThat(event.title()).isEqualTo("title-1");
+        assertThat(event.level()).isEqualTo(LogLevel.WARN);
+        assertThat(event.getAttr("var")).isEqualTo("val");
+        assertThat(event.trace()).isEqualTo("trace1");
+        assertThat(event.result()).isEqualTo("result");
+        assertThat(event.endTime()).isEqualTo(ctx.endTime());
+    }
+
+    @Test
+    public void testFlushOnClose() throws Exception {
+        final Logger logger = mock(Logger.class);
+        when(logger.isInfoEnabled()).thenReturn(true);
+
+        final AsyncOutput output = AsyncOutput.create()
+                .withOutput(Slf4JOutput.create()
+                        .withLogger(logger)
+                        .withFormat(new SimpleTextFormat("${title}"))
+                        .build())
+                .withBufferSize(16)
+                .blockWhenFull()
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            SmartLog.start(output)
+                    .title("title");
+            SmartLog.finish();
+        }
+
+        output.close();
+
+        verify(logger, times(100)).info("title");
+        assertThat(output.getDroppedCount()).isEqualTo(0);
+        assertThat(output.getPendingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Output delegate = mock(Output.class);
+        doAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return null;
+        }).when(delegate).write(Mockito.any());
+
+        final AsyncOutput output = AsyncOutput.create()
+                .withOutput(delegate)
+                .withBufferSize(2)
+                .dropWhenFull()
+                .build();
+
+        SmartLog.start(output);
+        SmartLog.finish();
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 0; i < 5; i++) {
+            SmartLog.start(output);
+            SmartLog.finish();
+        }
+
+        assertThat(output.getDroppedCount()).isEqualTo(3);
+
+        release.countDown();
+        output.close();
+
+        verify(delegate, times(3)).write(Mockito.any());
+
+        SmartLog.start(output);
+        SmartLog.finish();
+        assertThat(output.getDroppedCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void testErrorOfDelegateIsCounted() throws Exception {
+        final Output delegate = mock(Output.class);
+        doThrow(new StackOverflowError()).doNothing().when(delegate).write(Mockito.any());
+
+        final AsyncOutput output = AsyncOutput.create()
+                .withOutput(delegate)
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            SmartLog.start(output);
+            SmartLog.finish();
+        }
+
+        output.close();
+
+        verify(delegate, times(2)).write(Mockito.any());
+        assertThat(output.getFailedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCloseWhileWriting() throws Exception {
+        final AtomicInteger written = new AtomicInteger();
+        final AsyncOutput output = AsyncOutput.create()
+                .withOutput(log -> written.incrementAndGet())
+                .withBufferSize(64)
+                .blockWhenFull()
+                .build();
+
+        final int threads = 4;
+        final int records = 10_000;
+        final CountDownLatch started = new CountDownLatch(threads);
+        final Thread[] producers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            producers[i] = new Thread(() -> {
+                started.countDown();
+                for (int j = 0; j < records; j++) {
+                    SmartLog.start(output);
+                    SmartLog.finish();
+                }
+            });
+            producers[i].start();
+        }
+
+        started.await();
+        output.close();
+        for (final Thread producer : producers) {
+            producer.join();
+        }
+
+        // every record is either written or counted as dropped
+        assertThat(written.get() + output.getDroppedCount()).isEqualTo(threads * records);
+        assertThat(output.getPendingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testKeepThreadNameAndMDC() throws Exception {
+        final Logger logger = mock(Logger.class);
+        when(logger.isInfoEnabled()).thenReturn(true);
+        final AtomicReference<String> loggedBy = new AtomicReference<>();
+        doAnswer(invocation -> {
+            loggedBy.set(Thread.currentThread().getName() + " " + MDC.get("mdc-var"));
+            return null;
+        }).when(logger).info(anyString());
+
+        final AsyncOutput output = AsyncOutput.create()
+                .withOutput(Slf4JOutput.create()
+                        .withLogger(logger)
+                        .build())
+                .build();
+
+        final String oldName = Thread.currentThread().getName();
+        SmartLog.start(output)
+                .threadName("request-thread")
+                .pushMDC("mdc-var", "mdc-val");
+        SmartLog.finish();
+
+        output.close();
+
+        assertThat(loggedBy.get()).isEqualTo("request-thread mdc-val");
+        assertThat(Thread.currentThread().getName()).isEqualTo(oldName);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBufferSizeMustBePowerOf2() throws Exception {
+        AsyncOutput.create()
+                .withOutput(mock(Output.class))
+                .withBufferSize(10)
+                .build();
+    }
+}
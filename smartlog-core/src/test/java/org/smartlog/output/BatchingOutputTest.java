@@ -0,0 +1,242 @@
+package org.smartlog.output;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.MDC;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.SmartLog;
+import org.smartlog.format.SimpleTextFormat;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class BatchingOutputTest {
+    private final RecordingOutput delegate = new RecordingOutput();
+
+    @Test
+    public void testWriteFullBatch() throws Exception {
+        final BatchingOutput output = BatchingOutput.create()
+                .withOutput(delegate)
+                .withBatchSize(10)
+                .withMaxLatency(1, TimeUnit.HOURS)
+                .withStripes(1)
+                .build();
+
+        for (int i = 0; i < 25; i++) {
+            SmartLog.start(output)
+                    .title("title-{}", i);
+            SmartLog.finish();
+        }
+
+        assertThat(delegate.batches).containsExactly(10, 10);
+        assertThat(delegate.titles.get(0)).isEqualTo("title-0");
+
+        output.close();
+
+        assertThat(delegate.batches).containsExactly(10, 10, 5);
+        assertThat(delegate.titles).hasSize(25);
+        assertThat(delegate.titles.get(24)).isEqualTo("title-24");
+    }
+
+    @Test
+    public void testWriteByTimer() throws Exception {
+        final BatchingOutput output = BatchingOutput.create()
+                .withOutput(delegate)
+                .withBatchSize(100)
+                .withMaxLatency(10, TimeUnit.MILLISECONDS)
+                .build();
+
+        SmartLog.start(output)
+                .title("title");
+        SmartLog.finish();
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (delegate.titles.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertThat(delegate.titles).containsExactly("title");
+
+        output.close();
+        assertThat(delegate.titles).hasSize(1);
+    }
+
+    @Test
+    public void testWriteSnapshot() throws Exception {
+        final BatchingOutput output = BatchingOutput.create()
+                .withOutput(delegate)
+                .withMaxLatency(1, TimeUnit.HOURS)
+                .build();
+
+        final LogContext ctx = SmartLog.start(output)
+                .title("title")
+                .attach("var", 1);
+        SmartLog.finish();
+
+        ctx.title("changed");
+        output.close();
+
+        assertThat(delegate.titles).containsExactly("title");
+    }
+
+    @Test
+    public void testWriteDirectlyAfterClose() throws Exception {
+        final BatchingOutput output = BatchingOutput.create()
+                .withOutput(delegate)
+                .build();
+        output.close();
+
+        SmartLog.start(output)
+                .title("title");
+        SmartLog.finish();
+
+        assertThat(delegate.titles).containsExactly("title");
+        assertThat(delegate.batches).isEmpty();
+    }
+
+    @Test
+    public void testCloseWhileWriting() throws Exception {
+        final BatchingOutput output = BatchingOutput.create()
+                .withOutput(delegate)
+                .withBatchSize(16)
+                .withMaxLatency(1, TimeUnit.HOURS)
+                .withStripes(2)
+                .build();
+
+        final int threads = 4;
+        final int records = 10_000;
+        final CountDownLatch started = new CountDownLatch(threads);
+        final Thread[] producers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            producers[i] = new Thread(() -> {
+                started.countDown();
+                for (int j = 0; j < records; j++) {
+                    SmartLog.start(output);
+                    SmartLog.finish();
+                }
+            });
+            producers[i].start();
+        }
+
+        started.await();
+        output.close();
+        for (final Thread producer : producers) {
+            producer.join();
+        }
+
+        // records added to stripe concurrently with close are not left in buffer
+        assertThat(delegate.titles).hasSize(threads * records);
+    }
+
+    @Test
+    public void testCountFailedBatch() throws Exception {
+        final Output failing = mock(Output.class);
+        when(failing.isEnabled(any())).thenReturn(true);
+        doThrow(new RuntimeException("test")).when(failing).writeBatch(any());
+
+        final BatchingOutput output = BatchingOutput.create()
+                .withOutput(failing)
+                .withBatchSize(2)
+                .withMaxLatency(1, TimeUnit.HOURS)
+                .withStripes(1)
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            SmartLog.start(output);
+            SmartLog.finish();
+        }
+
+        output.close();
+
+        assertThat(output.getFailedCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testJoinSlf4JBatch() throws Exception {
+        final Logger logger = mock(Logger.class);
+        when(logger.isInfoEnabled()).thenReturn(true);
+        when(logger.isWarnEnabled()).thenReturn(true);
+
+        final BatchingOutput output = BatchingOutput.create()
+                .withOutput(Slf4JOutput.create()
+                        .withLogger(logger)
+                        .withFormat(new SimpleTextFormat("${title}"))
+                        .joinBatches()
+                        .build())
+                .withMaxLatency(1, TimeUnit.HOURS)
+                .withStripes(1)
+                .build();
+
+        SmartLog.start(output).title("a");
+        SmartLog.finish();
+        SmartLog.start(output).title("b");
+        SmartLog.finish();
+        SmartLog.start(output).title("c").level(LogLevel.WARN);
+        SmartLog.finish();
+
+        output.close();
+
+        verify(logger).info("a" + System.lineSeparator() + "b");
+        verify(logger).warn("c");
+    }
+
+    @Test
+    public void testJoinSlf4JBatchOfSameMDC() throws Exception {
+        final Logger logger = mock(Logger.class);
+        when(logger.isInfoEnabled()).thenReturn(true);
+        final List<String> mdc = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            mdc.add(MDC.get("mdc-var"));
+            return null;
+        }).when(logger).info(anyString());
+
+        final BatchingOutput output = BatchingOutput.create()
+                .withOutput(Slf4JOutput.create()
+                        .withLogger(logger)
+                        .withFormat(new SimpleTextFormat("${title}"))
+                        .joinBatches()
+                        .build())
+                .withMaxLatency(1, TimeUnit.HOURS)
+                .withStripes(1)
+                .build();
+
+        SmartLog.start(output).title("a").pushMDC("mdc-var", "1");
+        SmartLog.finish();
+        SmartLog.start(output).title("b").pushMDC("mdc-var", "1");
+        SmartLog.finish();
+        SmartLog.start(output).title("c").pushMDC("mdc-var", "2");
+        SmartLog.finish();
+
+        output.close();
+
+        verify(logger).info("a" + System.lineSeparator() + "b");
+        verify(logger).info("c");
+        assertThat(mdc).containsExactly("1", "2");
+    }
+
+    private static class RecordingOutput implements Output {
+        private final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> titles = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void write(final LogContext log) {
+            titles.add(log.title());
+        }
+
+        @Override
+        public void writeBatch(@Nonnull final List<LogContext> batch) {
+            batches.add(batch.size());
+            for (final LogContext log : batch) {
+                titles.add(log.title());
+            }
+        }
+    }
+}
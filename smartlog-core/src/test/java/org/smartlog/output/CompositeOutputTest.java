@@ -0,0 +1,140 @@
+package org.smartlog.output;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.SmartLog;
+import org.smartlog.format.Format;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class CompositeOutputTest {
+    private final AtomicInteger formatted = new AtomicInteger();
+
+    private final Format format = new Format() {
+        @Override
+        public String format(@Nonnull final LogContext log) {
+            formatted.incrementAndGet();
+            return "text-" + log.title();
+        }
+    };
+
+    private final Logger all = mock(Logger.class);
+    private final Logger warn = mock(Logger.class);
+    private final Logger tenant = mock(Logger.class);
+
+    private CompositeOutput output;
+
+    @Before
+    public void setup() {
+        for (final Logger logger : new Logger[]{all, warn, tenant}) {
+            when(logger.isInfoEnabled()).thenReturn(true);
+            when(logger.isWarnEnabled()).thenReturn(true);
+        }
+
+        output = CompositeOutput.create()
+                .withOutput(slf4j(all))
+                .withOutput(slf4j(warn), LogLevel.WARN)
+                .withOutput(slf4j(tenant), LogLevel.DEBUG, RecordFilter.attrEquals("tenant", "a"))
+                .build();
+    }
+
+    @Test
+    public void testRouteByLevel() throws Exception {
+        SmartLog.start(output).title("info");
+        SmartLog.finish();
+
+        SmartLog.start(output).title("warn").level(LogLevel.WARN);
+        SmartLog.finish();
+
+        verify(all).info("text-info");
+        verify(all).warn("text-warn");
+        verify(warn).warn("text-warn");
+        verify(warn, never()).info(anyString());
+        verify(tenant, never()).info(anyString());
+        verify(tenant, never()).warn(anyString());
+    }
+
+    @Test
+    public void testRouteByAttribute() throws Exception {
+        SmartLog.start(output).title("t1").attach("tenant", "a");
+        SmartLog.finish();
+
+        SmartLog.start(output).title("t2").attach("tenant", "b");
+        SmartLog.finish();
+
+        verify(tenant).info("text-t1");
+        verify(tenant, never()).info("text-t2");
+        verify(all).info("text-t2");
+    }
+
+    @Test
+    public void testAttrEqualsComparesIntegralValues() throws Exception {
+        final RecordFilter filter = RecordFilter.attrEquals("count", 1L);
+
+        try (LogContext ctx = SmartLog.start(output).attach("count", 1)) {
+            assertThat(filter.accept(ctx)).isTrue();
+        }
+
+        try (LogContext ctx = SmartLog.start(output).attach("count", 2L)) {
+            assertThat(filter.accept(ctx)).isFalse();
+        }
+
+        try (LogContext ctx = SmartLog.start(output).attach("count", "1")) {
+            assertThat(filter.accept(ctx)).isFalse();
+        }
+    }
+
+    @Test
+    public void testRenderSharedFormatOnce() throws Exception {
+        SmartLog.start(output).title("warn").level(LogLevel.WARN).attach("tenant", "a");
+        SmartLog.finish();
+
+        verify(all).warn("text-warn");
+        verify(warn).warn("text-warn");
+        verify(tenant).warn("text-warn");
+        assertThat(formatted.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testIsEnabledByAnyOutput() throws Exception {
+        when(all.isDebugEnabled()).thenReturn(false);
+        assertThat(output.isEnabled(LogLevel.DEBUG)).isFalse();
+
+        when(all.isDebugEnabled()).thenReturn(true);
+        assertThat(output.isEnabled(LogLevel.DEBUG)).isTrue();
+    }
+
+    @Test
+    public void testContinueOnFailure() throws Exception {
+        final Output failing = mock(Output.class);
+        when(failing.isEnabled(Mockito.any())).thenReturn(true);
+        doThrow(new RuntimeException("test")).when(failing).write(Mockito.any());
+
+        final CompositeOutput output = CompositeOutput.create()
+                .withOutput(failing)
+                .withOutput(slf4j(all))
+                .build();
+
+        SmartLog.start(output).title("title");
+        SmartLog.finish();
+
+        verify(all).info("text-title");
+        assertThat(output.getFailedCount()).isEqualTo(1);
+    }
+
+    private Output slf4j(final Logger logger) {
+        return Slf4JOutput.create()
+                .withLogger(logger)
+                .withFormat(format)
+                .build();
+    }
+}
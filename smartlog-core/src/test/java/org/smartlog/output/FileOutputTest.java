@@ -0,0 +1,212 @@
+package org.smartlog.output;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.SmartLogConfig;
+import org.smartlog.TimeSource;
+import org.smartlog.format.SimpleTextFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class FileOutputTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMemoryMapped() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("app.log");
+        try (FileOutput output = FileOutput.create()
+                .withFile(file)
+                .withFormat(new SimpleTextFormat("${title}"))
+                .build()) {
+            output.write(context("first \u20ac", LogLevel.INFO));
+            output.write(context("skipped", LogLevel.DEBUG));
+            output.write(context("second", LogLevel.WARN));
+        }
+
+        final List<String> lines = Files.readAllLines(file.resolveSibling("app.log.0"), StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).matches("\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3} INFO first \u20ac");
+        assertThat(lines.get(1)).endsWith(" WARN second");
+    }
+
+    @Test
+    public void testRollBySize() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("app.log");
+        Files.createFile(file.resolveSibling("app.log.7"));
+
+        try (FileOutput output = FileOutput.create()
+                .withFile(file)
+                .withFormat(new SimpleTextFormat("${title}"))
+                .fileChannel(16)
+                .withSegmentSize(80)
+                .withSyncEvery(1)
+                .build()) {
+            output.write(context("record-1", LogLevel.INFO));
+            output.write(context("record-2", LogLevel.INFO));
+            output.write(context("record-3", LogLevel.INFO));
+
+            assertThat(output.getSegment()).isEqualTo(file.resolveSibling("app.log.9"));
+            assertThat(output.getFailedCount()).isEqualTo(0);
+        }
+
+        // numbering continues after existing segment
+        assertThat(Files.readAllLines(file.resolveSibling("app.log.8"), StandardCharsets.UTF_8)).hasSize(2);
+        final List<String> lines = Files.readAllLines(file.resolveSibling("app.log.9"), StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0)).endsWith(" INFO record-3");
+    }
+
+    @Test
+    public void testWriteBatch() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("app.log");
+        try (FileOutput output = FileOutput.create()
+                .withFile(file)
+                .withFormat(new SimpleTextFormat("${title}"))
+                .build()) {
+            output.writeBatch(Arrays.asList(
+                    context("first", LogLevel.INFO),
+                    context("skipped", LogLevel.DEBUG),
+                    context("second", LogLevel.ERROR)));
+        }
+
+        final List<String> lines = Files.readAllLines(file.resolveSibling("app.log.0"), StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).matches("\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3} INFO first");
+        assertThat(lines.get(1)).matches("\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3} ERROR second");
+    }
+
+    @Test
+    public void testRollByTime() throws Exception {
+        final AtomicLong millis = new AtomicLong(1000L);
+        SmartLogConfig.update(builder -> builder.withTimeSource(timeSource(millis, new AtomicBoolean())));
+
+        final Path file = folder.getRoot().toPath().resolve("app.log");
+        try (FileOutput output = FileOutput.create()
+                .withFile(file)
+                .withFormat(new SimpleTextFormat("${title}"))
+                .withRollInterval(1, TimeUnit.MINUTES)
+                .build()) {
+            output.write(context("record-1", LogLevel.INFO));
+            millis.addAndGet(59_999L);
+            output.write(context("record-2", LogLevel.INFO));
+            millis.addAndGet(1L);
+            output.write(context("record-3", LogLevel.INFO));
+
+            assertThat(output.getSegment()).isEqualTo(file.resolveSibling("app.log.1"));
+        } finally {
+            SmartLogConfig.update(builder -> builder.withTimeSource(TimeSource.SYSTEM));
+        }
+
+        assertThat(Files.readAllLines(file.resolveSibling("app.log.0"), StandardCharsets.UTF_8)).hasSize(2);
+        assertThat(Files.readAllLines(file.resolveSibling("app.log.1"), StandardCharsets.UTF_8)).hasSize(1);
+    }
+
+    @Test
+    public void testFailedSegmentIsTruncated() throws Exception {
+        final AtomicBoolean failing = new AtomicBoolean();
+        SmartLogConfig.update(builder -> builder.withTimeSource(timeSource(new AtomicLong(1000L), failing)));
+
+        final Path file = folder.getRoot().toPath().resolve("app.log");
+        try (FileOutput output = FileOutput.create()
+                .withFile(file)
+                .withFormat(new SimpleTextFormat("${title}"))
+                .build()) {
+            output.write(context("record-1", LogLevel.INFO));
+
+            failing.set(true);
+            output.write(context("failed", LogLevel.INFO));
+            failing.set(false);
+
+            output.write(context("record-2", LogLevel.INFO));
+
+            assertThat(output.getFailedCount()).isEqualTo(1);
+            assertThat(output.getSegment()).isEqualTo(file.resolveSibling("app.log.1"));
+        } finally {
+            SmartLogConfig.update(builder -> builder.withTimeSource(TimeSource.SYSTEM));
+        }
+
+        // unused tail of mapped failed segment is dropped
+        final Path failed = file.resolveSibling("app.log.0");
+        final List<String> lines = Files.readAllLines(failed, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(1);
+        assertThat(Files.size(failed)).isEqualTo((lines.get(0) + System.lineSeparator()).length());
+        assertThat(Files.readAllLines(file.resolveSibling("app.log.1"), StandardCharsets.UTF_8)).hasSize(1);
+    }
+
+    @Test
+    public void testThrowable() throws Exception {
+        final IllegalStateException throwable = new IllegalStateException("error");
+        final LogContext ctx = context("failed", LogLevel.ERROR);
+        when(ctx.throwable()).thenReturn(throwable);
+        when(ctx.suppressedThrowables()).thenReturn(new ArrayList<>(Collections.singletonList(
+                new IllegalArgumentException("task failed"))));
+
+        final Path file = folder.getRoot().toPath().resolve("app.log");
+        try (FileOutput output = FileOutput.create()
+                .withFile(file)
+                .withFormat(new SimpleTextFormat("${title}"))
+                .fileChannel(4)
+                .build()) {
+            output.write(ctx);
+            output.write(context("next", LogLevel.INFO));
+        }
+
+        final List<String> lines = Files.readAllLines(file.resolveSibling("app.log.0"), StandardCharsets.UTF_8);
+        assertThat(lines.get(0)).endsWith(" ERROR failed");
+        assertThat(lines.get(1)).isEqualTo("java.lang.IllegalStateException: error");
+        assertThat(lines.get(2)).startsWith("\tat ");
+        assertThat(lines).contains("\tSuppressed: java.lang.IllegalArgumentException: task failed");
+        assertThat(lines.get(lines.size() - 1)).endsWith(" INFO next");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testBufferSizeMustHoldChar() throws Exception {
+        FileOutput.create()
+                .withFile(folder.getRoot().toPath().resolve("app.log"))
+                .fileChannel(3)
+                .build();
+    }
+
+    private static TimeSource timeSource(final AtomicLong millis, final AtomicBoolean failing) {
+        return new TimeSource() {
+            @Override
+            public long currentTimeMillis() {
+                if (failing.get()) {
+                    throw new IllegalStateException("test");
+                }
+
+                return millis.get();
+            }
+
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+        };
+    }
+
+    private static LogContext context(final String title, final LogLevel level) {
+        final LogContext ctx = Mockito.mock(LogContext.class);
+        when(ctx.title()).thenReturn(title);
+        when(ctx.level()).thenReturn(level);
+        when(ctx.endTime()).thenReturn(1000L);
+        return ctx;
+    }
+}
@@ -26,9 +26,8 @@ public class Slf4JOutputTest {
 
     @BeforeClass
     public static void setupClass() {
-        SmartLogConfig
-                .getConfig()
-                .setDefaultFormat(new SimpleTextFormat("global-format"));
+        SmartLogConfig.update(builder -> builder
+                .withDefaultFormat(new SimpleTextFormat("global-format")));
     }
 
     @Before
@@ -82,6 +81,19 @@ public class Slf4JOutputTest {
         Mockito.verify(logger).isErrorEnabled();
     }
 
+    @Test
+    public void testIsEnabled() throws Exception {
+        when(logger.isDebugEnabled()).thenReturn(false);
+        when(logger.isInfoEnabled()).thenReturn(true);
+        when(logger.isWarnEnabled()).thenReturn(true);
+        when(logger.isErrorEnabled()).thenReturn(true);
+
+        assertThat(output.isEnabled(LogLevel.DEBUG)).isFalse();
+        assertThat(output.isEnabled(LogLevel.INFO)).isTrue();
+        assertThat(output.isEnabled(LogLevel.WARN)).isTrue();
+        assertThat(output.isEnabled(LogLevel.ERROR)).isTrue();
+    }
+
     @Test
     public void testLogDebug() throws Exception {
         when(logger.isDebugEnabled()).thenReturn(true);
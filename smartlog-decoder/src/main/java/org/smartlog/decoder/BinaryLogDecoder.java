@@ -0,0 +1,150 @@
+package org.smartlog.decoder;
+
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.SmartLogConfig;
+import org.smartlog.format.Format;
+import org.smartlog.format.JsonFormat;
+import org.smartlog.format.SimpleTextFormat;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts binary log files to text.
+ * <p>
+ * Usage: {@code java -jar smartlog-decoder.jar [--json | --format <pattern>] [file...]}, stdin is read if no file
+ * is given. Text records are written as {@code "yyyy-MM-dd HH:mm:ss.SSS LEVEL message"} followed by stack trace,
+ * message is rendered by {@link SimpleTextFormat} pattern (default format of config by default).
+ * Json records are written by {@link JsonFormat}, one per line.
+ */
+public final class BinaryLogDecoder {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+            .withZone(ZoneId.systemDefault());
+
+    @Nonnull
+    private final Format format;
+
+    private final boolean json;
+
+    public BinaryLogDecoder(@Nonnull final Format format, final boolean json) {
+        this.format = format;
+        this.json = json;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        Format format = SmartLogConfig.getConfig().getDefaultFormat();
+        boolean json = false;
+        final List<String> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--json":
+                    format = new JsonFormat();
+                    json = true;
+                    break;
+                case "--format":
+                    if (i + 1 == args.length) {
+                        usage();
+                        return;
+                    }
+
+                    format = new SimpleTextFormat(args[++i]);
+                    json = false;
+                    break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        usage();
+                        return;
+                    }
+
+                    files.add(args[i]);
+            }
+        }
+
+        final BinaryLogDecoder decoder = new BinaryLogDecoder(format, json);
+        final Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try {
+            if (files.isEmpty()) {
+                decoder.decode(System.in, out);
+            } else {
+                for (final String file : files) {
+                    try (InputStream in = Files.newInputStream(Paths.get(file))) {
+                        decoder.decode(in, out);
+                    } catch (EOFException e) {
+                        System.err.println(file + ": last record is truncated");
+                    }
+                }
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * Write all records of binary stream as text
+     *
+     * @param in  binary stream
+     * @param out destination
+     * @return number of records
+     * @throws EOFException if stream ends in the middle of record, complete records are written
+     * @throws IOException  on read/write error or corrupted stream
+     */
+    public long decode(@Nonnull final InputStream in, @Nonnull final Writer out) throws IOException {
+        final BinaryLogReader reader = new BinaryLogReader(in);
+        final StringBuilder builder = new StringBuilder(256);
+
+        long count = 0;
+        LogContext log;
+        while ((log = reader.next()) != null) {
+            builder.setLength(0);
+            render(log, builder);
+            out.append(builder);
+            count++;
+        }
+
+        return count;
+    }
+
+    private void render(@Nonnull final LogContext log, @Nonnull final StringBuilder builder) {
+        if (json) {
+            format.format(log, builder);
+            builder.append(System.lineSeparator());
+            return;
+        }
+
+        final LogLevel level = log.level();
+        builder.append(TIME_FORMAT.format(Instant.ofEpochMilli(log.endTime())))
+                .append(' ')
+                .append(level != null ? level : LogLevel.INFO)
+                .append(' ');
+        format.format(log, builder);
+        builder.append(System.lineSeparator());
+
+        final Throwable throwable = log.throwable();
+        if (throwable != null) {
+            final StringWriter stackTrace = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(stackTrace));
+            builder.append(stackTrace.getBuffer());
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java -jar smartlog-decoder.jar [--json | --format <pattern>] [file...]");
+    }
+}
@@ -0,0 +1,240 @@
+package org.smartlog.decoder;
+
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.TraceFlag;
+import org.smartlog.format.BinaryFormat;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Reads records written by {@link BinaryFormat}, e.g. segments of {@link org.smartlog.output.BinaryOutput}.
+ * <p>
+ * Concatenated streams (several segments) are supported, every header resets dictionary.
+ */
+@NotThreadSafe
+public class BinaryLogReader implements Closeable {
+    private static final LogLevel[] LEVELS = LogLevel.values();
+    private static final TraceFlag[] FLAGS = TraceFlag.values();
+
+    private static final int MAGIC_FIRST_BYTE = BinaryFormat.MAGIC >>> 24;
+
+    @Nonnull
+    private final DataInputStream in;
+
+    private final ArrayList<String> dictionary = new ArrayList<>();
+
+    private boolean started;
+
+    private long lastStartTime;
+
+    public BinaryLogReader(@Nonnull final InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+    }
+
+    /**
+     * @return next record or null if stream is finished
+     * @throws EOFException if stream ends in the middle of record, e.g. it was not flushed
+     * @throws IOException  on read error or corrupted stream
+     */
+    @Nullable
+    public LogContext next() throws IOException {
+        int fields = in.read();
+        if (fields < 0) {
+            return null;
+        }
+
+        if (fields == MAGIC_FIRST_BYTE) {
+            readHeader();
+            fields = in.read();
+            if (fields < 0) {
+                return null;
+            }
+        } else if (!started) {
+            throw new IOException("Not a smartlog binary stream");
+        }
+
+        final DecodedContext ctx = new DecodedContext();
+
+        final int level = in.readUnsignedByte();
+        if (level > LEVELS.length) {
+            throw new IOException("Unknown level: " + level);
+        }
+
+        ctx.level(level > 0 ? LEVELS[level - 1] : null);
+
+        final long startTime = lastStartTime + readZigzag();
+        final long endTime = startTime + readZigzag();
+        ctx.times(startTime, endTime, readZigzag());
+        lastStartTime = startTime;
+
+        if ((fields & BinaryFormat.HAS_TITLE) != 0) {
+            final String title = readString();
+            ctx.title(title, (fields & BinaryFormat.TITLE_FORMATTED) != 0 ? readString() : null);
+        }
+
+        if ((fields & BinaryFormat.HAS_RESULT) != 0) {
+            ctx.result(readValue(in.readByte()));
+        }
+
+        if ((fields & BinaryFormat.HAS_THROWABLE) != 0) {
+            final String stackTrace = readString();
+            if (stackTrace != null) {
+                ctx.throwable(new DecodedContext.DecodedThrowable(stackTrace));
+            }
+        }
+
+        if ((fields & BinaryFormat.HAS_TRACE) != 0) {
+            final long size = readVarLong();
+            for (long i = 0; i < size; i++) {
+                final int flag = in.readUnsignedByte();
+                final int ordinal = flag & ~BinaryFormat.TRACE_FORMATTED;
+                if (ordinal >= FLAGS.length) {
+                    throw new IOException("Unknown trace flag: " + ordinal);
+                }
+
+                final String template = requireString();
+                final String message = (flag & BinaryFormat.TRACE_FORMATTED) != 0 ? requireString() : null;
+                ctx.addTrace(template, message, FLAGS[ordinal], readVarLong() - 1);
+            }
+        }
+
+        while (true) {
+            final byte type = in.readByte();
+            if (type == BinaryFormat.ATTRS_END) {
+                break;
+            }
+
+            final String name = requireString();
+            switch (type) {
+                case BinaryFormat.VALUE_LONG:
+                    ctx.attach(name, readZigzag());
+                    break;
+                case BinaryFormat.VALUE_DOUBLE:
+                    ctx.attach(name, in.readDouble());
+                    break;
+                case BinaryFormat.VALUE_TRUE:
+                    ctx.attach(name, true);
+                    break;
+                case BinaryFormat.VALUE_FALSE:
+                    ctx.attach(name, false);
+                    break;
+                default:
+                    ctx.attach(name, readValue(type));
+            }
+        }
+
+        return ctx;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readHeader() throws IOException {
+        final int magic = (MAGIC_FIRST_BYTE << 24) | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+        if (magic != BinaryFormat.MAGIC) {
+            throw new IOException("Not a smartlog binary stream");
+        }
+
+        final byte version = in.readByte();
+        if (version != BinaryFormat.VERSION) {
+            throw new IOException("Unsupported version: " + version);
+        }
+
+        dictionary.clear();
+        lastStartTime = 0;
+        started = true;
+    }
+
+    @Nullable
+    private Object readValue(final byte type) throws IOException {
+        switch (type) {
+            case BinaryFormat.VALUE_NULL:
+                return null;
+            case BinaryFormat.VALUE_LONG:
+                return readZigzag();
+            case BinaryFormat.VALUE_DOUBLE:
+                return in.readDouble();
+            case BinaryFormat.VALUE_TRUE:
+                return true;
+            case BinaryFormat.VALUE_FALSE:
+                return false;
+            case BinaryFormat.VALUE_STRING:
+                return readString();
+            default:
+                throw new IOException("Unknown value type: " + type);
+        }
+    }
+
+    @Nonnull
+    private String requireString() throws IOException {
+        final String value = readString();
+        if (value == null) {
+            throw new IOException("Unexpected null string");
+        }
+
+        return value;
+    }
+
+    @Nullable
+    private String readString() throws IOException {
+        final long tag = readVarLong();
+        if (tag == BinaryFormat.STRING_NULL) {
+            return null;
+        }
+
+        if (tag >= BinaryFormat.STRING_REF) {
+            final long id = tag - BinaryFormat.STRING_REF;
+            if (id >= dictionary.size()) {
+                throw new IOException("Unknown dictionary id: " + id);
+            }
+
+            return dictionary.get((int) id);
+        }
+
+        final long length = readVarLong();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("String is too long: " + length);
+        }
+
+        final byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        final String value = new String(bytes, StandardCharsets.UTF_8);
+
+        if (tag == BinaryFormat.STRING_DEFINE) {
+            dictionary.add(value);
+        }
+
+        return value;
+    }
+
+    private long readZigzag() throws IOException {
+        final long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed varint");
+    }
+}
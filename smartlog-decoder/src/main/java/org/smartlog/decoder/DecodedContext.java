@@ -0,0 +1,173 @@
+package org.smartlog.decoder;
+
+import org.smartlog.LogContext;
+import org.smartlog.SmartLogConfig;
+import org.smartlog.TraceFlag;
+import org.smartlog.Util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log context restored from binary record, so it can be rendered by any {@link org.smartlog.format.Format}.
+ * <p>
+ * Title, level, result, throwable and attributes are set through regular context methods, times and trace
+ * are restored as they were recorded.
+ */
+@NotThreadSafe
+final class DecodedContext extends LogContext {
+    private long startTime;
+    private long endTime;
+    private long durationNanos;
+
+    private final ArrayList<String> traceTemplates = new ArrayList<>();
+    /**
+     * Formatted messages, null for entries without arguments
+     */
+    private final ArrayList<String> traceMessages = new ArrayList<>();
+    private final ArrayList<TraceFlag> traceFlags = new ArrayList<>();
+    private final ArrayList<Long> traceNanos = new ArrayList<>();
+
+    DecodedContext() {
+        super(log -> {
+        });
+    }
+
+    void times(final long startTime, final long endTime, final long durationNanos) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.durationNanos = durationNanos;
+    }
+
+    void title(@Nullable final String template, @Nullable final String formatted) {
+        formattedTitle(template, formatted);
+    }
+
+    void addTrace(@Nonnull final String template, @Nullable final String message, @Nonnull final TraceFlag flag,
+                  final long nanos) {
+        traceTemplates.add(template);
+        traceMessages.add(message);
+        traceFlags.add(flag);
+        traceNanos.add(nanos);
+    }
+
+    @Override
+    public long startTime() {
+        return startTime;
+    }
+
+    @Override
+    public long endTime() {
+        return endTime;
+    }
+
+    @Override
+    public long durationNanos() {
+        return durationNanos;
+    }
+
+    @Nonnull
+    @Override
+    public String trace() {
+        final TimeUnit unit = SmartLogConfig.getConfig().getTraceTimeUnit();
+
+        final StringBuilder builder = new StringBuilder(traceMessages.size() * 16);
+        for (int i = 0; i < traceMessages.size(); i++) {
+            if (i > 0) {
+                builder.append("; ");
+            }
+
+            builder.append(traceFormattedMessage(i));
+
+            final long nanos = traceNanos.get(i);
+            if (nanos >= 0) {
+                builder.append(" [")
+                        .append(unit.convert(nanos, TimeUnit.NANOSECONDS))
+                        .append(' ')
+                        .append(Util.timeUnitSuffix(unit))
+                        .append(']');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    @Override
+    public int traceSize() {
+        return traceMessages.size();
+    }
+
+    @Nonnull
+    @Override
+    public String traceMessage(final int index) {
+        return traceTemplates.get(index);
+    }
+
+    @Nonnull
+    @Override
+    public String traceFormattedMessage(final int index) {
+        final String message = traceMessages.get(index);
+        return message != null ? message : traceTemplates.get(index);
+    }
+
+    @Override
+    public boolean traceHasArgs(final int index) {
+        return traceMessages.get(index) != null;
+    }
+
+    @Nonnull
+    @Override
+    public TraceFlag traceFlag(final int index) {
+        return traceFlags.get(index);
+    }
+
+    @Override
+    public long traceNanos(final int index) {
+        return traceNanos.get(index);
+    }
+
+    /**
+     * Throwable restored from recorded stack trace
+     */
+    static final class DecodedThrowable extends Throwable {
+        private static final long serialVersionUID = 1L;
+
+        @Nonnull
+        private final String stackTrace;
+
+        DecodedThrowable(@Nonnull final String stackTrace) {
+            super(firstLine(stackTrace), null, false, false);
+            this.stackTrace = stackTrace;
+        }
+
+        @Override
+        public String toString() {
+            return getMessage();
+        }
+
+        @Override
+        public void printStackTrace(final PrintStream s) {
+            s.print(stackTrace);
+        }
+
+        @Override
+        public void printStackTrace(final PrintWriter s) {
+            s.print(stackTrace);
+        }
+
+        @Nonnull
+        private static String firstLine(@Nonnull final String text) {
+            int end = 0;
+            while (end < text.length() && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+
+            return text.substring(0, end);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.smartlog.decoder;
+
+import org.junit.Test;
+import org.smartlog.LogContext;
+import org.smartlog.LogLevel;
+import org.smartlog.SmartLog;
+import org.smartlog.TraceFlag;
+import org.smartlog.format.BinaryFormat;
+import org.smartlog.format.JsonFormat;
+import org.smartlog.output.Output;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class BinaryLogReaderTest {
+    private final BinaryFormat format = new BinaryFormat();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        format.writeHeader();
+        write(0);
+        write(1);
+
+        final BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(bytes()));
+
+        final LogContext first = reader.next();
+        assertThat(first.title()).isEqualTo("title 0");
+        assertThat(first.level()).isEqualTo(LogLevel.WARN);
+        assertThat(first.result()).isEqualTo("result");
+        assertThat(first.throwable()).hasToString("java.lang.IllegalStateException: error");
+        assertThat(first.traceSize()).isEqualTo(2);
+        assertThat(first.traceMessage(0)).isEqualTo("step {}");
+        assertThat(first.traceFormattedMessage(0)).isEqualTo("step 0");
+        assertThat(first.traceNanos(0)).isEqualTo(-1L);
+        assertThat(first.traceFlag(1)).isEqualTo(TraceFlag.WRITE_TIME);
+        assertThat(first.traceNanos(1)).isGreaterThanOrEqualTo(0L);
+        assertThat(first.getAttr("long")).isEqualTo(0L);
+        assertThat(first.getAttr("double")).isEqualTo(1.5);
+        assertThat(first.getAttr("bool")).isEqualTo(true);
+        assertThat(first.getAttr("str")).isEqualTo("€");
+
+        final LogContext second = reader.next();
+        assertThat(second.title()).isEqualTo("title 1");
+        assertThat(second.startTime()).isGreaterThanOrEqualTo(first.startTime());
+        assertThat(new JsonFormat().format(second)).contains("\"long\":1,\"double\":1.5,\"bool\":true");
+
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws Exception {
+        format.writeHeader();
+        write(0, log -> format.write(log.snapshot()));
+        write(1, log -> format.write(log.snapshot()));
+
+        final byte[] bytes = bytes();
+        // templates are defined once, formatted strings are not kept in dictionary
+        assertThat(count(bytes, "title {}")).isEqualTo(1);
+        assertThat(count(bytes, "step {}")).isEqualTo(1);
+
+        final BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(bytes));
+        reader.next();
+        final LogContext second = reader.next();
+        assertThat(second.rawTitle()).isEqualTo("title {}");
+        assertThat(second.title()).isEqualTo("title 1");
+        assertThat(second.traceMessage(0)).isEqualTo("step {}");
+        assertThat(second.traceFormattedMessage(0)).isEqualTo("step 1");
+        assertThat(second.traceHasArgs(0)).isTrue();
+        assertThat(second.traceFormattedMessage(1)).isEqualTo("load");
+        assertThat(second.traceHasArgs(1)).isFalse();
+
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    public void testConcatenatedStreams() throws Exception {
+        format.writeHeader();
+        write(0);
+        format.writeHeader();
+        write(1);
+
+        final StringWriter out = new StringWriter();
+        final long count = new BinaryLogDecoder(new JsonFormat(), true).decode(new ByteArrayInputStream(bytes()), out);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(out.toString()).contains("\"title\":\"title 0\"", "\"title\":\"title 1\"");
+    }
+
+    @Test
+    public void testTruncatedRecord() throws Exception {
+        format.writeHeader();
+        write(0);
+
+        final byte[] bytes = bytes();
+        final BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 2)));
+        try {
+            reader.next();
+            fail("truncated record is read");
+        } catch (EOFException e) {
+            // expected
+        }
+    }
+
+    private void write(final int index) {
+        write(index, format::write);
+    }
+
+    private void write(final int index, final Output output) {
+        SmartLog.start(output)
+                .title("title {}", index)
+                .level(LogLevel.WARN)
+                .trace("step {}", index)
+                .trace(TraceFlag.WRITE_TIME, "load")
+                .attach("long", index)
+                .attach("double", 1.5)
+                .attach("bool", true)
+                .attach("str", "€")
+                .result("result")
+                .throwable(new IllegalStateException("error"));
+        SmartLog.finish();
+    }
+
+    private static int count(final byte[] bytes, final String value) {
+        final byte[] pattern = value.getBytes(StandardCharsets.UTF_8);
+        int count = 0;
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            int j = 0;
+            while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                j++;
+            }
+
+            if (j == pattern.length) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private byte[] bytes() {
+        return Arrays.copyOf(format.buffer().array(), format.size());
+    }
+}